@@ -249,7 +249,17 @@ abstract class GenerateMethodHashesTask : DefaultTask() {
                     for (i in start until content.length) {
                         if (content[i] == '{') count++ else if (content[i] == '}') count--
                         if (count == 0) {
-                            val body = content.substring(start, i + 1)
+                            // declared queries (by dexClass(eqStrings(...))) take part in resolution too
+                            val declaredQueries = Regex("""by\s+dex(?:Class|Method)\(""").findAll(content).map { m ->
+                                var depth = 1
+                                var end = m.range.last + 1
+                                while (end < content.length && depth > 0) {
+                                    if (content[end] == '(') depth++ else if (content[end] == ')') depth--
+                                    end++
+                                }
+                                content.substring(m.range.first, end)
+                            }.filterNot { it.endsWith("()") }.joinToString("")
+                            val body = content.substring(start, i + 1) + declaredQueries
                             val hash = MessageDigest.getInstance("MD5").digest(body.toByteArray()).joinToString("") { "%02x".format(it) }
                             hashMap[fullClassName] = hash
                             break
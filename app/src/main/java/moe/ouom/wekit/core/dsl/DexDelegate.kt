@@ -3,6 +3,7 @@ package moe.ouom.wekit.core.dsl
 import com.highcapable.kavaref.extension.ClassLoaderProvider
 import com.highcapable.kavaref.extension.toClassOrNull
 import moe.ouom.wekit.dexkit.DexMethodDescriptor
+import moe.ouom.wekit.dexkit.DexResolvePlanner
 import org.luckypray.dexkit.DexKitBridge
 import org.luckypray.dexkit.query.FindClass
 import org.luckypray.dexkit.query.FindMethod
@@ -12,12 +13,28 @@ import kotlin.properties.PropertyDelegateProvider
 import kotlin.properties.ReadOnlyProperty
 import kotlin.reflect.KProperty
 
+/**
+ * 声明式的纯字符串查询
+ * 在委托声明处给出，可由 [DexResolvePlanner] 跨 HookItem 去重后批量查找
+ */
+data class DexStringQuery(
+    val strings: List<String>,
+    val searchPackages: List<String>
+)
+
+/**
+ * 创建纯字符串查询，等价于 `matcher { usingEqStrings(...) }`
+ */
+fun eqStrings(vararg strings: String, searchPackages: List<String> = emptyList()) =
+    DexStringQuery(strings.toList(), searchPackages)
+
 /**
  * Dex 类委托
  * 自动生成 Key，自动反射获取 Class
  */
 class DexClassDelegate internal constructor(
-    val key: String
+    val key: String,
+    val query: DexStringQuery? = null
 ) : ReadOnlyProperty<Any?, DexClassDelegate> {
 
     private var descriptorString: String? = null
@@ -81,6 +98,33 @@ class DexClassDelegate internal constructor(
         return true
     }
 
+    /**
+     * 按声明时给出的 [query] 查找
+     * 若 [DexResolvePlanner] 已批量查得唯一结果则直接复用，否则退回单独查找
+     */
+    fun resolve(
+        dexKit: DexKitBridge,
+        descriptors: MutableMap<String, String>? = null
+    ): Boolean {
+        val query = checkNotNull(this.query) { "No declared query for key: $key" }
+
+        val planned = DexResolvePlanner.getClassResults(query)
+        if (planned != null && planned.size == 1) {
+            setDescriptor(planned[0])
+            descriptors?.let { it[key] = planned[0] }
+            return true
+        }
+
+        return find(dexKit, descriptors) {
+            if (query.searchPackages.isNotEmpty()) {
+                searchPackages(*query.searchPackages.toTypedArray())
+            }
+            matcher {
+                usingEqStrings(*query.strings.toTypedArray())
+            }
+        }
+    }
+
     fun getClassData(dexKit: DexKitBridge): ClassData {
         val name = getDescriptorString()
         return dexKit.findClassData(name!!)!!
@@ -95,7 +139,8 @@ class DexClassDelegate internal constructor(
  */
 class DexMethodDelegate internal constructor(
     val key: String,
-    private val hookItem: Any? = null  // 可选的 HookItem 实例
+    private val hookItem: Any? = null,  // 可选的 HookItem 实例
+    val query: DexStringQuery? = null
 ) : ReadOnlyProperty<Any?, DexMethodDelegate> {
 
     private var descriptor: DexMethodDescriptor? = null
@@ -178,6 +223,33 @@ class DexMethodDelegate internal constructor(
         return true
     }
 
+    /**
+     * 按声明时给出的 [query] 查找
+     * 若 [DexResolvePlanner] 已批量查得唯一结果则直接复用，否则退回单独查找
+     */
+    fun resolve(
+        dexKit: DexKitBridge,
+        descriptors: MutableMap<String, String>? = null
+    ): Boolean {
+        val query = checkNotNull(this.query) { "No declared query for key: $key" }
+
+        val planned = DexResolvePlanner.getMethodResults(query)
+        if (planned != null && planned.size == 1) {
+            setDescriptor(planned[0])
+            descriptors?.let { it[key] = planned[0].descriptor }
+            return true
+        }
+
+        return find(dexKit, descriptors) {
+            if (query.searchPackages.isNotEmpty()) {
+                searchPackages(*query.searchPackages.toTypedArray())
+            }
+            matcher {
+                usingEqStrings(*query.strings.toTypedArray())
+            }
+        }
+    }
+
     /**
      * DSL: 转换为可 Hook 的方法
      */
@@ -197,24 +269,30 @@ class DexMethodDelegate internal constructor(
 /**
  * 创建 dexClass 委托
  * 自动生成 Key 为 "类名:变量名"
+ * @param query 可选的声明式查询，配合 [DexClassDelegate.resolve] 使用
  */
-fun dexClass(): PropertyDelegateProvider<Any?, ReadOnlyProperty<Any?, DexClassDelegate>> {
+fun dexClass(
+    query: DexStringQuery? = null
+): PropertyDelegateProvider<Any?, ReadOnlyProperty<Any?, DexClassDelegate>> {
     return PropertyDelegateProvider { thisRef, property ->
         val className = thisRef!!::class.java.simpleName
         val key = "$className:${property.name}"
-        DexClassDelegate(key)
+        DexClassDelegate(key, query)
     }
 }
 
 /**
  * 创建 dexMethod 委托
  * 自动生成 Key 为 "类名:变量名"
+ * @param query 可选的声明式查询，配合 [DexMethodDelegate.resolve] 使用
  */
-fun dexMethod(): PropertyDelegateProvider<Any?, ReadOnlyProperty<Any?, DexMethodDelegate>> {
+fun dexMethod(
+    query: DexStringQuery? = null
+): PropertyDelegateProvider<Any?, ReadOnlyProperty<Any?, DexMethodDelegate>> {
     return PropertyDelegateProvider { thisRef, property ->
         val className = thisRef!!::class.java.simpleName
         val key = "$className:${property.name}"
-        DexMethodDelegate(key, thisRef)  // 传递 thisRef 作为 hookItem
+        DexMethodDelegate(key, thisRef, query)  // 传递 thisRef 作为 hookItem
     }
 }
 
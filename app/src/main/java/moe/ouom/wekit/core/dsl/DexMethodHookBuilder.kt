@@ -2,9 +2,9 @@ package moe.ouom.wekit.core.dsl
 
 import de.robv.android.xposed.XC_MethodHook
 import de.robv.android.xposed.XposedBridge
-import moe.ouom.wekit.preferences.WePrefs
-import moe.ouom.wekit.constants.PreferenceKeys
+import moe.ouom.wekit.preferences.WeConfig
 import moe.ouom.wekit.core.model.ApiHookItem
+import moe.ouom.wekit.core.model.BaseHookItem
 import moe.ouom.wekit.core.model.ClickableHookItem
 import moe.ouom.wekit.core.model.SwitchHookItem
 import moe.ouom.wekit.hooks.utils.ExceptionFactory
@@ -20,6 +20,7 @@ class DexMethodHookBuilder(
     private var afterAction: ((XC_MethodHook.MethodHookParam) -> Unit)? = null
     private var replaceAction: ((XC_MethodHook.MethodHookParam) -> Any?)? = null
     private var checkEnabled: Boolean = false  // 标记是否需要检查启用状态
+    private val profile = (hookItem as? BaseHookItem)?.profile
 
     fun hook(block: HookConfigBuilder.() -> Unit) {
         val builder = HookConfigBuilder()
@@ -54,10 +55,7 @@ class DexMethodHookBuilder(
      * 执行 Hook
      */
     fun execute() {
-        val p = priority ?: WePrefs.getIntOrDef(
-            PreferenceKeys.HOOK_PRIORITY,
-            50
-        )
+        val p = priority ?: WeConfig.hookPriority
 
 
         XposedBridge.hookMethod(method, object : XC_MethodHook(p) {
@@ -68,13 +66,20 @@ class DexMethodHookBuilder(
                         return
                     }
 
-                    // 如果有 replace 动作，在 before 中执行
-                    replaceAction?.let {
-                        param.result = it(param)
-                    }
+                    if (replaceAction == null && beforeAction == null) return
+
+                    val start = profile?.beginInvocation() ?: 0L
+                    try {
+                        // 如果有 replace 动作，在 before 中执行
+                        replaceAction?.let {
+                            param.result = it(param)
+                        }
 
-                    // 执行 before 动作
-                    beforeAction?.invoke(param)
+                        // 执行 before 动作
+                        beforeAction?.invoke(param)
+                    } finally {
+                        profile?.endInvocation(start)
+                    }
                 } catch (e: Throwable) {
                     WeLogger.e(e)
                     ExceptionFactory.add(null, e)
@@ -88,7 +93,13 @@ class DexMethodHookBuilder(
                         return
                     }
 
-                    afterAction?.invoke(param)
+                    val action = afterAction ?: return
+                    val start = profile?.beginInvocation() ?: 0L
+                    try {
+                        action(param)
+                    } finally {
+                        profile?.endInvocation(start)
+                    }
                 } catch (e: Throwable) {
                     WeLogger.e(e)
                     ExceptionFactory.add(null, e)
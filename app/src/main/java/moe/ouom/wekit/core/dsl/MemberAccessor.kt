@@ -0,0 +1,177 @@
+package moe.ouom.wekit.core.dsl
+
+import java.lang.reflect.AccessibleObject
+import java.lang.reflect.Field
+import java.lang.reflect.Method
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * 字段查询条件，对应 KavaRef `firstField { }` 中常用的几项
+ * 条件块只在首次解析时执行一次，因此可以引用 Dex 委托解析出的类
+ */
+class FieldQuery internal constructor() {
+    var name: String? = null
+    var type: Class<*>? = null
+    internal var searchSuper = false
+
+    fun superclass() {
+        searchSuper = true
+    }
+
+    internal fun toShape() = FieldShape(name, type, searchSuper)
+}
+
+/**
+ * 方法查询条件，对应 KavaRef `firstMethod { }` 中常用的几项
+ */
+class MethodQuery internal constructor() {
+    var name: String? = null
+    var returnType: Class<*>? = null
+    private var parameterTypes: List<Class<*>>? = null
+    internal var searchSuper = false
+
+    fun parameters(vararg types: Class<*>) {
+        parameterTypes = types.toList()
+    }
+
+    fun superclass() {
+        searchSuper = true
+    }
+
+    internal fun toShape() = MethodShape(name, returnType, parameterTypes, searchSuper)
+}
+
+internal data class FieldShape(
+    val name: String?,
+    val type: Class<*>?,
+    val searchSuper: Boolean
+) {
+    fun matches(field: Field) =
+        (name == null || field.name == name) && (type == null || field.type == type)
+}
+
+internal data class MethodShape(
+    val name: String?,
+    val returnType: Class<*>?,
+    val parameterTypes: List<Class<*>>?,
+    val searchSuper: Boolean
+) {
+    fun matches(method: Method) =
+        (name == null || method.name == name) &&
+                (returnType == null || method.returnType == returnType) &&
+                (parameterTypes == null || method.parameterTypes.asList() == parameterTypes)
+}
+
+/**
+ * 全局成员解析缓存
+ *
+ * 以 (类, 查询条件) 为键保存解析结果，找不到的成员也会记住，
+ * 相同条件在不同 HookItem 中声明时共享同一份结果
+ */
+object MemberCache {
+
+    private val NOT_FOUND = Any()
+
+    private data class Key(val cls: Class<*>, val shape: Any)
+
+    private val members = ConcurrentHashMap<Key, Any>()
+
+    val size get() = members.size
+
+    internal fun field(cls: Class<*>, shape: FieldShape): Field? =
+        lookup(cls, shape) {
+            hierarchy(cls, shape.searchSuper)
+                .flatMap { it.declaredFields.asSequence() }
+                .firstOrNull(shape::matches)
+        } as Field?
+
+    internal fun method(cls: Class<*>, shape: MethodShape): Method? =
+        lookup(cls, shape) {
+            hierarchy(cls, shape.searchSuper)
+                .flatMap { it.declaredMethods.asSequence() }
+                .firstOrNull(shape::matches)
+        } as Method?
+
+    private inline fun lookup(cls: Class<*>, shape: Any, find: () -> Any?): Any? {
+        val key = Key(cls, shape)
+        val cached = members[key] ?: run {
+            val found = find()?.also { (it as AccessibleObject).isAccessible = true }
+            members.putIfAbsent(key, found ?: NOT_FOUND) ?: (found ?: NOT_FOUND)
+        }
+        return if (cached === NOT_FOUND) null else cached
+    }
+
+    private fun hierarchy(cls: Class<*>, searchSuper: Boolean) =
+        if (searchSuper) generateSequence(cls) { it.superclass } else sequenceOf(cls)
+}
+
+/**
+ * 预先声明的字段访问器
+ *
+ * 记住最近一次访问的类与解析结果，同一个类的实例重复访问时不再查表、不产生分配；
+ * 换了类才回到 [MemberCache] 查找
+ */
+class FieldAccessor internal constructor(private val block: FieldQuery.() -> Unit) {
+
+    private class Resolved(val cls: Class<*>, val field: Field?)
+
+    private val shape by lazy { FieldQuery().apply(block).toShape() }
+
+    @Volatile
+    private var last: Resolved? = null
+
+    fun fieldOf(instance: Any): Field? {
+        val cls = instance.javaClass
+        last?.let { if (it.cls === cls) return it.field }
+        return MemberCache.field(cls, shape).also { last = Resolved(cls, it) }
+    }
+
+    private fun require(instance: Any) =
+        fieldOf(instance) ?: throw NoSuchFieldException("$shape in ${instance.javaClass.name}")
+
+    fun get(instance: Any): Any? = require(instance).get(instance)
+
+    fun getOrNull(instance: Any): Any? = fieldOf(instance)?.get(instance)
+
+    fun getInt(instance: Any) = require(instance).getInt(instance)
+
+    fun getLong(instance: Any) = require(instance).getLong(instance)
+
+    fun set(instance: Any, value: Any?) = require(instance).set(instance, value)
+}
+
+/**
+ * 预先声明的方法访问器，缓存策略同 [FieldAccessor]
+ */
+class MethodAccessor internal constructor(private val block: MethodQuery.() -> Unit) {
+
+    private class Resolved(val cls: Class<*>, val method: Method?)
+
+    private val shape by lazy { MethodQuery().apply(block).toShape() }
+
+    @Volatile
+    private var last: Resolved? = null
+
+    fun methodOf(instance: Any): Method? {
+        val cls = instance.javaClass
+        last?.let { if (it.cls === cls) return it.method }
+        return MemberCache.method(cls, shape).also { last = Resolved(cls, it) }
+    }
+
+    fun invoke(instance: Any, vararg args: Any?): Any? {
+        val method = methodOf(instance)
+            ?: throw NoSuchMethodException("$shape in ${instance.javaClass.name}")
+        return method.invoke(instance, *args)
+    }
+}
+
+/**
+ * 声明字段访问器，例如
+ * ```
+ * private val userTV = fieldAccessor { name = "userTV"; superclass() }
+ * val textView = userTV.getOrNull(tag) as? TextView
+ * ```
+ */
+fun fieldAccessor(block: FieldQuery.() -> Unit) = FieldAccessor(block)
+
+fun methodAccessor(block: MethodQuery.() -> Unit) = MethodAccessor(block)
@@ -0,0 +1,26 @@
+package moe.ouom.wekit.core.model
+
+/**
+ * HookItem 的激活时机
+ *
+ * 非 [Eager] 的项在启动时只登记，等对应时机到来才调用 [BaseHookItem.enable]，
+ * 以减少宿主 Application 启动阶段的解析与 Hook 开销
+ */
+sealed interface ActivationTrigger {
+
+    /**
+     * 启动时立即激活（默认）
+     */
+    data object Eager : ActivationTrigger
+
+    /**
+     * 指定 Activity 首次创建前激活
+     * @param activityClassName Activity 的完整类名
+     */
+    data class OnActivityCreated(val activityClassName: String) : ActivationTrigger
+
+    /**
+     * 主线程首次空闲时激活
+     */
+    data object OnMainIdle : ActivationTrigger
+}
@@ -5,10 +5,11 @@ import com.highcapable.kavaref.resolver.MethodResolver
 import de.robv.android.xposed.XC_MethodHook
 import de.robv.android.xposed.XposedBridge
 import de.robv.android.xposed.XposedHelpers
-import moe.ouom.wekit.preferences.WePrefs
-import moe.ouom.wekit.constants.PreferenceKeys
+import moe.ouom.wekit.preferences.WeConfig
 import moe.ouom.wekit.hooks.utils.ExceptionFactory
+import moe.ouom.wekit.utils.TargetProcessUtils
 import moe.ouom.wekit.utils.logging.WeLogger
+import moe.ouom.wekit.utils.profiling.HookProfiler
 import java.lang.reflect.Member
 import kotlin.reflect.KClass
 
@@ -18,9 +19,19 @@ abstract class BaseHookItem {
 
     var description: String = ""
 
+    /**
+     * 生效的进程，[TargetProcessUtils] 中 PROC_* 的按位或，由 KSP 按 @HookItem(targetProcess) 生成时写入
+     */
+    var targetProcess: Int = TargetProcessUtils.PROC_MAIN
+
     var hasEnabled: Boolean = false
         private set
 
+    /**
+     * 性能统计，首次访问时按 path 创建
+     */
+    val profile: HookProfiler.ItemStats by lazy { HookProfiler.statsFor(path) }
+
     val itemName: String
         get() {
             val index = path.lastIndexOf("/")
@@ -31,7 +42,9 @@ abstract class BaseHookItem {
         if (hasEnabled) return
         runCatching {
             hasEnabled = true
+            val start = System.nanoTime()
             onEnable()
+            profile.recordEnable(start, System.nanoTime() - start)
         }.onFailure { e ->
             WeLogger.e("failed to load item", e)
             ExceptionFactory.add(this, e)
@@ -50,11 +63,16 @@ abstract class BaseHookItem {
 
     open fun onDisable() {}
 
+    /**
+     * 激活时机，耗时且不需要在启动阶段生效的项可覆写为延迟激活
+     */
+    open fun activationTrigger(): ActivationTrigger = ActivationTrigger.Eager
+
     fun hookBefore(method: Member, action: HookAction): XC_MethodHook.Unhook {
         return XposedBridge.hookMethod(
             method,
             object :
-                XC_MethodHook(WePrefs.getIntOrDef(PreferenceKeys.HOOK_PRIORITY, 50)) {
+                XC_MethodHook(WeConfig.hookPriority) {
                 override fun beforeHookedMethod(param: MethodHookParam) {
                     tryExecute(param, action)
                 }
@@ -115,7 +133,7 @@ abstract class BaseHookItem {
         return XposedBridge.hookMethod(
             method,
             object :
-                XC_MethodHook(WePrefs.getIntOrDef(PreferenceKeys.HOOK_PRIORITY, 50)) {
+                XC_MethodHook(WeConfig.hookPriority) {
                 override fun afterHookedMethod(param: MethodHookParam) {
                     tryExecute(param, action)
                 }
@@ -185,7 +203,7 @@ abstract class BaseHookItem {
         return XposedBridge.hookMethod(
             m,
             object :
-                XC_MethodHook(WePrefs.getIntOrDef(PreferenceKeys.HOOK_PRIORITY, 50)) {
+                XC_MethodHook(WeConfig.hookPriority) {
                 override fun beforeHookedMethod(param: MethodHookParam) {
                     tryExecute(param, action)
                 }
@@ -209,7 +227,7 @@ abstract class BaseHookItem {
         return XposedBridge.hookMethod(
             m,
             object :
-                XC_MethodHook(WePrefs.getIntOrDef(PreferenceKeys.HOOK_PRIORITY, 50)) {
+                XC_MethodHook(WeConfig.hookPriority) {
                 override fun afterHookedMethod(param: MethodHookParam) {
                     tryExecute(param, action)
                 }
@@ -230,7 +248,7 @@ abstract class BaseHookItem {
             clazz,
             methodName,
             object :
-                XC_MethodHook(WePrefs.getIntOrDef(PreferenceKeys.HOOK_PRIORITY, 50)) {
+                XC_MethodHook(WeConfig.hookPriority) {
                 override fun beforeHookedMethod(param: MethodHookParam) {
                     tryExecute(param, action)
                 }
@@ -259,7 +277,7 @@ abstract class BaseHookItem {
             clazz,
             methodName,
             object :
-                XC_MethodHook(WePrefs.getIntOrDef(PreferenceKeys.HOOK_PRIORITY, 50)) {
+                XC_MethodHook(WeConfig.hookPriority) {
                 override fun afterHookedMethod(param: MethodHookParam) {
                     tryExecute(param, action)
                 }
@@ -404,10 +422,13 @@ abstract class BaseHookItem {
      */
     open fun tryExecute(param: XC_MethodHook.MethodHookParam, hookAction: HookAction) {
         if (hasEnabled) {
+            val start = profile.beginInvocation()
             try {
                 hookAction(param)
             } catch (throwable: Throwable) {
                 ExceptionFactory.add(this, throwable)
+            } finally {
+                profile.endInvocation(start)
             }
         }
     }
@@ -0,0 +1,40 @@
+package moe.ouom.wekit.core.model
+
+/**
+ * KSP 按 @HookItem 生成的功能描述
+ *
+ * 启动时只需这些编译期已知的信息即可决定是否加载某一项，
+ * [factory] 仅在首次访问 [item] 时调用，未开启的项其单例不会被类初始化，
+ * 其中的 dex 委托、Regex 字段等也就不会被创建
+ */
+class HookItemDescriptor(
+    val path: String,
+    val description: String,
+    val kind: Kind,
+    val targetProcess: Int,
+    /**
+     * Api 项或声明了 alwaysRun 的项，不看开关也要实例化；
+     * alwaysRun 的返回值只有实例化后才知道，是否真正启用仍由 [ClickableHookItem.alwaysEnable] 决定
+     */
+    val mayRunWhenDisabled: Boolean,
+    val resolvesDex: Boolean,
+    val className: String,
+    private val factory: () -> BaseHookItem,
+) {
+
+    enum class Kind { Switch, Clickable, Api, Other }
+
+    private val lazyItem = lazy {
+        factory().also {
+            it.path = path
+            it.description = description
+            it.targetProcess = targetProcess
+        }
+    }
+
+    val item: BaseHookItem by lazyItem
+
+    val isInstantiated: Boolean get() = lazyItem.isInitialized()
+
+    fun runsIn(process: Int) = (targetProcess and process) != 0
+}
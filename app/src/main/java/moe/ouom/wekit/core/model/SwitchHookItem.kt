@@ -3,13 +3,10 @@ package moe.ouom.wekit.core.model
 import android.content.Context
 import de.robv.android.xposed.XC_MethodHook
 import moe.ouom.wekit.preferences.WePrefs
-import moe.ouom.wekit.utils.TargetProcessUtils
 import moe.ouom.wekit.utils.logging.WeLogger
 
 abstract class SwitchHookItem : BaseHookItem() {
 
-    val targetProcess: Int = targetProcess()
-
     private var _isEnabled: Boolean = false
     var isEnabled: Boolean
         get() = _isEnabled
@@ -40,8 +37,6 @@ abstract class SwitchHookItem : BaseHookItem() {
     private var isLoaded: Boolean = false
     private var toggleCompletionCallback: Runnable? = null
 
-    open fun targetProcess(): Int = TargetProcessUtils.PROC_MAIN
-
     open fun onBeforeToggle(newState: Boolean, context: Context): Boolean = true
 
     fun setToggleCompletionCallback(callback: Runnable) {
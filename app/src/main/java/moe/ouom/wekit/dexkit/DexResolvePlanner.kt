@@ -0,0 +1,87 @@
+package moe.ouom.wekit.dexkit
+
+import dev.ujhhgtg.nameof.nameof
+import moe.ouom.wekit.core.dsl.DexClassDelegate
+import moe.ouom.wekit.core.dsl.DexMethodDelegate
+import moe.ouom.wekit.core.dsl.DexStringQuery
+import moe.ouom.wekit.dexkit.intf.IResolvesDex
+import moe.ouom.wekit.utils.logging.WeLogger
+import org.luckypray.dexkit.DexKitBridge
+import org.luckypray.dexkit.query.enums.StringMatchType
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Dex 查找计划
+ *
+ * 在逐项执行 [IResolvesDex.resolveDex] 之前，收集所有待适配项中声明了 [DexStringQuery] 的委托，
+ * 去重后按 searchPackages 分组，分别用一次 batchFindClassUsingStrings / batchFindMethodUsingStrings 查完，
+ * 之后各委托的 resolve() 直接复用结果
+ *
+ * 结果仅在一次适配流程内有效，结束后需调用 [clear]
+ */
+object DexResolvePlanner {
+
+    private val TAG = nameof(DexResolvePlanner)
+
+    private val classResults = ConcurrentHashMap<DexStringQuery, List<String>>()
+    private val methodResults = ConcurrentHashMap<DexStringQuery, List<DexMethodDescriptor>>()
+
+    fun getClassResults(query: DexStringQuery): List<String>? = classResults[query]
+
+    fun getMethodResults(query: DexStringQuery): List<DexMethodDescriptor>? = methodResults[query]
+
+    fun prepare(dexKit: DexKitBridge, items: List<IResolvesDex>) {
+        clear()
+
+        val classQueries = LinkedHashSet<DexStringQuery>()
+        val methodQueries = LinkedHashSet<DexStringQuery>()
+        var declared = 0
+        items.forEach { item ->
+            item.collectDexDelegates().values.forEach { delegate ->
+                when (delegate) {
+                    is DexClassDelegate -> delegate.query?.let { declared++; classQueries.add(it) }
+                    is DexMethodDelegate -> delegate.query?.let { declared++; methodQueries.add(it) }
+                }
+            }
+        }
+
+        if (classQueries.isEmpty() && methodQueries.isEmpty()) return
+
+        val startTime = System.currentTimeMillis()
+
+        classQueries.groupBy { it.searchPackages }.forEach { (packages, queries) ->
+            val groups = queries.withIndex().associate { (i, q) -> "q$i" to q }
+            val found = dexKit.batchFindClassUsingStrings {
+                if (packages.isNotEmpty()) searchPackages(*packages.toTypedArray())
+                groups(groups.mapValues { it.value.strings }, StringMatchType.Equals)
+            }
+            groups.forEach { (name, query) ->
+                classResults[query] = found[name]?.map { it.name } ?: emptyList()
+            }
+        }
+
+        methodQueries.groupBy { it.searchPackages }.forEach { (packages, queries) ->
+            val groups = queries.withIndex().associate { (i, q) -> "q$i" to q }
+            val found = dexKit.batchFindMethodUsingStrings {
+                if (packages.isNotEmpty()) searchPackages(*packages.toTypedArray())
+                groups(groups.mapValues { it.value.strings }, StringMatchType.Equals)
+            }
+            groups.forEach { (name, query) ->
+                methodResults[query] = found[name]
+                    ?.map { DexMethodDescriptor(it.className, it.methodName, it.methodSign) }
+                    ?: emptyList()
+            }
+        }
+
+        WeLogger.i(
+            TAG,
+            "batched $declared declared queries into ${classQueries.size} class + ${methodQueries.size} method lookups " +
+                    "in ${System.currentTimeMillis() - startTime}ms"
+        )
+    }
+
+    fun clear() {
+        classResults.clear()
+        methodResults.clear()
+    }
+}
@@ -0,0 +1,193 @@
+package moe.ouom.wekit.dexkit
+
+import android.app.Activity
+import android.content.pm.ApplicationInfo
+import android.os.Handler
+import android.os.Looper
+import dev.ujhhgtg.nameof.nameof
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.asCoroutineDispatcher
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.update
+import kotlinx.coroutines.launch
+import moe.ouom.wekit.core.model.BaseHookItem
+import moe.ouom.wekit.dexkit.cache.DexCacheManager
+import moe.ouom.wekit.dexkit.intf.IResolvesDex
+import moe.ouom.wekit.ui.content.DexResolverDialogContent
+import moe.ouom.wekit.ui.utils.showComposeDialog
+import moe.ouom.wekit.utils.logging.WeLogger
+import org.luckypray.dexkit.DexKitBridge
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * 后台 Dex 适配服务
+ *
+ * 宿主启动后立即在有界线程池中扫描缓存失效的项，不再等待用户在弹窗中确认；
+ * 每一项扫描成功后立刻写入内存缓存并通过回调热加载，整批结束后一次性写盘；弹窗只负责展示进度与失败信息
+ */
+object DexResolveService {
+
+    private val TAG = nameof(DexResolveService)
+
+    private const val MAX_PARALLELISM = 4
+
+    // LauncherUI 创建后稍等片刻再弹窗，确保 Activity 已初始化完成
+    private const val DIALOG_DELAY_MS = 1500L
+
+    sealed class ScanResult {
+        abstract val path: String
+
+        data class Success(override val path: String) : ScanResult()
+        data class Failed(override val path: String, val error: Exception) : ScanResult()
+    }
+
+    data class Progress(
+        val total: Int,
+        val completed: Int = 0,
+        val currentTask: String = "",
+        val failed: List<ScanResult.Failed> = emptyList(),
+        val finished: Boolean = false,
+        val fatalError: String? = null
+    )
+
+    private val _progress = MutableStateFlow<Progress?>(null)
+
+    /**
+     * 当前进程中适配流程的进度，未启动时为 null
+     */
+    val progress: StateFlow<Progress?> = _progress.asStateFlow()
+
+    private val lock = Any()
+    private var running = false
+    private val queued = LinkedHashMap<IResolvesDex, (IResolvesDex) -> Unit>()
+    private val dialogShown = AtomicBoolean(false)
+
+    /**
+     * 启动后台适配；已有一批在进行时排队，当前批次结束后接着处理
+     * @param onResolved 某一项适配成功并写入缓存后调用，运行在后台线程
+     */
+    fun start(
+        appInfo: ApplicationInfo,
+        items: List<IResolvesDex>,
+        onResolved: (IResolvesDex) -> Unit
+    ) {
+        if (items.isEmpty()) return
+        synchronized(lock) {
+            if (running) {
+                items.forEach { queued.putIfAbsent(it, onResolved) }
+                return
+            }
+            running = true
+        }
+        runBatch(appInfo, items.associateWith { onResolved })
+    }
+
+    private fun runBatch(appInfo: ApplicationInfo, batch: Map<IResolvesDex, (IResolvesDex) -> Unit>) {
+        val items = batch.keys.toList()
+        WeLogger.i(TAG, "resolving ${items.size} items in background")
+        _progress.value = Progress(total = items.size)
+
+        val threadIndex = AtomicInteger()
+        val executor = Executors.newFixedThreadPool(MAX_PARALLELISM) { runnable ->
+            Thread(runnable, "WeKit-DexResolve-${threadIndex.incrementAndGet()}").apply {
+                isDaemon = true
+                priority = Thread.NORM_PRIORITY - 1
+            }
+        }
+        val dispatcher = executor.asCoroutineDispatcher()
+
+        CoroutineScope(dispatcher + SupervisorJob()).launch {
+            val startTime = System.currentTimeMillis()
+            try {
+                DexKitBridge.create(appInfo.sourceDir).use { dexKit ->
+                    runCatching { DexResolvePlanner.prepare(dexKit, items) }
+                        .onFailure { WeLogger.w(TAG, "batch planning failed, falling back to per-item queries", it) }
+
+                    items.map { item ->
+                        async { scanItem(item, dexKit, batch.getValue(item)) }
+                    }.awaitAll()
+                }
+                WeLogger.i(TAG, "background resolution finished in ${System.currentTimeMillis() - startTime}ms")
+            } catch (e: Exception) {
+                WeLogger.e(TAG, "Scanning failed", e)
+                _progress.update { it?.copy(fatalError = "扫描过程中发生未知错误: ${e.message}") }
+            } finally {
+                DexCacheManager.flush()
+                DexResolvePlanner.clear()
+                _progress.update { it?.copy(finished = true) }
+                dispatcher.close()
+
+                val next = synchronized(lock) {
+                    if (queued.isEmpty()) {
+                        running = false
+                        null
+                    } else {
+                        LinkedHashMap(queued).also { queued.clear() }
+                    }
+                }
+                next?.let { runBatch(appInfo, it) }
+            }
+        }
+    }
+
+    private fun scanItem(
+        item: IResolvesDex,
+        dexKit: DexKitBridge,
+        onResolved: (IResolvesDex) -> Unit
+    ): ScanResult {
+        val path = if (item is BaseHookItem) item.path else item::class.java.simpleName
+        _progress.update { it?.copy(currentTask = "正在适配: $path") }
+
+        val result = try {
+            val descriptors = item.resolveDex(dexKit)
+            WeLogger.i(
+                TAG,
+                "Total descriptors: ${descriptors.size}, keys: ${descriptors.keys}"
+            )
+            DexCacheManager.saveItemCache(item, descriptors)
+            ScanResult.Success(path)
+        } catch (e: Exception) {
+            WeLogger.e(TAG, "Failed to scan: $path", e)
+            ScanResult.Failed(path, e)
+        }
+
+        _progress.update { p ->
+            p?.copy(
+                completed = p.completed + 1,
+                currentTask = if (result is ScanResult.Failed) "失败: $path" else "已完成: $path",
+                failed = if (result is ScanResult.Failed) p.failed + result else p.failed
+            )
+        }
+
+        if (result is ScanResult.Success) {
+            runCatching { onResolved(item) }
+                .onFailure { WeLogger.e(TAG, "failed to hot-load $path", it) }
+        }
+        return result
+    }
+
+    /**
+     * LauncherUI 创建时调用，若适配仍在进行或有失败项则弹出进度窗口
+     */
+    fun onLauncherUiCreated(activity: Activity) {
+        if (_progress.value == null || dialogShown.get()) return
+
+        Handler(Looper.getMainLooper()).postDelayed({
+            val p = _progress.value ?: return@postDelayed
+            if (p.finished && p.failed.isEmpty() && p.fatalError == null) return@postDelayed
+            if (activity.isFinishing || activity.isDestroyed) return@postDelayed
+            if (!dialogShown.compareAndSet(false, true)) return@postDelayed
+
+            showComposeDialog(activity) {
+                DexResolverDialogContent(activity, onDismiss = onDismiss)
+            }
+        }, DIALOG_DELAY_MS)
+    }
+}
@@ -18,50 +18,101 @@ import kotlin.io.path.exists
 import kotlin.io.path.listDirectoryEntries
 import kotlin.io.path.name
 import kotlin.io.path.readText
-import kotlin.io.path.writeText
 
 /**
  * Dex 缓存管理器
  * 负责管理 Dex 查找结果的缓存，支持版本控制和增量更新
+ * 所有条目保存在单个二进制文件中，详见 [DexCacheStore]
  */
 object DexCacheManager {
 
     private val TAG = nameof(DexCacheManager)
 
     private const val CACHE_DIR_NAME = "dex_cache"
-    private const val HOST_VERSION_FILE = "host_version.txt"
-    private const val CACHE_FILE_SUFFIX = ".json"
+    private const val CACHE_FILE_NAME = "descriptors.bin"
+
+    // 旧版缓存：每个 HookItem 一个 JSON 文件，启动时自动迁移
+    private const val LEGACY_HOST_VERSION_FILE = "host_version.txt"
+    private const val LEGACY_CACHE_FILE_SUFFIX = ".json"
+    private val LEGACY_META_KEYS = setOf("methodHash", "hostVersion", "timestamp")
+
     private lateinit var cacheDir: Path
+    private lateinit var store: DexCacheStore
     private var currentHostVersion: String = ""
 
-    fun init(hostVersion: String) {
+    /**
+     * @param dexItemPaths 所有需要 Dex 查找的项的 path，旧版缓存文件名由 path 推出、无法反推，
+     * 迁移时据此认领全部旧条目，不论该项本次启动是否开启
+     */
+    fun init(hostVersion: String, dexItemPaths: Collection<String>) {
         cacheDir = PathUtils.moduleDataPath!! / CACHE_DIR_NAME
         cacheDir.createDirectories()
 
         currentHostVersion = hostVersion
+        store = DexCacheStore(cacheDir / CACHE_FILE_NAME)
+
+        val cachedVersion = try {
+            if (store.open()) store.hostVersion else readLegacyHostVersion()
+        } catch (e: Exception) {
+            WeLogger.e(TAG, "dex cache file corrupted, discarding", e)
+            store.delete()
+            null
+        }
 
         // 检查宿主版本是否变化
-        val versionFile = cacheDir / HOST_VERSION_FILE
-        if (versionFile.exists()) {
-            val cachedVersion = versionFile.readText().trim()
-            if (cachedVersion != hostVersion) {
-                WeLogger.i(
-                    TAG,
-                    "Host version changed: $cachedVersion -> $hostVersion, clearing all cache"
-                )
-                clearAllCache()
+        if (cachedVersion != null && cachedVersion != hostVersion) {
+            WeLogger.i(
+                TAG,
+                "Host version changed: $cachedVersion -> $hostVersion, clearing all cache"
+            )
+            clearAllCache()
 
-                // 重置"禁用版本适配"配置，确保新版本能够正常适配
-                WePrefs.putBool(PreferenceKeys.NO_DEX_RESOLVE, false)
-                WeLogger.i(
-                    TAG,
-                    "Reset disable_version_adaptation to false due to version change"
-                )
-            }
+            // 重置"禁用版本适配"配置，确保新版本能够正常适配
+            WePrefs.putBool(PreferenceKeys.NO_DEX_RESOLVE, false)
+            WeLogger.i(
+                TAG,
+                "Reset disable_version_adaptation to false due to version change"
+            )
+            return
         }
 
+        migrateLegacyCache(dexItemPaths)
+
         // 保存当前版本
-        versionFile.writeText(hostVersion)
+        if (store.hostVersion != hostVersion) {
+            store.setHostVersion(hostVersion)
+            persist()
+        }
+    }
+
+    /**
+     * 单次遍历完成缓存校验与 descriptor 加载
+     *
+     * 只读写内存，可以在主线程调用；加载失败的条目从内存中移除，随下一次 [flush] 写盘
+     * @param items 需要 Dex 查找的 HookItem
+     * @return 缓存缺失、过期或损坏，需要重新查找的项
+     */
+    fun loadCachedItems(items: List<IResolvesDex>): List<IResolvesDex> {
+        val brokenItems = mutableListOf<IResolvesDex>()
+
+        items.forEach { item ->
+            val path = (item as? BaseHookItem)?.path
+            val entry = path?.let { store[it] }
+            if (entry == null || !isEntryValid(item, path, entry)) {
+                brokenItems.add(item)
+                return@forEach
+            }
+
+            try {
+                item.loadFromCache(entry.descriptors)
+            } catch (e: Exception) {
+                // 捕获所有异常，视为缓存损坏
+                WeLogger.e(TAG, "Cache load failed for $path", e)
+                store.remove(path)
+                brokenItems.add(item)
+            }
+        }
+        return brokenItems
     }
 
     /**
@@ -75,64 +126,39 @@ object DexCacheManager {
             return false
         }
 
-        val cacheFile = getCacheFile(item.path)
-        if (!cacheFile.exists()) {
+        val entry = store[item.path] ?: run {
             WeLogger.d(TAG, "Cache not found for: ${item.path}")
             return false
         }
+        return isEntryValid(item, item.path, entry)
+    }
 
-        try {
-            val json = JSONObject(cacheFile.readText())
-
-            val cachedMethodHash = json.optString("methodHash", "")
-            val currentMethodHash = calculateMethodHash(item)
-
-            if (cachedMethodHash != currentMethodHash) {
-                WeLogger.d(
-                    TAG,
-                    "dex location method of ${item.path} changed: cached=$cachedMethodHash, current=$currentMethodHash"
-                )
-                return false
-            }
-
-            // 检查缓存数据是否为空
-            val dataKeys = json.keys().asSequence()
-                .filter { key -> key !in listOf("methodHash", "hostVersion", "timestamp") }
-                .toList()
-
-            if (dataKeys.isEmpty()) {
-                WeLogger.d(TAG, "Cache is empty for: ${item.path}, need rescan")
-                return false
-            }
-
-            // 验证缓存数据的完整性：检查所有值是否有效
-            var hasInvalidData = false
-            for (key in dataKeys) {
-                val value = json.optString(key, "")
-                if (value.isEmpty() || value == "null") {
-                    WeLogger.d(
-                        TAG,
-                        "Cache has invalid data for key: $key in ${item.path}"
-                    )
-                    hasInvalidData = true
-                    break
-                }
-            }
+    private fun isEntryValid(item: IResolvesDex, path: String, entry: DexCacheStore.Entry): Boolean {
+        val currentMethodHash = calculateMethodHash(item)
+        if (entry.methodHash != currentMethodHash) {
+            WeLogger.d(
+                TAG,
+                "dex location method of $path changed: cached=${entry.methodHash}, current=$currentMethodHash"
+            )
+            return false
+        }
 
-            if (hasInvalidData) {
-                WeLogger.d(
-                    TAG,
-                    "Cache data incomplete for: ${item.path}, need rescan"
-                )
-                return false
-            }
+        // 检查缓存数据是否为空
+        if (entry.descriptors.isEmpty()) {
+            WeLogger.d(TAG, "Cache is empty for: $path, need rescan")
+            return false
+        }
 
-//            WeLogger.d(TAG, "Cache valid for: ${item.path}, keys: $dataKeys")
-            return true
-        } catch (e: Exception) {
-            WeLogger.e("DexCacheManager: Failed to read cache for: ${item.path}", e)
+        // 验证缓存数据的完整性：检查所有值是否有效
+        val invalidKey = entry.descriptors.entries
+            .firstOrNull { (_, value) -> value.isEmpty() || value == "null" }
+            ?.key
+        if (invalidKey != null) {
+            WeLogger.d(TAG, "Cache has invalid data for key: $invalidKey in $path, need rescan")
             return false
         }
+
+        return true
     }
 
     /**
@@ -176,80 +202,129 @@ object DexCacheManager {
         }
     }
 
+    /**
+     * 只写入内存，批量适配结束后由调用方统一 [flush]
+     */
     fun saveItemCache(item: IResolvesDex, data: Map<String, Any>) {
         if (item !is BaseHookItem) {
             WeLogger.w(TAG, "Item is not BaseHookItem, cannot get path")
             return
         }
 
-        val cacheFile = getCacheFile(item.path)
         try {
-            val json = JSONObject()
-            json.put("methodHash", calculateMethodHash(item))
-            json.put("hostVersion", currentHostVersion)
-            json.put("timestamp", System.currentTimeMillis())
-
-            // 保存自定义数据
-            data.forEach { (key, value) ->
-                json.put(key, value)
-            }
-
-            cacheFile.writeText(json.toString(2))
+            store.put(
+                item.path,
+                DexCacheStore.Entry(
+                    calculateMethodHash(item),
+                    System.currentTimeMillis(),
+                    data.mapValues { (_, value) -> value.toString() }
+                )
+            )
             WeLogger.d(TAG, "Cache saved for: ${item.path}")
         } catch (e: Exception) {
             WeLogger.e("DexCacheManager: Failed to save cache for: ${item.path}", e)
         }
     }
 
+    /**
+     * 将本进程的改动合并写入磁盘
+     */
+    fun flush() = persist()
+
     fun loadItemCache(item: IResolvesDex): Map<String, Any>? {
         if (item !is BaseHookItem) {
             WeLogger.w(TAG, "Item is not BaseHookItem, cannot get path")
             return null
         }
 
-        val cacheFile = getCacheFile(item.path)
-        if (!cacheFile.exists()) {
-            return null
-        }
-
-        try {
-            val json = JSONObject(cacheFile.readText())
-            val result = mutableMapOf<String, Any>()
-
-            json.keys().forEach { key ->
-                if (key !in listOf("methodHash", "hostVersion", "timestamp")) {
-                    result[key] = json.get(key)
-                }
-            }
-
-            return result
+        return try {
+            store[item.path]?.descriptors
         } catch (e: Exception) {
             WeLogger.e("DexCacheManager: Failed to load cache for: ${item.path}", e)
-            return null
+            null
         }
     }
 
     fun deleteCache(path: String) {
-        val cacheFile = getCacheFile(path)
-        cacheFile.deleteIfExists()
+        if (store.remove(path)) {
+            persist()
+        }
     }
 
     fun clearAllCache() {
-        cacheDir.listDirectoryEntries().forEach { path ->
-            if (path.name != HOST_VERSION_FILE) {
-                path.deleteIfExists()
-            }
-        }
+        store.clear(currentHostVersion)
+        persist()
+        deleteLegacyFiles()
         WeLogger.i(TAG, "All cache cleared")
     }
 
-    private fun getCacheFile(path: String): Path {
+    fun getOutdatedItems(items: List<IResolvesDex>): List<IResolvesDex> {
+        return items.filter { !isItemCacheValid(it) }
+    }
+
+    private fun persist() {
+        runCatching { store.flush() }
+            .onFailure { WeLogger.e(TAG, "failed to write dex cache", it) }
+    }
+
+    private fun readLegacyHostVersion(): String? {
+        val versionFile = cacheDir / LEGACY_HOST_VERSION_FILE
+        return if (versionFile.exists()) versionFile.readText().trim() else null
+    }
+
+    private fun legacyFileName(path: String): String {
         // 将路径转换为文件名（替换 / 为 _）
-        val fileName = path.replace("/", "_") + CACHE_FILE_SUFFIX
-        return cacheDir / fileName
+        return path.replace("/", "_")
     }
 
-    fun getOutdatedItems(items: List<IResolvesDex>): List<IResolvesDex> {
-        return items.filter { !isItemCacheValid(it) }
+    private fun legacyFiles() =
+        cacheDir.listDirectoryEntries("*$LEGACY_CACHE_FILE_SUFFIX")
+
+    /**
+     * 旧版缓存：每个 HookItem 一个 JSON 文件，启动时一次性按 [paths] 转入新缓存，写盘后删除 JSON 文件；
+     * 未被任何 path 认领的条目视为已废弃
+     */
+    private fun migrateLegacyCache(paths: Collection<String>) {
+        val files = legacyFiles()
+        if (files.isEmpty()) {
+            (cacheDir / LEGACY_HOST_VERSION_FILE).deleteIfExists()
+            return
+        }
+
+        val legacyEntries = HashMap<String, DexCacheStore.Entry>()
+        files.forEach { file ->
+            runCatching {
+                val json = JSONObject(file.readText())
+                val descriptors = LinkedHashMap<String, String>()
+                json.keys().forEach { key ->
+                    if (key !in LEGACY_META_KEYS) {
+                        descriptors[key] = json.optString(key, "")
+                    }
+                }
+                legacyEntries[file.name.removeSuffix(LEGACY_CACHE_FILE_SUFFIX)] =
+                    DexCacheStore.Entry(
+                        json.optString("methodHash", ""),
+                        json.optLong("timestamp", 0L),
+                        descriptors
+                    )
+            }.onFailure { WeLogger.w(TAG, "skipping unreadable legacy cache ${file.name}: ${it.message}") }
+        }
+
+        var migrated = 0
+        paths.forEach { path ->
+            val entry = legacyEntries[legacyFileName(path)] ?: return@forEach
+            if (store[path] == null) {
+                store.put(path, entry)
+                migrated++
+            }
+        }
+        persist()
+        deleteLegacyFiles()
+        WeLogger.i(TAG, "legacy json dex cache migrated, $migrated of ${legacyEntries.size} entries claimed")
+    }
+
+    private fun deleteLegacyFiles() {
+        legacyFiles().forEach { it.deleteIfExists() }
+        (cacheDir / LEGACY_HOST_VERSION_FILE).deleteIfExists()
     }
 }
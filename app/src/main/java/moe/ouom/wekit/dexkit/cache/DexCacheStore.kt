@@ -0,0 +1,268 @@
+package moe.ouom.wekit.dexkit.cache
+
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import kotlin.io.path.createTempFile
+import kotlin.io.path.deleteIfExists
+import kotlin.io.path.exists
+import kotlin.io.path.moveTo
+import kotlin.io.path.name
+import kotlin.io.path.readBytes
+import kotlin.io.path.writeBytes
+
+/**
+ * 单文件二进制 Dex 缓存
+ *
+ * 文件布局 (大端序):
+ * ```
+ * magic      u32   'WKDC'
+ * version    u16
+ * hostVer    str
+ * count      u32
+ * index      count × (path str, offset u32)   // offset 相对文件起始
+ * entries    methodHash str, timestamp i64, n u16, n × (key str, value str)
+ * ```
+ * 其中 str 为 u16 长度前缀的 UTF-8 字节
+ *
+ * 启动时只映射文件并解析索引，条目在首次访问时才解码
+ *
+ * 多个宿主进程共用同一文件，[flush] 在文件锁内重新读取磁盘上的内容，
+ * 只合并本进程写入或删除的条目，不会用启动时的旧快照覆盖其他进程的更新
+ */
+internal class DexCacheStore(private val file: Path) {
+
+    class Entry(
+        val methodHash: String,
+        val timestamp: Long,
+        val descriptors: Map<String, String>
+    )
+
+    var hostVersion: String = ""
+        private set
+
+    private var buffer: ByteBuffer? = null
+    private val offsets = HashMap<String, Int>()
+    private val entries = HashMap<String, Entry>()
+
+    // 本进程自上次 flush 以来的改动
+    private val changed = HashSet<String>()
+    private val removed = HashSet<String>()
+    private var replaceAll = false
+
+    private val lockFile: Path = file.resolveSibling("${file.name}.lock")
+
+    /**
+     * 映射并解析索引
+     * @return 文件不存在时返回 false；文件损坏时抛出异常
+     */
+    @Synchronized
+    fun open(): Boolean {
+        reset()
+        if (!file.exists()) return false
+
+        val buf = mapFile()
+        hostVersion = readIndex(buf, offsets)
+        buffer = buf
+        return true
+    }
+
+    @Synchronized
+    operator fun get(path: String): Entry? {
+        entries[path]?.let { return it }
+        val offset = offsets[path] ?: return null
+        return buffer!!.readEntry(offset).also { entries[path] = it }
+    }
+
+    @Synchronized
+    fun put(path: String, entry: Entry) {
+        entries[path] = entry
+        offsets.remove(path)
+        changed.add(path)
+        removed.remove(path)
+    }
+
+    @Synchronized
+    fun remove(path: String): Boolean {
+        val existed = (entries.remove(path) != null) or (offsets.remove(path) != null)
+        if (existed) {
+            changed.remove(path)
+            removed.add(path)
+        }
+        return existed
+    }
+
+    /**
+     * 清空全部条目，下一次 [flush] 不再合并磁盘上的内容
+     */
+    @Synchronized
+    fun clear(hostVersion: String) {
+        reset()
+        this.hostVersion = hostVersion
+        replaceAll = true
+    }
+
+    @Synchronized
+    fun setHostVersion(hostVersion: String) {
+        this.hostVersion = hostVersion
+    }
+
+    /**
+     * 在文件锁内读取磁盘上的最新内容，合并本进程的改动后写入临时文件并原子替换，
+     * 避免其他进程读到半截文件，也不会丢失其他进程在此期间写入的条目
+     */
+    @Synchronized
+    fun flush() {
+        FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE).use { channel ->
+            channel.lock().use {
+                val merged = LinkedHashMap<String, Entry>()
+                if (!replaceAll) {
+                    // 其他宿主版本留下的条目没有意义，直接丢弃
+                    readDisk()?.let { (diskHostVersion, diskEntries) ->
+                        if (diskHostVersion == hostVersion) merged.putAll(diskEntries)
+                    }
+                }
+                removed.forEach { merged.remove(it) }
+                changed.forEach { path -> entries[path]?.let { merged[path] = it } }
+
+                write(merged)
+
+                // 旧映射已失效，后续读取全部走内存中的条目
+                buffer = null
+                offsets.clear()
+                entries.clear()
+                entries.putAll(merged)
+                changed.clear()
+                removed.clear()
+                replaceAll = false
+            }
+        }
+    }
+
+    @Synchronized
+    fun delete() {
+        reset()
+        file.deleteIfExists()
+    }
+
+    private fun readDisk(): Pair<String, Map<String, Entry>>? {
+        if (!file.exists()) return null
+        return runCatching {
+            val buf = mapFile()
+            val diskOffsets = HashMap<String, Int>()
+            val diskHostVersion = readIndex(buf, diskOffsets)
+            diskHostVersion to diskOffsets.mapValues { (_, offset) -> buf.readEntry(offset) }
+        }.getOrNull() // 磁盘上的文件损坏时以本进程的内容为准
+    }
+
+    private fun write(content: Map<String, Entry>) {
+        val body = ByteArrayOutputStream()
+        val bodyOut = DataOutputStream(body)
+        val bodyOffsets = LinkedHashMap<String, Int>(content.size * 2)
+        content.forEach { (path, entry) ->
+            bodyOffsets[path] = bodyOut.size()
+            bodyOut.writeStr(entry.methodHash)
+            bodyOut.writeLong(entry.timestamp)
+            bodyOut.writeShort(entry.descriptors.size)
+            entry.descriptors.forEach { (key, value) ->
+                bodyOut.writeStr(key)
+                bodyOut.writeStr(value)
+            }
+        }
+        bodyOut.flush()
+
+        val header = ByteArrayOutputStream()
+        val headerOut = DataOutputStream(header)
+        headerOut.writeInt(MAGIC)
+        headerOut.writeShort(VERSION)
+        headerOut.writeStr(hostVersion)
+        headerOut.writeInt(bodyOffsets.size)
+        // 先计算索引长度，才能得到条目的绝对偏移
+        val indexSize = bodyOffsets.keys.sumOf { 2 + it.toByteArray(Charsets.UTF_8).size + 4 }
+        val base = headerOut.size() + indexSize
+        bodyOffsets.forEach { (path, offset) ->
+            headerOut.writeStr(path)
+            headerOut.writeInt(base + offset)
+        }
+        headerOut.flush()
+
+        // 多个宿主进程可能同时写入，临时文件名不能固定
+        val tmp = createTempFile(file.parent, file.name, ".tmp")
+        tmp.writeBytes(header.toByteArray() + body.toByteArray())
+        tmp.moveTo(file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+    }
+
+    private fun reset() {
+        buffer = null
+        offsets.clear()
+        entries.clear()
+        changed.clear()
+        removed.clear()
+        replaceAll = false
+        hostVersion = ""
+    }
+
+    /**
+     * 解析文件头与索引，返回宿主版本
+     */
+    private fun readIndex(buf: ByteBuffer, into: MutableMap<String, Int>): String {
+        if (buf.remaining() < 6 || buf.int != MAGIC) {
+            throw IllegalStateException("bad dex cache magic in ${file.name}")
+        }
+        val version = buf.short.toInt() and 0xFFFF
+        if (version != VERSION) {
+            throw IllegalStateException("unsupported dex cache version $version")
+        }
+        val host = buf.readStr()
+        val count = buf.int
+        repeat(count) {
+            val path = buf.readStr()
+            into[path] = buf.int
+        }
+        return host
+    }
+
+    private fun ByteBuffer.readEntry(offset: Int): Entry {
+        val buf = duplicate()
+        buf.position(offset)
+        val methodHash = buf.readStr()
+        val timestamp = buf.long
+        val n = buf.short.toInt() and 0xFFFF
+        val descriptors = LinkedHashMap<String, String>(n * 2)
+        repeat(n) { descriptors[buf.readStr()] = buf.readStr() }
+        return Entry(methodHash, timestamp, descriptors)
+    }
+
+    private fun mapFile(): ByteBuffer =
+        runCatching {
+            FileChannel.open(file, StandardOpenOption.READ).use { channel ->
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+            }
+        }.getOrElse {
+            // 部分存储 (如 FUSE) 不支持 mmap，退回到一次性读取
+            ByteBuffer.wrap(file.readBytes())
+        }
+
+    private fun ByteBuffer.readStr(): String {
+        val len = short.toInt() and 0xFFFF
+        val bytes = ByteArray(len)
+        get(bytes)
+        return String(bytes, Charsets.UTF_8)
+    }
+
+    private fun DataOutputStream.writeStr(value: String) {
+        val bytes = value.toByteArray(Charsets.UTF_8)
+        require(bytes.size <= 0xFFFF) { "string too long for dex cache: ${bytes.size}" }
+        writeShort(bytes.size)
+        write(bytes)
+    }
+
+    companion object {
+        private const val MAGIC = 0x574B4443 // 'WKDC'
+        private const val VERSION = 1
+    }
+}
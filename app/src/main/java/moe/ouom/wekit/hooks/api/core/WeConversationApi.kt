@@ -5,6 +5,7 @@ import com.highcapable.kavaref.KavaRef.Companion.asResolver
 import dev.ujhhgtg.nameof.nameof
 import moe.ouom.wekit.core.dsl.dexClass
 import moe.ouom.wekit.core.dsl.dexMethod
+import moe.ouom.wekit.core.dsl.eqStrings
 import moe.ouom.wekit.core.model.ApiHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
@@ -19,8 +20,20 @@ object WeConversationApi : ApiHookItem(), IResolvesDex {
     val methodUpdateUnreadByTalker by dexMethod()
     val methodHiddenConvParent by dexMethod()
     val methodGetConvByName by dexMethod()
-    private val methodChatroomStorageGetMemberCount by dexMethod()
-    private val classChatroomMember by dexClass()
+    private val methodChatroomStorageGetMemberCount by dexMethod(
+        eqStrings(
+            "MicroMsg.ChatroomStorage",
+            "[getMemberCount] cost:%sms",
+            searchPackages = listOf("com.tencent.mm.storage")
+        )
+    )
+    private val classChatroomMember by dexClass(
+        eqStrings(
+            "MicroMsg.ChatRoomMember",
+            "service is null",
+            searchPackages = listOf("com.tencent.mm.storage")
+        )
+    )
 
     val conversationStorage by lazy {
         WeServiceApi.storageFeatureService.asResolver()
@@ -188,19 +201,9 @@ object WeConversationApi : ApiHookItem(), IResolvesDex {
             }
         }
 
-        methodChatroomStorageGetMemberCount.find(dexKit, descriptors) {
-            searchPackages("com.tencent.mm.storage")
-            matcher {
-                usingEqStrings("MicroMsg.ChatroomStorage", "[getMemberCount] cost:%sms")
-            }
-        }
+        methodChatroomStorageGetMemberCount.resolve(dexKit, descriptors)
 
-        classChatroomMember.find(dexKit, descriptors) {
-            searchPackages("com.tencent.mm.storage")
-            matcher {
-                usingEqStrings("MicroMsg.ChatRoomMember", "service is null")
-            }
-        }
+        classChatroomMember.resolve(dexKit, descriptors)
 
         return descriptors
     }
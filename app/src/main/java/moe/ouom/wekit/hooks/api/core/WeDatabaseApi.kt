@@ -6,6 +6,7 @@ import com.highcapable.kavaref.KavaRef.Companion.asResolver
 import dev.ujhhgtg.nameof.nameof
 import moe.ouom.wekit.core.dsl.dexClass
 import moe.ouom.wekit.core.dsl.dexMethod
+import moe.ouom.wekit.core.dsl.eqStrings
 import moe.ouom.wekit.core.model.ApiHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
@@ -26,11 +27,27 @@ import java.lang.reflect.Modifier
 @HookItem(path = "API/数据库服务", desc = "提供数据库直接查询能力")
 object WeDatabaseApi : ApiHookItem(), IResolvesDex {
 
-    val classMmKernel by dexClass()
+    val classMmKernel by dexClass(
+        eqStrings(
+            "MicroMsg.MMKernel",
+            "Kernel not null, has initialized."
+        )
+    )
     private val methodGetStorage by dexMethod()
-    private val classCoreStorage by dexClass()
-    private val classConfigStorage by dexClass()
-    private val classSqliteDbWrapper by dexClass()
+    private val classCoreStorage by dexClass(
+        eqStrings(
+            "MMKernel.CoreStorage",
+            "CheckData path[%s] blocksize:%s blockcount:%s availcount:%s"
+        )
+    )
+    private val classConfigStorage by dexClass(
+        eqStrings(
+            "MicroMsg.ConfigStorage",
+            "shouldProcessEvent db is close :%s",
+            searchPackages = listOf("com.tencent.mm.storage")
+        )
+    )
+    private val classSqliteDbWrapper by dexClass(eqStrings("MicroMsg.SqliteDB", "sql is null "))
 
     lateinit var dbInstance: Any
     lateinit var rawQueryMethod: Method
@@ -179,20 +196,9 @@ object WeDatabaseApi : ApiHookItem(), IResolvesDex {
     override fun resolveDex(dexKit: DexKitBridge): Map<String, String> {
         val descriptors = mutableMapOf<String, String>()
 
-        classMmKernel.find(dexKit, descriptors) {
-            matcher {
-                usingEqStrings("MicroMsg.MMKernel", "Kernel not null, has initialized.")
-            }
-        }
+        classMmKernel.resolve(dexKit, descriptors)
 
-        classCoreStorage.find(dexKit, descriptors) {
-            matcher {
-                usingEqStrings(
-                    "MMKernel.CoreStorage",
-                    "CheckData path[%s] blocksize:%s blockcount:%s availcount:%s"
-                )
-            }
-        }
+        classCoreStorage.resolve(dexKit, descriptors)
 
         methodGetStorage.find(dexKit, descriptors, true) {
             matcher {
@@ -203,18 +209,9 @@ object WeDatabaseApi : ApiHookItem(), IResolvesDex {
             }
         }
 
-        classConfigStorage.find(dexKit, descriptors) {
-            searchPackages("com.tencent.mm.storage")
-            matcher {
-                usingEqStrings("MicroMsg.ConfigStorage", "shouldProcessEvent db is close :%s")
-            }
-        }
+        classConfigStorage.resolve(dexKit, descriptors)
 
-        classSqliteDbWrapper.find(dexKit, descriptors) {
-            matcher {
-                usingEqStrings("MicroMsg.SqliteDB", "sql is null ")
-            }
-        }
+        classSqliteDbWrapper.resolve(dexKit, descriptors)
 
         return descriptors
     }
@@ -6,11 +6,11 @@ import com.highcapable.kavaref.KavaRef.Companion.asResolver
 import com.highcapable.kavaref.extension.toClass
 import de.robv.android.xposed.XposedHelpers
 import dev.ujhhgtg.nameof.nameof
-import moe.ouom.wekit.preferences.WePrefs
-import moe.ouom.wekit.constants.PreferenceKeys
+import moe.ouom.wekit.preferences.WeConfig
 import moe.ouom.wekit.constants.WeChatVersion
 import moe.ouom.wekit.core.model.ApiHookItem
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
+import moe.ouom.wekit.utils.BatchingQueue
 import moe.ouom.wekit.utils.HostInfo
 import moe.ouom.wekit.utils.logging.WeLogger
 import java.util.concurrent.CopyOnWriteArrayList
@@ -20,10 +20,36 @@ import java.util.concurrent.CopyOnWriteArrayList
 object WeDatabaseListenerApi : ApiHookItem() {
 
     interface IInsertListener {
+        /**
+         * 监听的表，为空时监听所有表
+         */
+        val insertTables: Set<String> get() = emptySet()
+
+        /**
+         * 列过滤条件，全部满足时才回调
+         */
+        val insertFilters: List<ColumnFilter> get() = emptyList()
+
+        /**
+         * 为 true 时改为在后台线程成批接收事件快照，不再阻塞微信的数据库写入线程
+         * 适用于只读取数据、不需要在插入返回前完成的监听器
+         */
+        val insertAsync: Boolean get() = false
+
         fun onInsert(table: String, values: ContentValues)
     }
 
     interface IUpdateListener {
+        /**
+         * 监听的表，为空时监听所有表
+         */
+        val updateTables: Set<String> get() = emptySet()
+
+        /**
+         * 列过滤条件，全部满足时才回调
+         */
+        val updateFilters: List<ColumnFilter> get() = emptyList()
+
         fun onUpdate(table: String, values: ContentValues): Boolean
     }
 
@@ -31,6 +57,62 @@ object WeDatabaseListenerApi : ApiHookItem() {
         fun onQuery(sql: String): String?
     }
 
+    /**
+     * 针对 ContentValues 中单列的过滤条件
+     */
+    class ColumnFilter(val column: String, private val predicate: (Any?) -> Boolean) {
+
+        fun matches(values: ContentValues): Boolean = predicate(values.get(column))
+
+        companion object {
+            /**
+             * 整数列过滤，取值规则同 [ContentValues.getAsInteger]：
+             * 数字取 intValue，字符串按十进制解析，缺失或无法解析时视为 0
+             */
+            fun int(column: String, predicate: (Int) -> Boolean) =
+                ColumnFilter(column) { value ->
+                    val int = when (value) {
+                        is Number -> value.toInt()
+                        is String -> value.toIntOrNull()
+                        else -> null
+                    }
+                    predicate(int ?: 0)
+                }
+        }
+    }
+
+    private class Registration<T>(
+        val listener: T,
+        val tables: Set<String>,
+        val filters: List<ColumnFilter>,
+        val async: Boolean = false
+    ) {
+        fun accepts(values: ContentValues): Boolean =
+            filters.isEmpty() || filters.all { it.matches(values) }
+    }
+
+    /**
+     * 按表预先展开的监听器数组，增删监听器时整体重建
+     * 分发时只需一次 Map 查找，未被监听的表直接得到空数组
+     */
+    private class TableIndex<T>(registrations: List<Registration<T>>) {
+        private val wildcard: Array<Registration<T>>
+        private val byTable: Map<String, Array<Registration<T>>>
+
+        init {
+            wildcard = registrations.filter { it.tables.isEmpty() }.toTypedArray()
+            val tables = registrations.flatMapTo(HashSet()) { it.tables }
+            // 保持注册顺序
+            byTable = tables.associateWith { table ->
+                registrations.filter { it.tables.isEmpty() || table in it.tables }.toTypedArray()
+            }
+        }
+
+        operator fun get(table: String): Array<Registration<T>> = byTable[table] ?: wildcard
+
+        val isEmpty: Boolean get() = wildcard.isEmpty() && byTable.isEmpty()
+    }
+
     private val TAG = nameof(WeDatabaseApi)
 
     private const val DB_CLASS_NAME = "com.tencent.wcdb.database.SQLiteDatabase"
@@ -40,6 +122,43 @@ object WeDatabaseListenerApi : ApiHookItem() {
     private val updateListeners = CopyOnWriteArrayList<IUpdateListener>()
     private val queryListeners = CopyOnWriteArrayList<IQueryListener>()
 
+    private const val ASYNC_QUEUE_CAPACITY = 1024
+    private const val ASYNC_MAX_BATCH = 64
+
+    /**
+     * 异步投递的插入事件，values 为插入时的拷贝
+     */
+    private class InsertEvent(
+        val table: String,
+        val values: ContentValues,
+        val targets: List<IInsertListener>
+    )
+
+    private val asyncInserts = BatchingQueue<InsertEvent>(
+        "WeKit-DbInsertDelivery", ASYNC_QUEUE_CAPACITY, ASYNC_MAX_BATCH
+    ) { batch ->
+        for (event in batch) {
+            for (listener in event.targets) {
+                try {
+                    listener.onInsert(event.table, event.values)
+                } catch (e: Throwable) {
+                    WeLogger.e(TAG, "async insert delivery failed for ${listener.javaClass.simpleName}", e)
+                }
+            }
+        }
+    }
+
+    /**
+     * 异步插入投递的计数（入队、丢弃、已投递、批次数、积压）
+     */
+    val asyncInsertStats: BatchingQueue.Stats get() = asyncInserts.stats
+
+    @Volatile
+    private var insertIndex = TableIndex<IInsertListener>(emptyList())
+
+    @Volatile
+    private var updateIndex = TableIndex<IUpdateListener>(emptyList())
+
     fun addListener(listener: Any) {
         val addedTypes = mutableListOf<String>()
 
@@ -58,6 +177,7 @@ object WeDatabaseListenerApi : ApiHookItem() {
 
         // 只有实现了至少一个接口才打印日志
         if (addedTypes.isNotEmpty()) {
+            rebuildIndexes()
             WeLogger.i(
                 TAG,
                 "listener added: ${listener.javaClass.simpleName} [${addedTypes.joinToString()}]"
@@ -79,6 +199,7 @@ object WeDatabaseListenerApi : ApiHookItem() {
         }
 
         if (removed) {
+            rebuildIndexes()
             WeLogger.i(TAG, "监听器已移除: ${listener.javaClass.simpleName}")
         }
     }
@@ -93,13 +214,23 @@ object WeDatabaseListenerApi : ApiHookItem() {
         insertListeners.clear()
         updateListeners.clear()
         queryListeners.clear()
+        rebuildIndexes()
     }
 
     // ==================== 私有辅助方法 ====================
 
+    @Synchronized
+    private fun rebuildIndexes() {
+        insertIndex = TableIndex(insertListeners.map {
+            Registration(it, it.insertTables, it.insertFilters, it.insertAsync)
+        })
+        updateIndex = TableIndex(updateListeners.map {
+            Registration(it, it.updateTables, it.updateFilters)
+        })
+    }
+
     private fun shouldLogDatabase(): Boolean {
-        return WePrefs.getBoolOrFalse(PreferenceKeys.VERBOSE_LOG) &&
-                WePrefs.getBoolOrFalse(PreferenceKeys.DB_VERBOSE_LOG)
+        return WeConfig.dbVerboseLog
     }
 
     private fun formatArgs(args: Array<out Any?>): String {
@@ -134,14 +265,33 @@ object WeDatabaseListenerApi : ApiHookItem() {
                     parameters(String::class, String::class, ContentValues::class, Int::class)
                 }.hookAfter { param ->
                     try {
-                        if (insertListeners.isEmpty()) return@hookAfter
+                        val index = insertIndex
+                        if (index.isEmpty) return@hookAfter
 
                         val table = param.args[0] as String
                         val values = param.args[2] as ContentValues
                         val result = param.result
 
                         logWithStack("Insert", table, param.args, result)
-                        insertListeners.forEach { it.onInsert(table, values) }
+
+                        val registrations = index[table]
+                        var asyncTargets: MutableList<IInsertListener>? = null
+                        for (registration in registrations) {
+                            if (registration.async && registration.accepts(values)) {
+                                (asyncTargets ?: ArrayList<IInsertListener>(2).also { asyncTargets = it })
+                                    .add(registration.listener)
+                            }
+                        }
+                        // 先拷贝快照再执行同步监听器，异步监听器看到的是插入时的原始数据
+                        asyncTargets?.let {
+                            asyncInserts.offer(InsertEvent(table, ContentValues(values), it))
+                        }
+
+                        for (registration in registrations) {
+                            if (!registration.async && registration.accepts(values)) {
+                                registration.listener.onInsert(table, values)
+                            }
+                        }
                     } catch (e: Throwable) {
                         WeLogger.e(TAG, "Insert dispatch failed", e)
                     }
@@ -178,7 +328,8 @@ object WeDatabaseListenerApi : ApiHookItem() {
                 }
                 .hookBefore { param ->
                     try {
-                        if (updateListeners.isEmpty()) return@hookBefore
+                        val index = updateIndex
+                        if (index.isEmpty) return@hookBefore
 
                         val table = param.args[0] as String
                         val values = param.args[1] as ContentValues
@@ -189,7 +340,9 @@ object WeDatabaseListenerApi : ApiHookItem() {
                         logWithStack("Update", table, param.args)
 
                         // 如果有任何一个监听器返回 true，则阻止更新
-                        val shouldBlock = updateListeners.any { it.onUpdate(table, values) }
+                        val shouldBlock = index[table].any {
+                            it.accepts(values) && it.listener.onUpdate(table, values)
+                        }
 
                         if (shouldBlock) {
                             param.result = 0 // 返回0表示没有行被更新
@@ -11,6 +11,7 @@ import de.robv.android.xposed.XposedHelpers
 import dev.ujhhgtg.nameof.nameof
 import moe.ouom.wekit.core.dsl.dexClass
 import moe.ouom.wekit.core.dsl.dexMethod
+import moe.ouom.wekit.core.dsl.eqStrings
 import moe.ouom.wekit.core.model.ApiHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
@@ -40,12 +41,40 @@ object WeMessageApi : ApiHookItem(), IResolvesDex {
     private val methodGetSendMsgObject by dexMethod()
     private val methodPostToQueue by dexMethod()
     private val methodShareFile by dexMethod()
-    val classMsgInfo by dexClass()
-    val classMsgInfoStorage by dexClass()
+    val classMsgInfo by dexClass(
+        eqStrings(
+            "MicroMsg.MsgInfo",
+            "[parseNewXmlSysMsg]",
+            searchPackages = listOf("com.tencent.mm.storage")
+        )
+    )
+    val classMsgInfoStorage by dexClass(
+        eqStrings(
+            "MicroMsg.MsgInfoStorage",
+            "deleted dirty msg ,count is %d",
+            searchPackages = listOf("com.tencent.mm.storage")
+        )
+    )
     val methodMsgInfoStorageInsertMessage by dexMethod()
-    val classChattingContext by dexClass()
-    val classChattingDataAdapter by dexClass()
-    val classTransformChattingComponent by dexClass()
+    val classChattingContext by dexClass(
+        eqStrings(
+            "MicroMsg.ChattingContext",
+            "[notifyDataSetChange]"
+        )
+    )
+    val classChattingDataAdapter by dexClass(
+        eqStrings(
+            "MicroMsg.ChattingDataAdapterV3",
+            "[handleMsgChange] isLockNotify:"
+        )
+    )
+    val classTransformChattingComponent by dexClass(
+        eqStrings(
+            "MicroMsg.TransformComponent",
+            "[onChattingPause]",
+            searchPackages = listOf("com.tencent.mm.ui.chatting.component")
+        )
+    )
 
     // -------------------------------------------------------------------------------------
     // 图片发送组件
@@ -132,20 +161,9 @@ object WeMessageApi : ApiHookItem(), IResolvesDex {
         // 基础组件查找
         // ---------------------------------------------------------------------------------
 
-        classChattingDataAdapter.find(dexKit, descriptors) {
-            matcher {
-                usingEqStrings(
-                    "MicroMsg.ChattingDataAdapterV3",
-                    "[handleMsgChange] isLockNotify:"
-                )
-            }
-        }
+        classChattingDataAdapter.resolve(dexKit, descriptors)
 
-        classChattingContext.find(dexKit, descriptors) {
-            matcher {
-                usingEqStrings("MicroMsg.ChattingContext", "[notifyDataSetChange]")
-            }
-        }
+        classChattingContext.resolve(dexKit, descriptors)
 
         classNetSceneObserverOwner.find(dexKit, descriptors = descriptors) {
             matcher {
@@ -222,20 +240,10 @@ object WeMessageApi : ApiHookItem(), IResolvesDex {
             }
         }
 
-        classMsgInfo.find(dexKit, descriptors) {
-            searchPackages("com.tencent.mm.storage")
-            matcher {
-                usingEqStrings("MicroMsg.MsgInfo", "[parseNewXmlSysMsg]")
-            }
-        }
+        classMsgInfo.resolve(dexKit, descriptors)
 
 
-        classMsgInfoStorage.find(dexKit, descriptors) {
-            searchPackages("com.tencent.mm.storage")
-            matcher {
-                usingEqStrings("MicroMsg.MsgInfoStorage", "deleted dirty msg ,count is %d")
-            }
-        }
+        classMsgInfoStorage.resolve(dexKit, descriptors)
 
         methodMsgInfoStorageInsertMessage.find(dexKit, descriptors) {
             matcher {
@@ -244,12 +252,7 @@ object WeMessageApi : ApiHookItem(), IResolvesDex {
             }
         }
 
-        classTransformChattingComponent.find(dexKit, descriptors) {
-            searchPackages("com.tencent.mm.ui.chatting.component")
-            matcher {
-                usingEqStrings("MicroMsg.TransformComponent", "[onChattingPause]")
-            }
-        }
+        classTransformChattingComponent.resolve(dexKit, descriptors)
 
         // ---------------------------------------------------------------------------------
         // 图片组件查找
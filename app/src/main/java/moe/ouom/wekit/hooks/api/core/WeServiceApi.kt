@@ -2,6 +2,7 @@ package moe.ouom.wekit.hooks.api.core
 
 import moe.ouom.wekit.core.dsl.dexClass
 import moe.ouom.wekit.core.dsl.dexMethod
+import moe.ouom.wekit.core.dsl.eqStrings
 import moe.ouom.wekit.core.model.ApiHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
@@ -16,10 +17,27 @@ object WeServiceApi : ApiHookItem(), IResolvesDex {
     private val classContactStorage by dexClass()
     private val classConversationStorage by dexClass()
     private val classStorageFeatureService by dexClass()
-    private val classChatroomService by dexClass()
-    val methodApiManagerGetApi by dexMethod()
+    private val classChatroomService by dexClass(
+        eqStrings(
+            "MicroMsg.ChatroomService",
+            "[isEnableRoomManager]"
+        )
+    )
+    val methodApiManagerGetApi by dexMethod(
+        eqStrings(
+            "[get] ",
+            " is not a interface!",
+            searchPackages = listOf("com.tencent.mm.ui.chatting.manager")
+        )
+    )
     private val methodMmKernelGetServiceImpl by dexMethod()
-    private val classMsgInfoStorage by dexClass()
+    private val classMsgInfoStorage by dexClass(
+        eqStrings(
+            "MicroMsg.MsgInfoStorage",
+            "deleted dirty msg ,count is %d",
+            searchPackages = listOf("com.tencent.mm.storage")
+        )
+    )
 
     val emojiFeatureService by lazy {
         getServiceByClass(classEmojiFeatureService.clazz)
@@ -81,12 +99,7 @@ object WeServiceApi : ApiHookItem(), IResolvesDex {
             }
         }
 
-        classMsgInfoStorage.find(dexKit, descriptors) {
-            searchPackages("com.tencent.mm.storage")
-            matcher {
-                usingEqStrings("MicroMsg.MsgInfoStorage", "deleted dirty msg ,count is %d")
-            }
-        }
+        classMsgInfoStorage.resolve(dexKit, descriptors)
 
         classStorageFeatureService.find(dexKit, descriptors) {
             searchPackages("com.tencent.mm.plugin.messenger.foundation")
@@ -103,18 +116,9 @@ object WeServiceApi : ApiHookItem(), IResolvesDex {
             }
         }
 
-        classChatroomService.find(dexKit, descriptors) {
-            matcher {
-                usingEqStrings("MicroMsg.ChatroomService", "[isEnableRoomManager]")
-            }
-        }
+        classChatroomService.resolve(dexKit, descriptors)
 
-        methodApiManagerGetApi.find(dexKit, descriptors) {
-            searchPackages("com.tencent.mm.ui.chatting.manager")
-            matcher {
-                usingEqStrings("[get] ", " is not a interface!")
-            }
-        }
+        methodApiManagerGetApi.resolve(dexKit, descriptors)
 
         methodMmKernelGetServiceImpl.find(dexKit, descriptors) {
             matcher {
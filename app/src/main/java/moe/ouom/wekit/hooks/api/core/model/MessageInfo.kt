@@ -2,58 +2,62 @@ package moe.ouom.wekit.hooks.api.core.model
 
 import com.google.gson.Gson
 import com.google.gson.JsonElement
-import com.highcapable.kavaref.KavaRef.Companion.asResolver
+import moe.ouom.wekit.core.dsl.fieldAccessor
 import moe.ouom.wekit.hooks.api.core.WeDatabaseApi
+import moe.ouom.wekit.utils.LruCache
 import moe.ouom.wekit.utils.getByPath
 
+/**
+ * 消息快照
+ *
+ * 常用字段在构造时通过缓存的访问器一次读出，其余字段首次访问时再读；
+ * 同一次绑定只构造一个实例，由所有监听器共享。
+ * [sender] 与 [patMessage] 可能查库或解析 JSON，按 msgId 缓存在有界表中
+ */
 class MessageInfo(val instance: Any) {
 
-    @Suppress("UNCHECKED_CAST")
-    private fun <T> getFieldByName(instance: Any, name: String): T {
-        return instance.asResolver()
-            .firstField {
-                this.name = name
-                superclass()
+    val type = fieldType.getInt(instance)
+    val id = fieldMsgId.getLong(instance)
+    val isSend = fieldIsSend.getInt(instance)
+    val createTime = fieldCreateTime.getLong(instance)
+    val talker = fieldTalker.get(instance) as String
+
+    val serverId by lazy { fieldMsgSvrId.getLong(instance) }
+    val content by lazy { fieldContent.get(instance) as String }
+    val imagePath by lazy { fieldImgPath.get(instance) as String }
+    val lvBuffer by lazy { fieldLvBuffer.get(instance) as ByteArray }
+    val talkerId by lazy { fieldTalkerId.getInt(instance) }
+    val seq by lazy { fieldMsgSeq.getLong(instance) }
+
+    val isInGroupChat get() = talker.endsWith("@chatroom") || talker.endsWith("@im.chatroom")
+    val isOfficialAccount get() = talker.startsWith("gh_")
+    val isText get() = isType(MessageType.TEXT) || isType(MessageType.TEXT_WITH_QUOTE)
+
+    val patMessage: PatMessage?
+        get() = if (!isType(MessageType.PAT)) null else memoize(patMessages, id) { PatMessage(content) }
+
+    val sender: String
+        get() = memoize(senders, id) {
+            if (isType(MessageType.SYSTEM)) {
+                return@memoize "system"
             }
-            .get()!! as T
-    }
 
-    val type by lazy { getFieldByName<Int>(instance, "field_type") }
-    val id by lazy { getFieldByName<Long>(instance, "field_msgId") }
-    val serverId by lazy { getFieldByName<Long>(instance, "field_msgSvrId") }
-    val isSend by lazy { getFieldByName<Int>(instance, "field_isSend") }
-    val createTime by lazy { getFieldByName<Long>(instance, "field_createTime") }
-    val talker by lazy { getFieldByName<String>(instance, "field_talker") }
-    val content by lazy { getFieldByName<String>(instance, "field_content") }
-    val imagePath by lazy { getFieldByName<String>(instance, "field_imgPath") }
-    val lvBuffer by lazy { getFieldByName<ByteArray>(instance, "field_lvbuffer") }
-    val talkerId by lazy { getFieldByName<Int>(instance, "field_talkerId") }
-    val seq by lazy { getFieldByName<Long>(instance, "field_msgSeq") }
-
-    val isInGroupChat = talker.endsWith("@chatroom") || talker.endsWith("@im.chatroom")
-    val isOfficialAccount = talker.startsWith("gh_")
-    val sender by lazy {
-        if (isType(MessageType.SYSTEM)) {
-            return@lazy "system"
-        }
+            patMessage?.let {
+                return@memoize it.fromUser
+                    ?: throw IllegalArgumentException("could not determine pat message's from user")
+            }
 
-        if (isType(MessageType.PAT)) {
-            val patMsg = PatMessage(content)
-            return@lazy patMsg.fromUser
-                ?: throw IllegalArgumentException("could not determine pat message's from user")
-        }
+            if (isSelfSender()) {
+                return@memoize WeDatabaseApi.getSelfProfileField(SelfProfileField.WXID) as String
+            }
 
-        if (isSelfSender()) {
-            return@lazy WeDatabaseApi.getSelfProfileField(SelfProfileField.WXID) as String
-        }
+            if (!isInGroupChat) {
+                return@memoize talker
+            }
 
-        if (!isInGroupChat) {
-            return@lazy talker
+            return@memoize content.split(':')[0]
         }
 
-        return@lazy content.split(':')[0]
-    }
-
     fun isSelfSender(): Boolean {
         return isSend == 1
     }
@@ -62,7 +66,33 @@ class MessageInfo(val instance: Any) {
         return this.type == type.code
     }
 
-    val isText = isType(MessageType.TEXT) || isType(MessageType.TEXT_WITH_QUOTE)
+    companion object {
+        private val fieldType = fieldAccessor { name = "field_type"; superclass() }
+        private val fieldMsgId = fieldAccessor { name = "field_msgId"; superclass() }
+        private val fieldMsgSvrId = fieldAccessor { name = "field_msgSvrId"; superclass() }
+        private val fieldIsSend = fieldAccessor { name = "field_isSend"; superclass() }
+        private val fieldCreateTime = fieldAccessor { name = "field_createTime"; superclass() }
+        private val fieldTalker = fieldAccessor { name = "field_talker"; superclass() }
+        private val fieldContent = fieldAccessor { name = "field_content"; superclass() }
+        private val fieldImgPath = fieldAccessor { name = "field_imgPath"; superclass() }
+        private val fieldLvBuffer = fieldAccessor { name = "field_lvbuffer"; superclass() }
+        private val fieldTalkerId = fieldAccessor { name = "field_talkerId"; superclass() }
+        private val fieldMsgSeq = fieldAccessor { name = "field_msgSeq"; superclass() }
+
+        private const val MEMO_LIMIT = 256
+
+        private val senders = LruCache<Long, String>(maxLimit = MEMO_LIMIT)
+        private val patMessages = LruCache<Long, PatMessage>(maxLimit = MEMO_LIMIT)
+
+        // msgId 为 0 的消息尚未入库，不缓存；计算过程不持锁，并发时可能重复计算一次
+        private inline fun <V : Any> memoize(cache: LruCache<Long, V>, msgId: Long, compute: () -> V): V {
+            if (msgId == 0L) return compute()
+            synchronized(cache) { cache[msgId] }?.let { return it }
+            val value = compute()
+            synchronized(cache) { cache[msgId] = value }
+            return value
+        }
+    }
 
     class PatMessage(jsonString: String) {
 
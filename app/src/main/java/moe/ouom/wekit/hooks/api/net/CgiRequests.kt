@@ -0,0 +1,272 @@
+package moe.ouom.wekit.hooks.api.net
+
+import com.google.protobuf.CodedOutputStream
+import moe.ouom.wekit.hooks.api.net.MsgIdProvider.previewNextId
+import moe.ouom.wekit.hooks.api.net.WeApi.generateClientMsgId
+import moe.ouom.wekit.hooks.api.net.WeApi.selfWxId
+
+/**
+ * 可直接编码发送的 CGI 请求
+ *
+ * 与 JSON 发包路径使用同一套字段号，[sign] 对应 [WePacketSigner] 中各签名器对 JSON 的改写，
+ * 在发送线程上、编码之前调用一次
+ */
+abstract class CgiRequest : ProtoMessage() {
+    abstract val uri: String
+    abstract val cgiId: Int
+    open val funcId: Int get() = 0
+    open val routeId: Int get() = 0
+
+    open fun sign() {}
+
+    /**
+     * 为 true 时只能走原生 NetScene 发送，[createNativeScene] 返回 null 视为发送失败
+     */
+    internal open val requiresNativeScene: Boolean get() = false
+
+    /**
+     * 需要走原生 NetScene 发送的请求返回构造好的实例，此时不再编码字节
+     */
+    internal open fun createNativeScene(): Any? = null
+}
+
+/**
+ * 发送文本消息 (CGI 522)
+ */
+class NewSendMsgRequest(val items: List<Item>) : CgiRequest() {
+
+    constructor(toUser: String, content: String, type: Int = 1) : this(listOf(Item(toUser, content, type)))
+
+    class Item(
+        var toUser: String,
+        var content: String,
+        var type: Int = 1,
+        var msgSource: String? = null,
+    ) : ProtoMessage() {
+        var createTime: Int? = null
+        var clientMsgId: Int? = null
+
+        override fun computeFieldsSize() =
+            builtinStringSize(1, toUser) +
+                    stringSize(2, content) +
+                    int32Size(3, type) +
+                    int32Size(4, createTime) +
+                    int32Size(5, clientMsgId) +
+                    stringSize(6, msgSource)
+
+        override fun writeFields(out: CodedOutputStream) {
+            out.writeBuiltinString(1, toUser)
+            out.writeString(2, content)
+            out.writeInt32(3, type)
+            out.writeInt32(4, createTime)
+            out.writeInt32(5, clientMsgId)
+            out.writeString(6, msgSource)
+        }
+    }
+
+    override val uri get() = "/cgi-bin/micromsg-bin/newsendmsg"
+    override val cgiId get() = 522
+    override val funcId get() = 237
+    override val routeId get() = 1000000237
+
+    override fun sign() {
+        val selfWxid = selfWxId
+        for (item in items) {
+            val ts = System.currentTimeMillis()
+            item.createTime = (ts / 1000).toInt()
+            item.clientMsgId = generateClientMsgId(selfWxid, ts)
+        }
+    }
+
+    override fun computeFieldsSize() = int32Size(1, items.size) + nestedListSize(2, items)
+
+    override fun writeFields(out: CodedOutputStream) {
+        out.writeInt32(1, items.size)
+        out.writeNestedList(2, items)
+    }
+}
+
+/**
+ * 发送 AppMsg (CGI 222)
+ */
+class SendAppMsgRequest(val msg: AppMsg) : CgiRequest() {
+
+    class AppMsg(
+        var toUser: String,
+        var type: Int,
+        var content: String,
+        var fromUser: String? = null,
+        var appId: String? = null,
+        var sdkVersion: Int? = null,
+    ) : ProtoMessage() {
+        var createTime: Int? = null
+        var clientMsgId: String? = null
+
+        override fun computeFieldsSize() =
+            stringSize(1, fromUser) +
+                    stringSize(2, appId) +
+                    int32Size(3, sdkVersion) +
+                    stringSize(4, toUser) +
+                    int32Size(5, type) +
+                    stringSize(6, content) +
+                    int32Size(7, createTime) +
+                    stringSize(8, clientMsgId)
+
+        override fun writeFields(out: CodedOutputStream) {
+            out.writeString(1, fromUser)
+            out.writeString(2, appId)
+            out.writeInt32(3, sdkVersion)
+            out.writeString(4, toUser)
+            out.writeInt32(5, type)
+            out.writeString(6, content)
+            out.writeInt32(7, createTime)
+            out.writeString(8, clientMsgId)
+        }
+    }
+
+    var reqTime: Int? = null
+    var signature: String? = null
+
+    override val uri get() = "/cgi-bin/micromsg-bin/sendappmsg"
+    override val cgiId get() = 222
+    override val funcId get() = 107
+    override val routeId get() = 1000000107
+
+    override fun sign() {
+        val nowMs = System.currentTimeMillis()
+        val sig = "${msg.toUser}${previewNextId("message")}T$nowMs"
+        val secs = (nowMs / 1000).toInt()
+        msg.clientMsgId = sig
+        msg.createTime = secs
+        signature = sig
+        reqTime = secs
+    }
+
+    override fun computeFieldsSize() =
+        nestedSize(2, msg) + int32Size(4, reqTime) + stringSize(7, signature)
+
+    override fun writeFields(out: CodedOutputStream) {
+        out.writeNested(2, msg)
+        out.writeInt32(4, reqTime)
+        out.writeString(7, signature)
+    }
+}
+
+/**
+ * 发送表情 (CGI 175)
+ */
+class SendEmojiRequest(val items: List<Item>) : CgiRequest() {
+
+    class Item(
+        var md5: String,
+        var toUser: String,
+        var totalLen: Int,
+        var startPos: Int = 0,
+        var type: Int? = null,
+    ) : ProtoMessage() {
+        var clientMsgId: String? = null
+
+        override fun computeFieldsSize() =
+            stringSize(1, md5) +
+                    int32Size(2, startPos) +
+                    int32Size(3, totalLen) +
+                    int32Size(5, type) +
+                    stringSize(6, toUser) +
+                    stringSize(9, clientMsgId)
+
+        override fun writeFields(out: CodedOutputStream) {
+            out.writeString(1, md5)
+            out.writeInt32(2, startPos)
+            out.writeInt32(3, totalLen)
+            out.writeInt32(5, type)
+            out.writeString(6, toUser)
+            out.writeString(9, clientMsgId)
+        }
+    }
+
+    override val uri get() = "/cgi-bin/micromsg-bin/sendemoji"
+    override val cgiId get() = 175
+    override val funcId get() = 68
+    override val routeId get() = 1000000068
+
+    override fun sign() {
+        val ts = System.currentTimeMillis().toString()
+        for (item in items) item.clientMsgId = ts
+    }
+
+    override fun computeFieldsSize() = int32Size(2, items.size) + nestedListSize(3, items)
+
+    override fun writeFields(out: CodedOutputStream) {
+        out.writeInt32(2, items.size)
+        out.writeNestedList(3, items)
+    }
+}
+
+/**
+ * 拍一拍 (CGI 849)
+ *
+ * 实际通过原生 NetScene 发送，字段编码只用于抓包与日志
+ */
+class SendPatRequest(
+    var toUser: String,
+    var pattedUser: String,
+    var scene: Int = 0,
+) : CgiRequest() {
+
+    override val uri get() = "/cgi-bin/micromsg-bin/sendpat"
+    override val cgiId get() = 849
+    override val requiresNativeScene get() = true
+
+    override fun createNativeScene(): Any? =
+        WePacketHelper.classNetScenePat.clazz.let {
+            SendPatSigner.newNetScene(it, toUser, pattedUser, scene)
+        }
+
+    override fun computeFieldsSize() =
+        stringSize(3, toUser) + stringSize(4, pattedUser) + int32Size(6, scene)
+
+    override fun writeFields(out: CodedOutputStream) {
+        out.writeString(3, toUser)
+        out.writeString(4, pattedUser)
+        out.writeInt32(6, scene)
+    }
+}
+
+/**
+ * 修改昵称 (CGI 681 oplog)
+ *
+ * 字段布局与原先的 JSON 发包内容一致: `{1: {1: 1, 2: {1: 64, 2: {1: 16, 2: {1: 1, 2: nickname}}}}}`，
+ * 昵称按 protobuf 字符串直接编码，不再需要 JSON 转义
+ */
+class SetNicknameRequest(nickname: String) : CgiRequest() {
+
+    /**
+     * `{1: key, 2: child 或 text}` 形式的一层包装
+     */
+    private class Entry(
+        val key: Int,
+        val child: ProtoMessage? = null,
+        val text: String? = null,
+    ) : ProtoMessage() {
+
+        override fun computeFieldsSize() =
+            int32Size(1, key) + nestedSize(2, child) + stringSize(2, text)
+
+        override fun writeFields(out: CodedOutputStream) {
+            out.writeInt32(1, key)
+            out.writeNested(2, child)
+            out.writeString(2, text)
+        }
+    }
+
+    private val cmdList = Entry(1, Entry(64, Entry(16, Entry(1, text = nickname))))
+
+    override val uri get() = "/cgi-bin/micromsg-bin/oplog"
+    override val cgiId get() = 681
+
+    override fun computeFieldsSize() = nestedSize(1, cmdList)
+
+    override fun writeFields(out: CodedOutputStream) {
+        out.writeNested(1, cmdList)
+    }
+}
@@ -0,0 +1,105 @@
+package moe.ouom.wekit.hooks.api.net
+
+import android.os.SystemClock
+import moe.ouom.wekit.hooks.api.net.intf.WeRequestCallback
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ScheduledThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.math.max
+
+/**
+ * 主动发包的执行管线
+ *
+ * 所有 [WePacketHelper.sendCgi] 请求进入同一个有界队列，由固定数量的工作线程执行；
+ * 同一 CGI 的相邻两次发送至少间隔 [minIntervalMs]，多余的请求按时间顺延而不是立即并发发出，
+ * 队列满时直接拒绝
+ */
+internal object CgiSendPipeline {
+
+    private const val WORKER_COUNT = 2
+    private const val MAX_QUEUED = 256
+    private const val DEFAULT_MIN_INTERVAL_MS = 100L
+
+    data class Stats(
+        val queued: Int,
+        val inFlight: Int,
+        val sent: Long,
+        val rejected: Long
+    )
+
+    private val queued = AtomicInteger()
+    private val inFlight = AtomicInteger()
+    private val sent = AtomicLong()
+    private val rejected = AtomicLong()
+
+    private val nextSlot = ConcurrentHashMap<Int, Long>()
+    private val intervals = ConcurrentHashMap<Int, Long>()
+
+    private val executor by lazy {
+        val threadIndex = AtomicInteger()
+        ScheduledThreadPoolExecutor(WORKER_COUNT) { runnable ->
+            Thread(runnable, "WeKit-CgiSend-${threadIndex.incrementAndGet()}").apply { isDaemon = true }
+        }
+    }
+
+    val stats: Stats
+        get() = Stats(queued.get(), inFlight.get(), sent.get(), rejected.get())
+
+    fun minIntervalMs(cgiId: Int): Long = intervals[cgiId] ?: DEFAULT_MIN_INTERVAL_MS
+
+    fun setMinInterval(cgiId: Int, intervalMs: Long) {
+        intervals[cgiId] = intervalMs
+    }
+
+    /**
+     * @param task 在工作线程上执行，必须最终调用 [TrackedCallback] 的某个回调
+     * @return 队列已满时返回 false，task 不会执行
+     */
+    fun submit(cgiId: Int, task: () -> Unit): Boolean {
+        if (queued.incrementAndGet() > MAX_QUEUED) {
+            queued.decrementAndGet()
+            rejected.incrementAndGet()
+            return false
+        }
+
+        executor.schedule({
+            queued.decrementAndGet()
+            inFlight.incrementAndGet()
+            sent.incrementAndGet()
+            task()
+        }, reserve(cgiId), TimeUnit.MILLISECONDS)
+        return true
+    }
+
+    // 预约该 CGI 的下一个发送时间，返回需要等待的毫秒数
+    private fun reserve(cgiId: Int): Long {
+        val now = SystemClock.uptimeMillis()
+        val interval = minIntervalMs(cgiId)
+        var slot = now
+        nextSlot.compute(cgiId) { _, next ->
+            slot = max(now, next ?: now)
+            slot + interval
+        }
+        return slot - now
+    }
+
+    /**
+     * 请求结束 (成功、失败或发送前出错) 时扣减在途计数，只生效一次
+     */
+    class TrackedCallback(private val delegate: WeRequestCallback?) : WeRequestCallback {
+        private val done = AtomicBoolean(false)
+
+        override fun onSuccess(json: String, bytes: ByteArray?) {
+            if (done.compareAndSet(false, true)) inFlight.decrementAndGet()
+            delegate?.onSuccess(json, bytes)
+        }
+
+        override fun onFail(errType: Int, errCode: Int, errMsg: String) {
+            if (done.compareAndSet(false, true)) inFlight.decrementAndGet()
+            delegate?.onFail(errType, errCode, errMsg)
+        }
+    }
+}
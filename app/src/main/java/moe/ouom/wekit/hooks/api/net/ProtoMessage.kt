@@ -0,0 +1,115 @@
+package moe.ouom.wekit.hooks.api.net
+
+import com.google.protobuf.CodedOutputStream
+import com.google.protobuf.WireFormat
+
+/**
+ * 强类型 protobuf 消息
+ *
+ * 子类在代码中固定字段号与线格式类型，直接读取属性写出，不经过 JSON 中间表示。
+ * [toByteArray] 先自顶向下计算一遍精确大小 (嵌套消息的大小记在各自实例上)，
+ * 再一次性写入按该大小分配好的数组
+ *
+ * 值为 null 的字段不输出；未建模的字段可以放进 [unknownFields]，按原样追加在末尾
+ */
+abstract class ProtoMessage {
+
+    var unknownFields: ByteArray? = null
+
+    private var cachedSize = -1
+
+    protected abstract fun computeFieldsSize(): Int
+
+    protected abstract fun writeFields(out: CodedOutputStream)
+
+    fun computeSize(): Int {
+        val size = computeFieldsSize() + (unknownFields?.size ?: 0)
+        cachedSize = size
+        return size
+    }
+
+    /**
+     * 写出前必须已调用过 [computeSize]，嵌套消息的长度前缀取自该次计算
+     */
+    fun writeTo(out: CodedOutputStream) {
+        writeFields(out)
+        unknownFields?.let { out.writeRawBytes(it) }
+    }
+
+    fun toByteArray(): ByteArray {
+        val bytes = ByteArray(computeSize())
+        val out = CodedOutputStream.newInstance(bytes)
+        writeTo(out)
+        out.checkNoSpaceLeft()
+        return bytes
+    }
+
+    protected fun int32Size(fieldNumber: Int, value: Int?) =
+        if (value == null) 0 else CodedOutputStream.computeInt32Size(fieldNumber, value)
+
+    protected fun int64Size(fieldNumber: Int, value: Long?) =
+        if (value == null) 0 else CodedOutputStream.computeInt64Size(fieldNumber, value)
+
+    protected fun stringSize(fieldNumber: Int, value: String?) =
+        if (value == null) 0 else CodedOutputStream.computeStringSize(fieldNumber, value)
+
+    protected fun bytesSize(fieldNumber: Int, value: ByteArray?) =
+        if (value == null) 0 else CodedOutputStream.computeByteArraySize(fieldNumber, value)
+
+    protected fun nestedSize(fieldNumber: Int, value: ProtoMessage?): Int {
+        if (value == null) return 0
+        val size = value.computeSize()
+        return CodedOutputStream.computeTagSize(fieldNumber) +
+                CodedOutputStream.computeUInt32SizeNoTag(size) + size
+    }
+
+    /**
+     * 微信常用的 SKBuiltinString 包装 { 1: string }
+     */
+    protected fun builtinStringSize(fieldNumber: Int, value: String?): Int {
+        if (value == null) return 0
+        val size = CodedOutputStream.computeStringSize(1, value)
+        return CodedOutputStream.computeTagSize(fieldNumber) +
+                CodedOutputStream.computeUInt32SizeNoTag(size) + size
+    }
+
+    protected fun nestedListSize(fieldNumber: Int, values: List<ProtoMessage>): Int {
+        var size = 0
+        for (value in values) size += nestedSize(fieldNumber, value)
+        return size
+    }
+
+    protected fun CodedOutputStream.writeInt32(fieldNumber: Int, value: Int?) {
+        if (value != null) writeInt32(fieldNumber, value)
+    }
+
+    protected fun CodedOutputStream.writeInt64(fieldNumber: Int, value: Long?) {
+        if (value != null) writeInt64(fieldNumber, value)
+    }
+
+    protected fun CodedOutputStream.writeString(fieldNumber: Int, value: String?) {
+        if (value != null) writeString(fieldNumber, value)
+    }
+
+    protected fun CodedOutputStream.writeByteArray(fieldNumber: Int, value: ByteArray?) {
+        if (value != null) writeByteArray(fieldNumber, value)
+    }
+
+    protected fun CodedOutputStream.writeNested(fieldNumber: Int, value: ProtoMessage?) {
+        if (value == null) return
+        writeTag(fieldNumber, WireFormat.WIRETYPE_LENGTH_DELIMITED)
+        writeUInt32NoTag(value.cachedSize)
+        value.writeTo(this)
+    }
+
+    protected fun CodedOutputStream.writeBuiltinString(fieldNumber: Int, value: String?) {
+        if (value == null) return
+        writeTag(fieldNumber, WireFormat.WIRETYPE_LENGTH_DELIMITED)
+        writeUInt32NoTag(CodedOutputStream.computeStringSize(1, value))
+        writeString(1, value)
+    }
+
+    protected fun CodedOutputStream.writeNestedList(fieldNumber: Int, values: List<ProtoMessage>) {
+        for (value in values) writeNested(fieldNumber, value)
+    }
+}
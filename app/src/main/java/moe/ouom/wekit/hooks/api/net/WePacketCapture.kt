@@ -0,0 +1,333 @@
+package moe.ouom.wekit.hooks.api.net
+
+import android.os.Process
+import dev.ujhhgtg.nameof.nameof
+import moe.ouom.wekit.utils.PathUtils
+import moe.ouom.wekit.utils.logging.WeLogger
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.EOFException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.file.Path
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.LockSupport
+import kotlin.io.path.createDirectories
+import kotlin.io.path.div
+import kotlin.io.path.fileSize
+import kotlin.io.path.inputStream
+import kotlin.io.path.listDirectoryEntries
+import kotlin.io.path.name
+import kotlin.io.path.outputStream
+import kotlin.math.min
+
+/**
+ * 数据包抓取
+ *
+ * 热路径 [record] 只把原始字节、uri、cgiId 与时间戳拷进固定大小的堆外环形缓冲区，
+ * 空间不足时直接丢弃并计数；后台线程定期把缓冲区内容原样追加到抓包文件
+ *
+ * 文件布局 (大端序):
+ * ```
+ * magic      u32   'WKPC'
+ * version    u16
+ * startTime  i64
+ * pid        i32
+ * records    size u32, direction u8, cgiId i32, timestamp i64, uriLen u16, payloadLen u32, uri, payload
+ * ```
+ * 其中 size 为整条记录的字节数；进程被杀时文件末尾可能残留半条记录，读取时忽略
+ */
+object WePacketCapture {
+
+    private val TAG = nameof(WePacketCapture)
+
+    const val DIRECTION_REQUEST = 0
+    const val DIRECTION_RESPONSE = 1
+
+    private const val CAPTURE_DIR_NAME = "captures"
+    private const val CAPTURE_FILE_SUFFIX = ".wkcap"
+
+    private const val MAGIC = 0x574B5043 // 'WKPC'
+    private const val VERSION = 1
+
+    private const val RING_CAPACITY = 8 * 1024 * 1024
+    private const val RECORD_HEADER_SIZE = 4 + 1 + 4 + 8 + 2 + 4
+    private const val MAX_FILE_BYTES = 64L * 1024 * 1024
+    private const val FLUSH_INTERVAL_NANOS = 500_000_000L
+    private const val DRAIN_CHUNK_SIZE = 64 * 1024
+
+    class Record(
+        val direction: Int,
+        val cgiId: Int,
+        val timestamp: Long,
+        val uri: String,
+        val payloadOffset: Long,
+        val payloadLength: Int,
+    )
+
+    /**
+     * 一轮抓取的状态，[record] 在其监视器下写入环形缓冲区
+     *
+     * 停止后由本轮的写线程写完剩余内容、关闭文件后自行结束，缓冲区随实例一起释放；
+     * 紧接着开始的新一轮使用新的实例，两者互不干扰
+     */
+    private class Session {
+        val ring: ByteBuffer = ByteBuffer.allocateDirect(RING_CAPACITY)
+        val header = ByteArray(RECORD_HEADER_SIZE)
+        var head = 0L
+        var tail = 0L
+        var stopping = false
+        lateinit var writer: Thread
+    }
+
+    @Volatile
+    private var session: Session? = null
+
+    val isRecording: Boolean get() = session != null
+
+    private val captured = AtomicLong()
+    private val dropped = AtomicLong()
+    private val uriBytes = ConcurrentHashMap<String, ByteArray>()
+
+    // 写线程仍持有的抓包文件，删除文件时应跳过
+    private val openFiles: MutableSet<Path> = ConcurrentHashMap.newKeySet()
+
+    val capturedCount: Long get() = captured.get()
+    val droppedCount: Long get() = dropped.get()
+
+    val captureDir: Path?
+        get() = PathUtils.moduleDataPath?.let { base ->
+            runCatching { (base / CAPTURE_DIR_NAME).also { it.createDirectories() } }.getOrNull()
+        }
+
+    fun isCaptureFileOpen(file: Path) = file in openFiles
+
+    @Synchronized
+    fun start() {
+        if (session != null) return
+        captured.set(0)
+        dropped.set(0)
+        val s = Session()
+        s.writer = Thread({ writeLoop(s) }, "WeKit-PacketCapture").apply {
+            isDaemon = true
+            priority = Thread.MIN_PRIORITY
+        }
+        session = s
+        s.writer.start()
+        WeLogger.i(TAG, "packet capture started")
+    }
+
+    /**
+     * 停止抓取，立即返回；缓冲区中剩余的记录由写线程写完后再关闭文件，不在调用线程上等待磁盘
+     */
+    @Synchronized
+    fun stop() {
+        val s = session ?: return
+        session = null
+        // 在监视器下置位，此后不会再有记录写入，写线程看到该标志后的最后一次写出必然包含全部记录
+        synchronized(s) { s.stopping = true }
+        LockSupport.unpark(s.writer)
+        WeLogger.i(TAG, "packet capture stopping, captured=${captured.get()}, dropped=${dropped.get()}")
+    }
+
+    // 写线程因写满或出错自行结束时调用
+    @Synchronized
+    private fun detach(s: Session) {
+        if (session === s) session = null
+    }
+
+    fun record(direction: Int, uri: String, cgiId: Int, payload: ByteArray) {
+        val s = session ?: return
+        val u = uriBytes.getOrPut(uri) {
+            uri.toByteArray(Charsets.UTF_8).let { if (it.size > 0xFFFF) it.copyOf(0xFFFF) else it }
+        }
+        val size = RECORD_HEADER_SIZE + u.size + payload.size
+        val timestamp = System.currentTimeMillis()
+
+        val used = synchronized(s) {
+            if (s.stopping) return
+            if (size > RING_CAPACITY - (s.head - s.tail)) {
+                dropped.incrementAndGet()
+                return
+            }
+            val header = s.header
+            header.putInt(0, size)
+            header[4] = direction.toByte()
+            header.putInt(5, cgiId)
+            header.putLong(9, timestamp)
+            header.putShort(17, u.size)
+            header.putInt(19, payload.size)
+            putWrapped(s, header, RECORD_HEADER_SIZE)
+            putWrapped(s, u, u.size)
+            putWrapped(s, payload, payload.size)
+            s.head - s.tail
+        }
+        captured.incrementAndGet()
+
+        // 积压超过一半时提前唤醒写线程
+        if (used > RING_CAPACITY / 2) LockSupport.unpark(s.writer)
+    }
+
+    private fun putWrapped(s: Session, src: ByteArray, len: Int) {
+        val buf = s.ring
+        val pos = (s.head % RING_CAPACITY).toInt()
+        val first = min(len, RING_CAPACITY - pos)
+        buf.position(pos)
+        buf.put(src, 0, first)
+        if (first < len) {
+            buf.position(0)
+            buf.put(src, first, len - first)
+        }
+        s.head += len
+    }
+
+    private fun takeWrapped(s: Session, dst: ByteArray): Int = synchronized(s) {
+        val buf = s.ring
+        val n = min(s.head - s.tail, dst.size.toLong()).toInt()
+        if (n == 0) return 0
+        val pos = (s.tail % RING_CAPACITY).toInt()
+        val first = min(n, RING_CAPACITY - pos)
+        buf.position(pos)
+        buf.get(dst, 0, first)
+        if (first < n) {
+            buf.position(0)
+            buf.get(dst, first, n - first)
+        }
+        s.tail += n
+        n
+    }
+
+    private fun writeLoop(s: Session) {
+        val chunk = ByteArray(DRAIN_CHUNK_SIZE)
+        var file: Path? = null
+        var out: DataOutputStream? = null
+        var fileBytes = 0L
+        try {
+            while (true) {
+                val stopping = synchronized(s) { s.stopping }
+                while (true) {
+                    val n = takeWrapped(s, chunk)
+                    if (n == 0) break
+                    // 文件在首次有数据时才创建，没有网络流量的进程不会留下空文件
+                    if (out == null) {
+                        file = newCaptureFile() ?: return
+                        openFiles.add(file)
+                        out = openCaptureFile(file)
+                    }
+                    out.write(chunk, 0, n)
+                    fileBytes += n
+                    // 分块边界与记录边界无关，不能在此处切换文件，达到上限后直接结束本次抓取
+                    if (fileBytes >= MAX_FILE_BYTES) {
+                        WeLogger.w(TAG, "capture file reached ${MAX_FILE_BYTES shr 20} MiB, stopping")
+                        return
+                    }
+                }
+                out?.flush()
+                if (stopping) break
+                LockSupport.parkNanos(FLUSH_INTERVAL_NANOS)
+            }
+        } catch (e: Exception) {
+            WeLogger.e(TAG, "packet capture writer failed", e)
+        } finally {
+            runCatching { out?.close() }
+            file?.let { openFiles.remove(it) }
+            detach(s)
+            WeLogger.i(TAG, "packet capture writer finished")
+        }
+    }
+
+    private fun newCaptureFile(): Path? {
+        val dir = captureDir ?: run {
+            WeLogger.w(TAG, "module data path unavailable, capture disabled")
+            return null
+        }
+        return dir / "capture_${System.currentTimeMillis()}_${Process.myPid()}$CAPTURE_FILE_SUFFIX"
+    }
+
+    private fun openCaptureFile(file: Path): DataOutputStream {
+        val stream = DataOutputStream(BufferedOutputStream(file.outputStream(), DRAIN_CHUNK_SIZE))
+        stream.writeInt(MAGIC)
+        stream.writeShort(VERSION)
+        stream.writeLong(System.currentTimeMillis())
+        stream.writeInt(Process.myPid())
+        WeLogger.i(TAG, "writing packet capture to $file")
+        return stream
+    }
+
+    fun listCaptureFiles(): List<Path> =
+        captureDir?.let { dir ->
+            runCatching { dir.listDirectoryEntries("*$CAPTURE_FILE_SUFFIX") }.getOrNull()
+        }?.sortedByDescending { it.name } ?: emptyList()
+
+    /**
+     * 读取抓包文件中的记录索引，只解析记录头，负载留到 [readPayload] 时再读
+     */
+    fun readRecords(file: Path): List<Record> {
+        val records = mutableListOf<Record>()
+        val total = file.fileSize()
+        DataInputStream(BufferedInputStream(file.inputStream())).use { input ->
+            if (input.readInt() != MAGIC) throw IllegalStateException("bad capture magic in ${file.name}")
+            val version = input.readUnsignedShort()
+            if (version != VERSION) throw IllegalStateException("unsupported capture version $version")
+            input.readLong()
+            input.readInt()
+            var offset = 4L + 2 + 8 + 4
+
+            try {
+                while (offset + RECORD_HEADER_SIZE <= total) {
+                    val size = input.readInt()
+                    val direction = input.readUnsignedByte()
+                    val cgiId = input.readInt()
+                    val timestamp = input.readLong()
+                    val uriLen = input.readUnsignedShort()
+                    val payloadLen = input.readInt()
+                    if (offset + size > total) break
+                    val uri = ByteArray(uriLen).also { input.readFully(it) }
+                    val payloadOffset = offset + RECORD_HEADER_SIZE + uriLen
+                    input.skipFully(payloadLen.toLong())
+                    records.add(
+                        Record(direction, cgiId, timestamp, String(uri, Charsets.UTF_8), payloadOffset, payloadLen)
+                    )
+                    offset += size
+                }
+            } catch (_: EOFException) {
+            }
+        }
+        return records
+    }
+
+    fun readPayload(file: Path, record: Record): ByteArray =
+        RandomAccessFile(file.toFile(), "r").use { raf ->
+            raf.seek(record.payloadOffset)
+            ByteArray(record.payloadLength).also { raf.readFully(it) }
+        }
+
+    private fun DataInputStream.skipFully(n: Long) {
+        var remaining = n
+        while (remaining > 0) {
+            val skipped = skip(remaining)
+            if (skipped <= 0) throw EOFException()
+            remaining -= skipped
+        }
+    }
+
+    private fun ByteArray.putInt(index: Int, value: Int) {
+        this[index] = (value ushr 24).toByte()
+        this[index + 1] = (value ushr 16).toByte()
+        this[index + 2] = (value ushr 8).toByte()
+        this[index + 3] = value.toByte()
+    }
+
+    private fun ByteArray.putShort(index: Int, value: Int) {
+        this[index] = (value ushr 8).toByte()
+        this[index + 1] = value.toByte()
+    }
+
+    private fun ByteArray.putLong(index: Int, value: Long) {
+        putInt(index, (value ushr 32).toInt())
+        putInt(index + 4, value.toInt())
+    }
+}
@@ -3,14 +3,18 @@ package moe.ouom.wekit.hooks.api.net
 import android.annotation.SuppressLint
 import android.os.Handler
 import android.os.Looper
+import com.highcapable.kavaref.extension.ClassLoaderProvider
 import com.highcapable.kavaref.extension.toClass
 import de.robv.android.xposed.XposedHelpers
+import kotlinx.coroutines.suspendCancellableCoroutine
 import moe.ouom.wekit.core.dsl.dexClass
 import moe.ouom.wekit.core.dsl.dexMethod
 import moe.ouom.wekit.core.model.ApiHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
 import moe.ouom.wekit.hooks.api.net.intf.WeRequestCallback
+import moe.ouom.wekit.hooks.api.net.model.CgiException
+import moe.ouom.wekit.hooks.api.net.model.CgiResponse
 import moe.ouom.wekit.utils.logging.WeLogger
 import org.json.JSONObject
 import org.luckypray.dexkit.DexKitBridge
@@ -20,6 +24,9 @@ import java.lang.reflect.InvocationHandler
 import java.lang.reflect.Method
 import java.lang.reflect.Modifier
 import java.lang.reflect.Proxy
+import java.util.concurrent.CompletableFuture
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
 
 @HookItem(path = "API/网络数据包服务")
 object WePacketHelper : ApiHookItem(), IResolvesDex {
@@ -33,7 +40,7 @@ object WePacketHelper : ApiHookItem(), IResolvesDex {
     // 业务特定请求类
     private val classNewSendMsgReq by dexClass()
     val classOplogReq by dexClass()
-    private val classNetScenePat by dexClass()
+    internal val classNetScenePat by dexClass()
 
     // 网络
     val classNetSceneBase by dexClass()
@@ -48,7 +55,16 @@ object WePacketHelper : ApiHookItem(), IResolvesDex {
     private val methodGetNetQueue by dexMethod()
     private val methodNetDispatch by dexMethod()
 
-    private var classLoader: ClassLoader? = null
+    // 分发方法只查找一次
+    private val netDispatchMethod: Method by lazy {
+        XposedHelpers.findMethodExact(
+            classNetDispatcher.clazz,
+            "d",
+            classReqResp.clazz,
+            classCallbackIface.clazz,
+            Boolean::class.javaPrimitiveType
+        )
+    }
     private val cgiReqClassMap = mutableMapOf<Int, Class<*>>()
 
     private val signers = listOf(
@@ -403,124 +419,253 @@ object WePacketHelper : ApiHookItem(), IResolvesDex {
         jsonPayload: String,
         callback: WeRequestCallback? = null
     ) {
-        val loader = classLoader ?: return
-        Thread {
-            try {
-                var jsonObj = JSONObject(jsonPayload)
-                var nativeNetScene: Any? = null
-                var successAction: (() -> Unit)? = null
-
-                // 签名分发
-                val signer = signers.firstOrNull { it.match(cgiId) }
-                if (signer != null) {
-                    val result = signer.sign(loader, jsonObj)
-                    jsonObj = result.json
-                    nativeNetScene = result.nativeNetScene
-                    successAction = result.onSendSuccess
-                }
+        enqueue(cgiId, callback) { doSendCgi(uri, cgiId, funcId, routeId, jsonPayload, it) }
+    }
 
-                // 发送逻辑
-                if (nativeNetScene != null) {
-                    val netQueue = XposedHelpers.callStaticMethod(
-                        classMmKernel.clazz,
-                        methodGetNetQueue.method.name
-                    )
-                    val cgiType = XposedHelpers.callMethod(nativeNetScene, "getType") as Int
-
-                    val callbackProxy = Proxy.newProxyInstance(
-                        loader,
-                        arrayOf(classIOnSceneEnd.clazz)
-                    ) { proxy, method, args ->
-                        when (method.name) {
-                            "hashCode" -> return@newProxyInstance System.identityHashCode(proxy)
-                            "equals" -> return@newProxyInstance proxy === args?.get(0)
-                            "toString" -> return@newProxyInstance "WeKitNativeCallback@${
-                                Integer.toHexString(
-                                    System.identityHashCode(proxy)
-                                )
-                            }"
-                        }
+    fun sendCgi(request: CgiRequest, dslBlock: WeRequestDsl.() -> Unit) {
+        val dsl = WeRequestDsl().apply(dslBlock)
+        sendCgi(request, dsl as WeRequestCallback)
+    }
 
-                        if (method.name == "onSceneEnd" && args != null) {
-                            try {
-                                XposedHelpers.callMethod(netQueue, "q", cgiType, proxy)
-                            } catch (e: Throwable) {
-                                WeLogger.w(TAG, "注销原生回调失败: ${e.message}")
-                            }
+    /**
+     * 发送强类型请求，签名后直接编码为字节，不经过 JSON
+     */
+    fun sendCgi(request: CgiRequest, callback: WeRequestCallback? = null) {
+        enqueue(request.cgiId, callback) { doSendRequest(request, it) }
+    }
 
-                            NativeResponseHandler(cgiId, callback, successAction).invoke(
-                                proxy,
-                                method,
-                                args
-                            )
-                        }
+    /**
+     * 以 [CompletableFuture] 形式发送，失败时以 [CgiException] 结束
+     */
+    fun sendCgiAsync(
+        uri: String,
+        cgiId: Int,
+        funcId: Int,
+        routeId: Int,
+        jsonPayload: String
+    ): CompletableFuture<CgiResponse> =
+        futureOf { sendCgi(uri, cgiId, funcId, routeId, jsonPayload, it) }
 
-                        return@newProxyInstance null
-                    }
+    fun sendCgiAsync(request: CgiRequest): CompletableFuture<CgiResponse> =
+        futureOf { sendCgi(request, it) }
 
-                    // 注册并入队
-                    XposedHelpers.callMethod(netQueue, "a", cgiType, callbackProxy)
-                    XposedHelpers.callMethod(netQueue, "g", nativeNetScene)
+    /**
+     * 挂起直到收到回包，失败时抛出 [CgiException]；协程取消不会撤回已发出的请求
+     */
+    suspend fun sendCgiAwait(
+        uri: String,
+        cgiId: Int,
+        funcId: Int,
+        routeId: Int,
+        jsonPayload: String
+    ): CgiResponse = awaitResponse { sendCgi(uri, cgiId, funcId, routeId, jsonPayload, it) }
 
-                    WeLogger.i(TAG, "[$cgiId] 原生模式：已注册监听并入队发送")
-                } else {
-                    // 通用发包模式
-                    val bytes = ProtoJsonBuilder.makeBytes(jsonObj)
+    suspend fun sendCgiAwait(request: CgiRequest): CgiResponse = awaitResponse { sendCgi(request, it) }
 
-                    val finalReqObject: Any
+    val sendStats get() = CgiSendPipeline.stats
 
-                    val specificReqCls = cgiReqClassMap[cgiId]
+    private fun enqueue(
+        cgiId: Int,
+        callback: WeRequestCallback?,
+        send: (WeRequestCallback) -> Unit
+    ) {
+        val tracked = CgiSendPipeline.TrackedCallback(callback)
+        val accepted = CgiSendPipeline.submit(cgiId) {
+            try {
+                send(tracked)
+            } catch (e: Throwable) {
+                WeLogger.e(TAG, "[$cgiId] 引擎异常", e)
+                Handler(Looper.getMainLooper()).post { tracked.onFail(-1, -1, e.message ?: "") }
+            }
+        }
+        if (!accepted) {
+            WeLogger.w(TAG, "[$cgiId] 发送队列已满，丢弃请求")
+            Handler(Looper.getMainLooper()).post { tracked.onFail(-1, -1, "发送队列已满") }
+        }
+    }
 
-                    if (specificReqCls != null) {
-                        finalReqObject = XposedHelpers.newInstance(specificReqCls)
-                        XposedHelpers.callMethod(finalReqObject, "parseFrom", bytes)
-                        WeLogger.i(TAG, "[$cgiId] 使用业务特定类: ${specificReqCls.name}")
-                    } else {
-                        val rawCls = classRawReq.clazz
-                        finalReqObject = XposedHelpers.newInstance(rawCls, bytes)
-                        WeLogger.i(TAG, "[$cgiId] 使用通用原始类: ${rawCls.name}")
-                    }
+    private inline fun futureOf(send: (WeRequestCallback) -> Unit): CompletableFuture<CgiResponse> {
+        val future = CompletableFuture<CgiResponse>()
+        send(object : WeRequestCallback {
+            override fun onSuccess(json: String, bytes: ByteArray?) {
+                future.complete(CgiResponse(json, bytes))
+            }
 
-                    val builder = classConfigBuilder.clazz.getDeclaredConstructor().newInstance()
-                        ?: throw IllegalStateException("ConfigBuilder 实例化失败")
+            override fun onFail(errType: Int, errCode: Int, errMsg: String) {
+                future.completeExceptionally(CgiException(errType, errCode, errMsg))
+            }
+        })
+        return future
+    }
 
-                    XposedHelpers.setObjectField(builder, "a", finalReqObject)
-                    XposedHelpers.setObjectField(
-                        builder,
-                        "b",
-                        XposedHelpers.newInstance(classGenericResp.clazz)
-                    )
-                    XposedHelpers.setObjectField(builder, "c", uri)
-                    XposedHelpers.setIntField(builder, "d", cgiId)
-                    XposedHelpers.setIntField(builder, "e", funcId)
-                    XposedHelpers.setIntField(builder, "f", routeId)
-                    XposedHelpers.setIntField(builder, "l", 1)
-                    XposedHelpers.setObjectField(builder, "n", bytes)
-
-                    val rr = XposedHelpers.callMethod(builder, "a")
-                    val cbProxy = Proxy.newProxyInstance(
-                        loader,
-                        arrayOf(classCallbackIface.clazz),
-                        ResponseHandler(cgiId, callback, successAction)
-                    )
+    private suspend inline fun awaitResponse(crossinline send: (WeRequestCallback) -> Unit): CgiResponse =
+        suspendCancellableCoroutine { cont ->
+            send(object : WeRequestCallback {
+                override fun onSuccess(json: String, bytes: ByteArray?) {
+                    if (cont.isActive) cont.resume(CgiResponse(json, bytes))
+                }
 
-                    val methodD = XposedHelpers.findMethodExact(
-                        classNetDispatcher.clazz,
-                        "d",
-                        classReqResp.clazz,
-                        classCallbackIface.clazz,
-                        Boolean::class.javaPrimitiveType
+                override fun onFail(errType: Int, errCode: Int, errMsg: String) {
+                    if (cont.isActive) cont.resumeWithException(CgiException(errType, errCode, errMsg))
+                }
+            })
+        }
+
+    private fun doSendCgi(
+        uri: String,
+        cgiId: Int,
+        funcId: Int,
+        routeId: Int,
+        jsonPayload: String,
+        callback: WeRequestCallback
+    ) {
+        var jsonObj = JSONObject(jsonPayload)
+        var nativeNetScene: Any? = null
+        var successAction: (() -> Unit)? = null
+
+        // 签名分发
+        val signer = signers.firstOrNull { it.match(cgiId) }
+        if (signer != null) {
+            val result = signer.sign(ClassLoaderProvider.classLoader!!, jsonObj)
+            jsonObj = result.json
+            nativeNetScene = result.nativeNetScene
+            successAction = result.onSendSuccess
+        }
+
+        if (nativeNetScene != null) {
+            sendNative(cgiId, nativeNetScene, callback, successAction)
+        } else {
+            sendBytes(uri, cgiId, funcId, routeId, ProtoJsonBuilder.makeBytes(jsonObj), callback, successAction)
+        }
+    }
+
+    private fun doSendRequest(request: CgiRequest, callback: WeRequestCallback) {
+        request.sign()
+        val nativeNetScene = request.createNativeScene()
+        if (nativeNetScene != null) {
+            sendNative(request.cgiId, nativeNetScene, callback, null)
+        } else if (request.requiresNativeScene) {
+            // 这类请求没有可用的 funcId / routeId，不能退回字节发包
+            WeLogger.e(TAG, "[${request.cgiId}] 原生 NetScene 构造失败")
+            Handler(Looper.getMainLooper()).post { callback.onFail(-1, -1, "原生 NetScene 构造失败") }
+        } else {
+            sendBytes(
+                request.uri,
+                request.cgiId,
+                request.funcId,
+                request.routeId,
+                request.toByteArray(),
+                callback,
+                null
+            )
+        }
+    }
+
+    private fun sendNative(
+        cgiId: Int,
+        nativeNetScene: Any,
+        callback: WeRequestCallback,
+        successAction: (() -> Unit)?
+    ) {
+        val netQueue = methodGetNetQueue.method.invoke(null)
+        val cgiType = XposedHelpers.callMethod(nativeNetScene, "getType") as Int
+
+        val callbackProxy = Proxy.newProxyInstance(
+            ClassLoaderProvider.classLoader!!,
+            arrayOf(classIOnSceneEnd.clazz)
+        ) { proxy, method, args ->
+            when (method.name) {
+                "hashCode" -> return@newProxyInstance System.identityHashCode(proxy)
+                "equals" -> return@newProxyInstance proxy === args?.get(0)
+                "toString" -> return@newProxyInstance "WeKitNativeCallback@${
+                    Integer.toHexString(
+                        System.identityHashCode(proxy)
                     )
+                }"
+            }
 
-                    WeLogger.i(TAG, "[$cgiId] 通用发送中...")
-                    methodD.invoke(null, rr, cbProxy, false)
+            if (method.name == "onSceneEnd" && args != null) {
+                try {
+                    XposedHelpers.callMethod(netQueue, "q", cgiType, proxy)
+                } catch (e: Throwable) {
+                    WeLogger.w(TAG, "注销原生回调失败: ${e.message}")
                 }
 
-            } catch (e: Throwable) {
-                WeLogger.e(TAG, "[$cgiId] 引擎异常", e)
-                Handler(Looper.getMainLooper()).post { callback?.onFail(-1, -1, e.message ?: "") }
+                NativeResponseHandler(cgiId, callback, successAction).invoke(
+                    proxy,
+                    method,
+                    args
+                )
             }
-        }.start()
+
+            return@newProxyInstance null
+        }
+
+        // 注册并入队
+        XposedHelpers.callMethod(netQueue, "a", cgiType, callbackProxy)
+        XposedHelpers.callMethod(netQueue, "g", nativeNetScene)
+
+        WeLogger.i(TAG, "[$cgiId] 原生模式：已注册监听并入队发送")
+    }
+
+    // 通用发包模式
+    private fun sendBytes(
+        uri: String,
+        cgiId: Int,
+        funcId: Int,
+        routeId: Int,
+        bytes: ByteArray,
+        callback: WeRequestCallback,
+        successAction: (() -> Unit)?
+    ) {
+        val finalReqObject: Any
+
+        val specificReqCls = cgiReqClassMap[cgiId]
+
+        if (specificReqCls != null) {
+            finalReqObject = XposedHelpers.newInstance(specificReqCls)
+            XposedHelpers.callMethod(finalReqObject, "parseFrom", bytes)
+            WeLogger.i(TAG, "[$cgiId] 使用业务特定类: ${specificReqCls.name}")
+        } else {
+            val rawCls = classRawReq.clazz
+            finalReqObject = XposedHelpers.newInstance(rawCls, bytes)
+            WeLogger.i(TAG, "[$cgiId] 使用通用原始类: ${rawCls.name}")
+        }
+
+        val builder = classConfigBuilder.clazz.getDeclaredConstructor().newInstance()
+            ?: throw IllegalStateException("ConfigBuilder 实例化失败")
+
+        XposedHelpers.setObjectField(builder, "a", finalReqObject)
+        XposedHelpers.setObjectField(
+            builder,
+            "b",
+            XposedHelpers.newInstance(classGenericResp.clazz)
+        )
+        XposedHelpers.setObjectField(builder, "c", uri)
+        XposedHelpers.setIntField(builder, "d", cgiId)
+        XposedHelpers.setIntField(builder, "e", funcId)
+        XposedHelpers.setIntField(builder, "f", routeId)
+        XposedHelpers.setIntField(builder, "l", 1)
+        XposedHelpers.setObjectField(builder, "n", bytes)
+
+        val rr = XposedHelpers.callMethod(builder, "a")
+        val cbProxy = Proxy.newProxyInstance(
+            ClassLoaderProvider.classLoader!!,
+            arrayOf(classCallbackIface.clazz),
+            ResponseHandler(cgiId, callback, successAction)
+        )
+
+        WeLogger.i(TAG, "[$cgiId] 通用发送中...")
+        netDispatchMethod.invoke(null, rr, cbProxy, false)
+    }
+
+    // 发送成功后的附加动作 (如插入本地消息) 失败不影响回包回调
+    private fun runSuccessAction(cgiId: Int, successAction: (() -> Unit)?) {
+        try {
+            successAction?.invoke()
+        } catch (e: Throwable) {
+            WeLogger.e(TAG, "[$cgiId] 发送成功后的处理失败", e)
+        }
     }
 
     // 处理原生 NetScene 的回调
@@ -541,7 +686,7 @@ object WePacketHelper : ApiHookItem(), IResolvesDex {
 
                 Handler(Looper.getMainLooper()).post {
                     if (errType == 0 && errCode == 0) {
-                        successAction?.invoke()
+                        runSuccessAction(cgiId, successAction)
 
                         var bytes: ByteArray? = null
                         var json = "{}"
@@ -599,19 +744,28 @@ object WePacketHelper : ApiHookItem(), IResolvesDex {
                 val reqResp = args[3]
                 Handler(Looper.getMainLooper()).post {
                     if (errType == 0 && errCode == 0) {
-                        successAction?.invoke()
-                        val respWrapper = XposedHelpers.getObjectField(reqResp, "b")
-                        val yd = XposedHelpers.getObjectField(respWrapper, "a")
-                        val bytes = try {
-                            XposedHelpers.callMethod(yd, "initialProtobufBytes") as? ByteArray
-                        } catch (_: Throwable) {
-                            null
+                        runSuccessAction(cgiId, successAction)
+                        // 提取失败也必须回调，否则等待中的 sendCgiAwait / sendCgiAsync 永远不会结束
+                        val bytes: ByteArray?
+                        val json: String
+                        try {
+                            val respWrapper = XposedHelpers.getObjectField(reqResp, "b")
+                            val yd = XposedHelpers.getObjectField(respWrapper, "a")
+                            bytes = try {
+                                XposedHelpers.callMethod(yd, "initialProtobufBytes") as? ByteArray
+                            } catch (_: Throwable) {
+                                null
+                            }
+                                ?: XposedHelpers.callMethod(yd, "toByteArray") as? ByteArray
+                            json =
+                                if (bytes != null) WeProtoData().also { it.fromBytes(bytes) }
+                                    .toJsonObject()
+                                    .toString() else "{}"
+                        } catch (e: Throwable) {
+                            WeLogger.e(TAG, "[$cgiId] 解析回包失败", e)
+                            userCallback?.onFail(-1, -1, "解析回包失败: ${e.message}")
+                            return@post
                         }
-                            ?: XposedHelpers.callMethod(yd, "toByteArray") as? ByteArray
-                        val json =
-                            if (bytes != null) WeProtoData().also { it.fromBytes(bytes) }
-                                .toJsonObject()
-                                .toString() else "{}"
                         userCallback?.onSuccess(json, bytes)
                     } else {
                         userCallback?.onFail(
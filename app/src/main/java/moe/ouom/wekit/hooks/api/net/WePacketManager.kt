@@ -1,29 +1,63 @@
 package moe.ouom.wekit.hooks.api.net
 
-import moe.ouom.wekit.constants.PreferenceKeys
 import moe.ouom.wekit.hooks.api.net.intf.IWePacketInterceptor
-import moe.ouom.wekit.preferences.WePrefs
+import moe.ouom.wekit.preferences.WeConfig
 import moe.ouom.wekit.utils.logging.WeLogger
-import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
 
 object WePacketManager {
-    private val listeners = CopyOnWriteArrayList<IWePacketInterceptor>()
+    private val listeners = mutableListOf<IWePacketInterceptor>()
 
-    fun addInterceptor(interceptor: IWePacketInterceptor) = listeners.addIfAbsent(interceptor)
+    @Volatile
+    private var index = InterceptorIndex(emptyList())
 
-    fun removeInterceptor(interceptor: IWePacketInterceptor) = listeners.remove(interceptor)
+    // 详细日志直接从线格式流式编码到分块 sink，避免在网络回调线程上构建完整的 JSON 树
+    private val jsonWriters = ThreadLocal.withInitial { WeProtoJsonWriter() }
+
+    @Synchronized
+    fun addInterceptor(interceptor: IWePacketInterceptor): Boolean {
+        if (interceptor in listeners) return false
+        listeners.add(interceptor)
+        index = InterceptorIndex(listeners)
+        return true
+    }
+
+    @Synchronized
+    fun removeInterceptor(interceptor: IWePacketInterceptor): Boolean {
+        if (!listeners.remove(interceptor)) return false
+        index = InterceptorIndex(listeners)
+        return true
+    }
+
+    /**
+     * 重新读取各拦截器的 [IWePacketInterceptor.cgiIds] / [IWePacketInterceptor.uriPrefixes]
+     */
+    @Synchronized
+    fun refreshInterceptors() {
+        index = InterceptorIndex(listeners)
+    }
+
+    /**
+     * 该数据包是否需要交给 [handleRequestTamper] / [handleResponseTamper]；
+     * 返回 false 时调用方可以跳过序列化与回调代理
+     */
+    fun isObserved(uri: String, cgiId: Int): Boolean =
+        WeConfig.verboseLog || index.get(uri, cgiId).isNotEmpty()
 
     internal fun handleRequestTamper(uri: String, cgiId: Int, reqBytes: ByteArray): ByteArray? {
-        if (WePrefs.getBoolOrFalse(PreferenceKeys.VERBOSE_LOG)) {
-            val data = WeProtoData()
-            data.fromBytes(reqBytes)
-            WeLogger.logChunkedI(
-                "WePkgInterceptor-Request",
-                "Request: $uri, CGI=$cgiId, LEN=${reqBytes.size}, Data=${data.toJsonObject()}, Stack=${WeLogger.getStackTraceString()}"
-            )
+        if (WeConfig.verboseLog) {
+            WeLogger.logChunkedStreamI("WePkgInterceptor-Request") { sink ->
+                sink.append("Request: ").append(uri)
+                    .append(", CGI=").append(cgiId.toString())
+                    .append(", LEN=").append(reqBytes.size.toString())
+                    .append(", Data=")
+                jsonWriters.get()!!.write(reqBytes, sink)
+                sink.append(", Stack=").append(WeLogger.getStackTraceString())
+            }
         }
 
-        for (listener in listeners) {
+        for (listener in index.get(uri, cgiId)) {
             val tampered = listener.onRequest(uri, cgiId, reqBytes)
             if (tampered != null) return tampered
         }
@@ -31,18 +65,65 @@ object WePacketManager {
     }
 
     internal fun handleResponseTamper(uri: String, cgiId: Int, respBytes: ByteArray): ByteArray? {
-        if (WePrefs.getBoolOrFalse(PreferenceKeys.VERBOSE_LOG)) {
-            val data = WeProtoData()
-            data.fromBytes(respBytes)
-            WeLogger.logChunkedI(
-                "WePkgInterceptor-Response",
-                "Received: $uri, CGI=$cgiId, LEN=${respBytes.size}, Data=${data.toJsonObject()}"
-            )
+        if (WeConfig.verboseLog) {
+            WeLogger.logChunkedStreamI("WePkgInterceptor-Response") { sink ->
+                sink.append("Received: ").append(uri)
+                    .append(", CGI=").append(cgiId.toString())
+                    .append(", LEN=").append(respBytes.size.toString())
+                    .append(", Data=")
+                jsonWriters.get()!!.write(respBytes, sink)
+            }
         }
-        for (listener in listeners) {
+        for (listener in index.get(uri, cgiId)) {
             val tampered = listener.onResponse(uri, cgiId, respBytes)
             if (tampered != null) return tampered
         }
         return null
     }
-}
\ No newline at end of file
+
+    /**
+     * 按 CGI id 预先分好组的拦截器表，每组都已包含未声明过滤条件的拦截器，并保持注册顺序；
+     * 存在 uri 前缀订阅时按 (CGI id, uri) 首次匹配后记住结果，同一 CGI 的后续数据包直接查表
+     */
+    private class InterceptorIndex(registered: List<IWePacketInterceptor>) {
+
+        private class Entry(
+            val interceptor: IWePacketInterceptor,
+            val cgiIds: Set<Int>,
+            val uriPrefixes: List<String>,
+        ) {
+            val isWildcard get() = cgiIds.isEmpty() && uriPrefixes.isEmpty()
+
+            fun matches(uri: String, cgiId: Int) =
+                isWildcard || cgiId in cgiIds || uriPrefixes.any { uri.startsWith(it) }
+        }
+
+        private val entries = registered.map { Entry(it, it.cgiIds.toSet(), it.uriPrefixes.toList()) }
+        private val wildcard = entries.filter { it.isWildcard }.map { it.interceptor }.toTypedArray()
+        private val byCgi: Map<Int, Array<IWePacketInterceptor>> =
+            entries.flatMapTo(HashSet()) { it.cgiIds }.associateWith { cgiId ->
+                entries.filter { it.isWildcard || cgiId in it.cgiIds }.map { it.interceptor }.toTypedArray()
+            }
+        private val hasPrefixes = entries.any { it.uriPrefixes.isNotEmpty() }
+
+        // 宿主的 CGI uri 是有限集合，超过上限后不再缓存，退回逐个匹配
+        private val byCgiAndUri = ConcurrentHashMap<Int, ConcurrentHashMap<String, Array<IWePacketInterceptor>>>()
+        private val cachedCount = AtomicInteger()
+
+        fun get(uri: String, cgiId: Int): Array<IWePacketInterceptor> {
+            if (!hasPrefixes) return byCgi[cgiId] ?: wildcard
+            byCgiAndUri[cgiId]?.get(uri)?.let { return it }
+
+            val matched = entries.filter { it.matches(uri, cgiId) }.map { it.interceptor }.toTypedArray()
+            if (cachedCount.get() < MAX_CACHED_URIS) {
+                val perCgi = byCgiAndUri.getOrPut(cgiId) { ConcurrentHashMap() }
+                if (perCgi.putIfAbsent(uri, matched) == null) cachedCount.incrementAndGet()
+            }
+            return matched
+        }
+
+        companion object {
+            private const val MAX_CACHED_URIS = 4096
+        }
+    }
+}
@@ -80,25 +80,27 @@ class SendPatSigner(private val clsProvider: () -> Class<*>?) : ISigner {
     override fun sign(loader: ClassLoader, json: JSONObject): SignResult {
         val cls = clsProvider() ?: return SignResult(json)
 
-        try {
-            val toUser = json.optString("3")
-            val pattedUser = json.optString("4")
-            val scene = json.optInt("6")
-
-            // wxid_xxxxx_761663_1770315448000
-            val validPair = android.util.Pair(previewNextId("message"), System.currentTimeMillis())
-
-            val nativeScene = XposedHelpers.newInstance(
-                cls,
-                validPair,   // Pair
-                toUser,      // String
-                pattedUser,  // String
-                scene        // int
-            )
-            return SignResult(json, nativeNetScene = nativeScene)
-        } catch (e: Throwable) {
-            WeLogger.e("SendPatSigner", "实例化原生 NetScene 失败: ${e.message}")
-            return SignResult(json)
+        val nativeScene = newNetScene(cls, json.optString("3"), json.optString("4"), json.optInt("6"))
+        return SignResult(json, nativeNetScene = nativeScene)
+    }
+
+    companion object {
+        fun newNetScene(cls: Class<*>, toUser: String, pattedUser: String, scene: Int): Any? {
+            return try {
+                // wxid_xxxxx_761663_1770315448000
+                val validPair = android.util.Pair(previewNextId("message"), System.currentTimeMillis())
+
+                XposedHelpers.newInstance(
+                    cls,
+                    validPair,   // Pair
+                    toUser,      // String
+                    pattedUser,  // String
+                    scene        // int
+                )
+            } catch (e: Throwable) {
+                WeLogger.e("SendPatSigner", "实例化原生 NetScene 失败: ${e.message}")
+                null
+            }
         }
     }
 }
\ No newline at end of file
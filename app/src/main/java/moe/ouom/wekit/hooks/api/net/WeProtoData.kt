@@ -26,8 +26,49 @@ class WeProtoData {
         var value: Any,
     )
 
-    private class LenValue(raw: ByteArray?) {
-        var raw: ByteArray = raw ?: ByteArray(0)
+    /**
+     * 长度分隔字段的值
+     *
+     * 解析时只记录其在源缓冲区中的 offset/length，不做拷贝也不做分类；
+     * 子消息 / UTF-8 的判定推迟到 [toJsonObject]、[viewValues] 或修改操作首次访问该字段时，
+     * 未被访问过的字段在 [toMessageBytes] 中原样写回
+     */
+    private class LenValue(
+        private var buffer: ByteArray,
+        private var offset: Int,
+        var length: Int,
+    ) {
+        constructor(raw: ByteArray?) : this(raw ?: ByteArray(0), 0, raw?.size ?: 0)
+
+        var raw: ByteArray
+            get() {
+                if (offset != 0 || length != buffer.size) {
+                    buffer = buffer.copyOfRange(offset, offset + length)
+                    offset = 0
+                }
+                return buffer
+            }
+            set(value) {
+                buffer = value
+                offset = 0
+                length = value.size
+            }
+
+        fun contentEquals(other: ByteArray): Boolean {
+            if (other.size != length) return false
+            for (i in 0 until length) {
+                if (other[i] != buffer[offset + i]) return false
+            }
+            return true
+        }
+
+        fun decodeUtf8(): String = String(buffer, offset, length, StandardCharsets.UTF_8)
+
+        fun parseInto(target: WeProtoData) = target.parseMessageBytes(buffer, offset, length)
+
+        fun writeTo(out: CodedOutputStream, fieldNumber: Int) =
+            out.writeByteArray(fieldNumber, buffer, offset, length)
+
         var utf8: String? = null
         var subMessage: WeProtoData? = null
         var view: LenView = LenView.AUTO
@@ -52,52 +93,34 @@ class WeProtoData {
         private fun stripNonHex(s: String?): String =
             s?.filter { it in '0'..'9' || it in 'a'..'f' || it in 'A'..'F' } ?: ""
 
-        private fun tryDecodeUtf8Roundtrip(b: ByteArray?): String? {
-            if (b == null) return null
+        private fun tryDecodeUtf8Roundtrip(lv: LenValue): String? {
             return runCatching {
-                val s = String(b, StandardCharsets.UTF_8)
-                s.takeIf { s.toByteArray(StandardCharsets.UTF_8).contentEquals(b) }
+                val s = lv.decodeUtf8()
+                s.takeIf { lv.contentEquals(s.toByteArray(StandardCharsets.UTF_8)) }
             }.getOrNull()
         }
 
-        private fun tryParseSubMessageStrong(bytes: ByteArray?): WeProtoData? {
-            if (bytes == null || bytes.isEmpty()) return null
+        // 子消息只解析一层，其内部的长度字段同样保持未分类，
+        // 因此往返校验时这些字段按原字节写回，不会逐层递归试探
+        private fun tryParseSubMessageStrong(lv: LenValue): WeProtoData? {
+            if (lv.length == 0) return null
             return runCatching {
                 val sub = WeProtoData()
-                sub.parseMessageBytes(bytes)
+                lv.parseInto(sub)
                 if (sub.fields.isEmpty()) return null
-                val re = sub.toMessageBytes()
-                sub.takeIf { re.contentEquals(bytes) }
+                sub.takeIf { lv.contentEquals(it.toMessageBytes()) }
             }.getOrNull()
         }
-
-        private fun analyzeLenValue(lv: LenValue) {
-            tryParseSubMessageStrong(lv.raw)?.let {
-                lv.subMessage = it
-                lv.utf8 = null
-                lv.view = LenView.SUB
-                return
-            }
-            tryDecodeUtf8Roundtrip(lv.raw)?.let {
-                lv.utf8 = it
-                lv.subMessage = null
-                lv.view = LenView.UTF8
-                return
-            }
-            lv.utf8 = null
-            lv.subMessage = null
-            lv.view = LenView.HEX
-        }
     }
 
     private fun ensureSubParsedStrong(lv: LenValue): WeProtoData? {
         lv.subMessage?.let { return it }
-        return tryParseSubMessageStrong(lv.raw)?.also { lv.subMessage = it }
+        return tryParseSubMessageStrong(lv)?.also { lv.subMessage = it }
     }
 
     private fun ensureUtf8Decoded(lv: LenValue): String? {
         lv.utf8?.let { return it }
-        return tryDecodeUtf8Roundtrip(lv.raw)?.also { lv.utf8 = it }
+        return tryDecodeUtf8Roundtrip(lv)?.also { lv.utf8 = it }
     }
 
     fun clear() {
@@ -109,26 +132,31 @@ class WeProtoData {
         packetPrefix = prefix?.copyOf() ?: ByteArray(0)
     }
 
+    /**
+     * 解析后的字段直接引用 [b] 中的切片，调用方在本对象使用期间不应修改该数组
+     */
     fun fromBytes(b: ByteArray?) {
         clear()
         if (b == null) return
         if (hasPacketPrefix(b)) {
             packetPrefix = b.copyOfRange(0, 4)
-            parseMessageBytes(b.copyOfRange(4, b.size))
+            parseMessageBytes(b, 4, b.size - 4)
         } else {
-            parseMessageBytes(b)
+            parseMessageBytes(b, 0, b.size)
         }
     }
 
     fun fromMessageBytes(b: ByteArray?) {
         clear()
         packetPrefix = ByteArray(0)
-        parseMessageBytes(b)
+        if (b != null) parseMessageBytes(b, 0, b.size)
     }
 
-    private fun parseMessageBytes(b: ByteArray?) {
-        if (b == null) return
-        val input = CodedInputStream.newInstance(b)
+    /**
+     * 单遍扫描，长度字段只记录切片，不做任何预解码
+     */
+    private fun parseMessageBytes(b: ByteArray, start: Int, length: Int) {
+        val input = CodedInputStream.newInstance(b, start, length)
         while (!input.isAtEnd) {
             val tag = input.readTag()
             if (tag == 0) break
@@ -139,9 +167,11 @@ class WeProtoData {
                 0 -> fields.add(Field(fieldNumber, wireType, input.readInt64()))
                 1 -> fields.add(Field(fieldNumber, wireType, input.readFixed64()))
                 2 -> {
-                    val lv = LenValue(input.readByteArray())
-                    analyzeLenValue(lv)
-                    fields.add(Field(fieldNumber, wireType, lv))
+                    val len = input.readRawVarint32()
+                    if (len < 0) throw IOException("Negative length: $len")
+                    val offset = start + input.totalBytesRead
+                    input.skipRawBytes(len)
+                    fields.add(Field(fieldNumber, wireType, LenValue(b, offset, len)))
                 }
 
                 5 -> fields.add(Field(fieldNumber, wireType, input.readFixed32()))
@@ -186,6 +216,61 @@ class WeProtoData {
         }
     }
 
+    /**
+     * 按首次出现顺序返回所有字段号
+     */
+    fun fieldNumbers(): List<Int> = fields.mapTo(LinkedHashSet()) { it.fieldNumber }.toList()
+
+    fun occurrenceCount(fieldNumber: Int): Int = fields.count { it.fieldNumber == fieldNumber }
+
+    /**
+     * 按需解码某个字段的所有出现，与 [toJsonObject] 的视图规则一致，
+     * 但子消息以 [WeProtoData] 返回而不展开为 JSON，对其修改会在重新编码时生效
+     */
+    fun viewValues(fieldNumber: Int): List<Any> =
+        fields.filter { it.fieldNumber == fieldNumber }.map { f ->
+            if (f.wireType != 2) return@map f.value
+            val lv = f.value as LenValue
+            when (lv.view) {
+                LenView.AUTO, LenView.SUB -> ensureSubParsedStrong(lv)?.also { lv.view = LenView.SUB }
+                    ?: ensureUtf8Decoded(lv)?.also { lv.view = LenView.UTF8 }
+                    ?: ("hex->" + bytesToHex(lv.raw)).also { lv.view = LenView.HEX }
+
+                LenView.UTF8 -> ensureUtf8Decoded(lv)
+                    ?: ensureSubParsedStrong(lv)
+                    ?: ("hex->" + bytesToHex(lv.raw))
+
+                LenView.HEX -> "hex->" + bytesToHex(lv.raw)
+            }
+        }
+
+    /**
+     * 以 JSON 视图中的值修改某个已存在的字段
+     * @param value Number / String / JSONObject，规则同 [applyViewJson]
+     */
+    fun setViewValue(fieldNumber: Int, occurrenceIndex: Int, value: Any): Boolean {
+        val idx = findFieldIndex(fieldNumber, occurrenceIndex).takeIf { it >= 0 } ?: return false
+        return applyOne(fields[idx], value, true) > 0
+    }
+
+    /**
+     * 以 JSON 视图中的值整体替换某个字段的所有出现；value 为 JSONArray 时视为重复字段
+     */
+    fun replaceViewValue(fieldNumber: Int, value: Any?) {
+        val existing = indicesOf(fieldNumber)
+        if (existing.size == 1 && value !is JSONArray && value != null &&
+            applyOne(fields[existing[0]], value, true) > 0
+        ) return
+
+        removeAllOccurrences(fieldNumber)
+        when (value) {
+            is JSONArray -> repeat(value.length()) { addJsonValueAsField(fieldNumber, value.get(it)) }
+            else -> addJsonValueAsField(fieldNumber, value)
+        }
+    }
+
+    fun removeAll(fieldNumber: Int): Int = removeAllOccurrences(fieldNumber)
+
     fun toMessageBytes(): ByteArray {
         val bos = ByteArrayOutputStream()
         val out = CodedOutputStream.newInstance(bos)
@@ -203,14 +288,15 @@ class WeProtoData {
                     1 -> out.writeFixed64(f.fieldNumber, f.value as Long)
                     2 -> {
                         val lv = f.value as LenValue
+                        // 从未被访问的字段既无 subMessage 也无 utf8，直接写回原切片
                         if (lv.subMessage != null) {
                             val newRaw = lv.subMessage!!.toMessageBytes()
-                            if (!newRaw.contentEquals(lv.raw)) lv.raw = newRaw
+                            if (!lv.contentEquals(newRaw)) lv.raw = newRaw
                         } else if (lv.utf8 != null && lv.view == LenView.UTF8) {
                             val newRaw = lv.utf8!!.toByteArray(StandardCharsets.UTF_8)
-                            if (!newRaw.contentEquals(lv.raw)) lv.raw = newRaw
+                            if (!lv.contentEquals(newRaw)) lv.raw = newRaw
                         }
-                        out.writeByteArray(f.fieldNumber, lv.raw)
+                        lv.writeTo(out, f.fieldNumber)
                     }
 
                     5 -> out.writeFixed32(f.fieldNumber, f.value as Int)
@@ -296,8 +382,8 @@ class WeProtoData {
         val idx = findFieldIndex(fieldNumber, occurrenceIndex).takeIf { it >= 0 } ?: return false
         val f = fields[idx].takeIf { it.wireType == 2 } ?: return false
         val lv = f.value as LenValue
-        val sub = tryParseSubMessageStrong(subBytes)
         lv.raw = subBytes ?: ByteArray(0)
+        val sub = tryParseSubMessageStrong(lv)
         lv.subMessage = sub
         lv.utf8 = null
         lv.view = if (sub != null) LenView.SUB else LenView.HEX
@@ -0,0 +1,274 @@
+package moe.ouom.wekit.hooks.api.net
+
+import com.google.protobuf.CodedInputStream
+import com.google.protobuf.CodedOutputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.CharBuffer
+import java.nio.charset.CodingErrorAction
+import java.nio.charset.StandardCharsets
+import kotlin.math.min
+
+/**
+ * 流式 protobuf → JSON 编码器
+ *
+ * 直接遍历线格式写入 [Appendable]，不构建 [WeProtoData] 与 JSONObject 中间树。
+ * 输出规则与 [WeProtoData.toJsonObject] 一致：能完整解析且重新编码后字节不变的长度字段展开为子对象，
+ * 合法 UTF-8 输出为字符串，其余输出为 "hex->" 前缀的十六进制，重复字段合并为数组
+ *
+ * 单个字段最多输出 [maxFieldBytes] 字节的内容，整个包最多输出 [maxOutputChars] 个字符，
+ * 超出部分以省略标记代替，此时输出不再是合法 JSON
+ *
+ * 实例持有解码缓冲区，不可跨线程共享
+ */
+class WeProtoJsonWriter(
+    private val maxFieldBytes: Int = DEFAULT_MAX_FIELD_BYTES,
+    private val maxOutputChars: Int = DEFAULT_MAX_OUTPUT_CHARS,
+) {
+
+    companion object {
+        const val DEFAULT_MAX_FIELD_BYTES = 1024
+        const val DEFAULT_MAX_OUTPUT_CHARS = 256 * 1024
+
+        private const val MAX_DEPTH = 32
+        private val HEX = "0123456789ABCDEF".toCharArray()
+    }
+
+    private val decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPORT)
+        .onUnmappableCharacter(CodingErrorAction.REPORT)
+    private val chars = CharBuffer.allocate(maxFieldBytes)
+
+    private val tables = arrayOfNulls<FieldTable>(MAX_DEPTH)
+
+    private var out: Appendable = StringBuilder()
+    private var written = 0
+    private var truncated = false
+
+    /**
+     * 写入一个数据包，带 4 字节包头时与 [WeProtoData.fromBytes] 一样跳过包头
+     */
+    fun write(bytes: ByteArray, out: Appendable) {
+        this.out = out
+        written = 0
+        truncated = false
+        val start = if (WeProtoData.hasPacketPrefix(bytes)) 4 else 0
+        writeLen(bytes, start, bytes.size - start, 0)
+        if (truncated) {
+            out.append("...(truncated, ${bytes.size} bytes total)")
+        }
+        this.out = StringBuilder()
+    }
+
+    fun toJsonString(bytes: ByteArray): String = StringBuilder().also { write(bytes, it) }.toString()
+
+    private fun writeLen(b: ByteArray, off: Int, len: Int, depth: Int) {
+        if (truncated) return
+        val table = if (depth < MAX_DEPTH) tableAt(depth) else null
+        if (table != null && scan(b, off, len, table)) {
+            writeMessage(b, table, depth)
+        } else {
+            writeBytes(b, off, len)
+        }
+    }
+
+    private fun tableAt(depth: Int) = tables[depth] ?: FieldTable().also { tables[depth] = it }
+
+    /**
+     * 单遍扫描并记录字段，同时判定是否按子消息展开
+     *
+     * 判定规则与 [WeProtoData.toJsonObject] 的往返校验等价：能完整解析、至少有一个字段，
+     * 且标签、varint 与长度前缀都是最短编码（否则重新编码后字节不同）。
+     * 长度字段只记录切片，其内容在输出时由下一层各自扫描一次
+     */
+    private fun scan(b: ByteArray, off: Int, len: Int, table: FieldTable): Boolean {
+        table.clear()
+        if (len <= 0) return false
+        return try {
+            val input = CodedInputStream.newInstance(b, off, len)
+            while (!input.isAtEnd) {
+                var pos = input.totalBytesRead
+                val tag = input.readTag()
+                if (input.totalBytesRead - pos != CodedOutputStream.computeUInt32SizeNoTag(tag)) return false
+                val fieldNumber = tag ushr 3
+                when (val wireType = tag and 7) {
+                    0 -> {
+                        pos = input.totalBytesRead
+                        val v = input.readInt64()
+                        if (input.totalBytesRead - pos != CodedOutputStream.computeUInt64SizeNoTag(v)) return false
+                        table.add(fieldNumber, wireType, v, 0)
+                    }
+
+                    1 -> table.add(fieldNumber, wireType, input.readFixed64(), 0)
+                    2 -> {
+                        pos = input.totalBytesRead
+                        val n = input.readRawVarint32()
+                        if (n < 0 || input.totalBytesRead - pos != CodedOutputStream.computeUInt32SizeNoTag(n)) {
+                            return false
+                        }
+                        val valueOff = off + input.totalBytesRead
+                        input.skipRawBytes(n)
+                        table.add(fieldNumber, wireType, valueOff.toLong(), n)
+                    }
+
+                    5 -> table.add(fieldNumber, wireType, input.readFixed32().toLong(), 0)
+                    else -> return false
+                }
+            }
+            table.size > 0
+        } catch (_: IOException) {
+            false
+        }
+    }
+
+    private fun writeMessage(b: ByteArray, table: FieldTable, depth: Int) {
+        // 按首次出现顺序输出字段号，重复字段沿链表输出为数组，与 toJsonObject 一致
+        emit('{')
+        var first = true
+        for (i in 0 until table.size) {
+            if (truncated) return
+            val count = table.counts[i]
+            if (count == 0) continue
+            if (!first) emit(',')
+            first = false
+            emit('"')
+            emit(table.numbers[i].toString())
+            emit("\":")
+            if (count > 1) emit('[')
+            var j = i
+            while (j >= 0 && !truncated) {
+                if (j != i) emit(',')
+                when (table.wireTypes[j]) {
+                    2 -> writeLen(b, table.values[j].toInt(), table.lengths[j], depth + 1)
+                    else -> emit(table.values[j].toString())
+                }
+                j = table.next[j]
+            }
+            if (count > 1) emit(']')
+        }
+        emit('}')
+    }
+
+    /**
+     * 一层消息的字段记录，按深度复用；长度字段的 value 为其在原数组中的偏移，其余为数值本身
+     */
+    private class FieldTable {
+        var size = 0
+        var numbers = IntArray(INITIAL_CAPACITY)
+        var wireTypes = IntArray(INITIAL_CAPACITY)
+        var values = LongArray(INITIAL_CAPACITY)
+        var lengths = IntArray(INITIAL_CAPACITY)
+
+        // 同字段号的下一次出现，-1 表示没有
+        var next = IntArray(INITIAL_CAPACITY)
+
+        // 仅在字段号首次出现处记录出现次数，其余为 0
+        var counts = IntArray(INITIAL_CAPACITY)
+        private var firstOf = IntArray(INITIAL_CAPACITY)
+        private val lastIndex = HashMap<Int, Int>()
+
+        fun clear() {
+            size = 0
+            lastIndex.clear()
+        }
+
+        fun add(fieldNumber: Int, wireType: Int, value: Long, length: Int) {
+            if (size == numbers.size) grow()
+            val i = size++
+            numbers[i] = fieldNumber
+            wireTypes[i] = wireType
+            values[i] = value
+            lengths[i] = length
+            next[i] = -1
+            counts[i] = 0
+            val prev = lastIndex.put(fieldNumber, i)
+            firstOf[i] = if (prev == null) i else firstOf[prev]
+            if (prev != null) next[prev] = i
+            counts[firstOf[i]]++
+        }
+
+        private fun grow() {
+            val n = numbers.size * 2
+            numbers = numbers.copyOf(n)
+            wireTypes = wireTypes.copyOf(n)
+            values = values.copyOf(n)
+            lengths = lengths.copyOf(n)
+            next = next.copyOf(n)
+            counts = counts.copyOf(n)
+            firstOf = firstOf.copyOf(n)
+        }
+
+        companion object {
+            private const val INITIAL_CAPACITY = 16
+        }
+    }
+
+    private fun writeBytes(b: ByteArray, off: Int, len: Int) {
+        val n = min(len, maxFieldBytes)
+        val omitted = len - n
+
+        decoder.reset()
+        chars.clear()
+        // 截断处可能落在多字节字符中间，此时不是最终输入，残缺的尾部不算错误
+        val result = decoder.decode(ByteBuffer.wrap(b, off, n), chars, omitted == 0)
+        val isText = !result.isError && (omitted > 0 || !decoder.flush(chars).isError)
+
+        emit('"')
+        if (isText) {
+            chars.flip()
+            while (chars.hasRemaining() && !truncated) emitEscaped(chars.get())
+        } else {
+            emit("hex->")
+            for (i in off until off + n) {
+                if (truncated) break
+                val v = b[i].toInt() and 0xFF
+                emit(HEX[v ushr 4])
+                emit(HEX[v and 0x0F])
+            }
+        }
+        if (omitted > 0) emit("...(+$omitted bytes)")
+        emit('"')
+    }
+
+    private fun emitEscaped(c: Char) {
+        when (c) {
+            '"' -> emit("\\\"")
+            '\\' -> emit("\\\\")
+            '\n' -> emit("\\n")
+            '\r' -> emit("\\r")
+            '\t' -> emit("\\t")
+            '\b' -> emit("\\b")
+            '\u000C' -> emit("\\f")
+            else -> if (c < ' ') {
+                emit("\\u")
+                val v = c.code
+                emit(HEX[(v ushr 12) and 0x0F])
+                emit(HEX[(v ushr 8) and 0x0F])
+                emit(HEX[(v ushr 4) and 0x0F])
+                emit(HEX[v and 0x0F])
+            } else {
+                emit(c)
+            }
+        }
+    }
+
+    private fun emit(c: Char) {
+        if (truncated) return
+        if (written >= maxOutputChars) {
+            truncated = true
+            return
+        }
+        out.append(c)
+        written++
+    }
+
+    private fun emit(s: String) {
+        if (truncated) return
+        if (written + s.length > maxOutputChars) {
+            truncated = true
+            return
+        }
+        out.append(s)
+        written += s.length
+    }
+}
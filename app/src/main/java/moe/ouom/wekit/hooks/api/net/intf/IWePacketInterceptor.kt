@@ -1,6 +1,17 @@
 package moe.ouom.wekit.hooks.api.net.intf
 
 interface IWePacketInterceptor {
+    /**
+     * 关心的 CGI id；与 [uriPrefixes] 同时为空时接收所有数据包
+     * 注册时读取一次，之后变化需调用 WePacketManager.refreshInterceptors
+     */
+    val cgiIds: Set<Int> get() = emptySet()
+
+    /**
+     * 关心的 uri 前缀，与 [cgiIds] 任一匹配即投递
+     */
+    val uriPrefixes: List<String> get() = emptyList()
+
     fun onRequest(uri: String, cgiId: Int, reqBytes: ByteArray): ByteArray? = null
     fun onResponse(uri: String, cgiId: Int, respBytes: ByteArray): ByteArray? = null
 }
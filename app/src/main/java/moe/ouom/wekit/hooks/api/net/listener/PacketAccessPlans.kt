@@ -0,0 +1,83 @@
+package moe.ouom.wekit.hooks.api.net.listener
+
+import java.lang.invoke.MethodHandle
+import java.lang.invoke.MethodHandles
+import java.lang.reflect.Field
+import java.lang.reflect.Method
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * 数据包分发钩子使用的成员访问计划
+ *
+ * 每个具体的 ReqResp / 包装 / protobuf 类只在首次出现时反射查找一次所需成员，
+ * 绑定为 [MethodHandle] 并记住应走的分支；之后的拦截不再做反射查找，也不依赖异常选择分支
+ */
+internal object PacketAccessPlans {
+
+    private const val WXP_REQ_RESP = "com.tencent.kinda.framework.module.impl.WXPCommReqResp"
+
+    private val lookup = MethodHandles.lookup()
+
+    /**
+     * ReqResp 对象 (dispatch 的第二个参数、onGYNetEnd 的第五个参数)
+     */
+    class ReqRespPlan(cls: Class<*>) {
+        val getUri = findMethod(cls, "getUri")
+        val getType = findMethod(cls, "getType")
+        val getReqObj = findMethod(cls, "getReqObj")
+
+        // Kinda 框架的 WXPCommReqResp 直接以字节数组读写响应
+        val isWxp = cls.name == WXP_REQ_RESP
+        val getWxpRespData = if (isWxp) findMethod(cls, "getWXPRespData") else null
+        val setWxpRespData = if (isWxp) findMethod(cls, "setWXPRespData", ByteArray::class.java) else null
+
+        // 标准混淆实现优先读字段 b，没有时退回 getRespObj()
+        val getRespWrapper = if (isWxp) null else findField(cls, "b") ?: findMethod(cls, "getRespObj")
+    }
+
+    /**
+     * 请求 / 响应包装对象，其字段 a 为 protobuf 对象
+     */
+    class WrapperPlan(cls: Class<*>) {
+        val getProto = findField(cls, "a")
+    }
+
+    class ProtoPlan(cls: Class<*>) {
+        val toByteArray = findMethod(cls, "toByteArray")
+        val parseFrom = findMethod(cls, "parseFrom", ByteArray::class.java)
+    }
+
+    private val reqRespPlans = ConcurrentHashMap<Class<*>, ReqRespPlan>()
+    private val wrapperPlans = ConcurrentHashMap<Class<*>, WrapperPlan>()
+    private val protoPlans = ConcurrentHashMap<Class<*>, ProtoPlan>()
+
+    fun reqResp(obj: Any): ReqRespPlan = reqRespPlans.getOrPut(obj.javaClass) { ReqRespPlan(obj.javaClass) }
+
+    fun wrapper(obj: Any): WrapperPlan = wrapperPlans.getOrPut(obj.javaClass) { WrapperPlan(obj.javaClass) }
+
+    fun proto(obj: Any): ProtoPlan = protoPlans.getOrPut(obj.javaClass) { ProtoPlan(obj.javaClass) }
+
+    private fun findMethod(cls: Class<*>, name: String, vararg params: Class<*>): MethodHandle? =
+        hierarchy(cls)
+            .flatMap { it.declaredMethods.asSequence() }
+            .firstOrNull { it.name == name && it.parameterTypes.contentEquals(params) }
+            ?.let { unreflect(it) }
+
+    private fun findField(cls: Class<*>, name: String): MethodHandle? =
+        hierarchy(cls)
+            .mapNotNull { c -> c.declaredFields.firstOrNull { it.name == name } }
+            .firstOrNull()
+            ?.let { unreflectGetter(it) }
+
+    private fun hierarchy(cls: Class<*>) = generateSequence(cls) { it.superclass }
+
+    private fun unreflect(method: Method): MethodHandle {
+        method.isAccessible = true
+        return lookup.unreflect(method)
+    }
+
+    private fun unreflectGetter(field: Field): MethodHandle {
+        field.isAccessible = true
+        return lookup.unreflectGetter(field)
+    }
+}
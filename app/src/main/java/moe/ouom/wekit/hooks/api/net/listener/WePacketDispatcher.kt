@@ -2,21 +2,21 @@ package moe.ouom.wekit.hooks.api.net.listener
 
 import android.os.Handler
 import android.os.Looper
+import android.os.SystemClock
 import androidx.core.os.postDelayed
-import com.highcapable.kavaref.KavaRef.Companion.asResolver
 import com.highcapable.kavaref.extension.ClassLoaderProvider
-import de.robv.android.xposed.XposedHelpers
 import dev.ujhhgtg.nameof.nameof
 import moe.ouom.wekit.core.dsl.dexClass
 import moe.ouom.wekit.core.model.ApiHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
+import moe.ouom.wekit.hooks.api.net.WePacketCapture
 import moe.ouom.wekit.hooks.api.net.WePacketHelper
 import moe.ouom.wekit.hooks.api.net.WePacketManager
+import moe.ouom.wekit.utils.DedupeFilter
 import moe.ouom.wekit.utils.logging.WeLogger
 import org.luckypray.dexkit.DexKitBridge
 import java.lang.reflect.Proxy
-import java.util.concurrent.ConcurrentHashMap
 
 @HookItem(path = "API/数据包拦截与篡改服务", desc = "响应数据包拦截与篡改")
 object WePacketDispatcher : ApiHookItem(), IResolvesDex {
@@ -24,8 +24,10 @@ object WePacketDispatcher : ApiHookItem(), IResolvesDex {
     private val TAG = nameof(WePacketDispatcher)
     private val classOnGYNetEnd by dexClass()
 
-    // 缓存最近 10 条记录，避免因脚本引起的无限递归
-    private val recentRequests = ConcurrentHashMap<String, Long>()
+    // 500ms 内的重复请求不再交给拦截器，避免因脚本引起的无限递归
+    private val recentRequests = DedupeFilter(64, 500)
+
+    val dedupeStats get() = recentRequests.stats
 
     override fun onEnable() {
         Handler(Looper.getMainLooper()).postDelayed(3000) {
@@ -38,42 +40,19 @@ object WePacketDispatcher : ApiHookItem(), IResolvesDex {
                 hookBefore(netSceneBaseClass, "dispatch") { param ->
                     val v0Var = param.args[1] ?: return@hookBefore
                     val originalCallback = param.args[2] ?: return@hookBefore
+                    val plan = PacketAccessPlans.reqResp(v0Var)
 
                     // 有时 getUri 返回 null
-                    val uri = (XposedHelpers.callMethod(v0Var, "getUri") ?: "null") as String
-                    val cgiId = XposedHelpers.callMethod(v0Var, "getType") as Int
-                    try {
-                        val reqWrapper = XposedHelpers.callMethod(v0Var, "getReqObj")
-                        val reqPbObj = XposedHelpers.getObjectField(reqWrapper, "a") // m.a
-                        val reqBytes =
-                            XposedHelpers.callMethod(reqPbObj, "toByteArray") as ByteArray
-
-                        // 构造唯一标识符
-                        val key =
-                            "$cgiId|$uri|${reqWrapper?.javaClass?.name}|${reqPbObj?.javaClass?.name}|${reqBytes.contentToString()}"
-                        // 检查是否在缓存中且时间间隔小于500毫秒
-                        val currentTime = System.currentTimeMillis()
-                        val lastTime = recentRequests[key]
-                        if (lastTime != null && currentTime - lastTime < 500) {
-                            // 直接返回，不执行任何请求处理
-                            WeLogger.i("PkgDispatcher", "Request skipped (duplicate): $uri")
-                            return@hookBefore
-                        }
-                        // 更新缓存
-                        recentRequests[key] = currentTime
-                        // 限制缓存大小为10条
-                        if (recentRequests.size > 10) {
-                            // 移除最旧的条目
-                            val oldestEntry = recentRequests.entries.firstOrNull()
-                            oldestEntry?.let {
-                                recentRequests.remove(it.key)
-                            }
-                        }
+                    val uri = plan.getUri?.invoke(v0Var) as? String ?: "null"
+                    val cgiId = plan.getType?.invoke(v0Var) as? Int ?: return@hookBefore
 
-                        WePacketManager.handleRequestTamper(uri, cgiId, reqBytes)?.let { tampered ->
-                            XposedHelpers.callMethod(reqPbObj, "parseFrom", tampered)
-                            WeLogger.i("PkgDispatcher", "Request Tampered: $uri")
-                        }
+                    // 绝大多数 CGI 没有任何订阅者，既不序列化请求也不替换回调
+                    if (!WePacketCapture.isRecording && !WePacketManager.isObserved(uri, cgiId)) {
+                        return@hookBefore
+                    }
+
+                    try {
+                        if (!handleRequest(v0Var, plan, uri, cgiId)) return@hookBefore
                     } catch (_: Throwable) {
                     }
 
@@ -89,75 +68,7 @@ object WePacketDispatcher : ApiHookItem(), IResolvesDex {
                             "equals" -> return@newProxyInstance originalCallback == args?.get(0)
                             "onGYNetEnd" -> {
                                 try {
-                                    val respV0 = args!![4] ?: v0Var
-                                    val className = respV0.javaClass.name
-
-                                    // 处理 Kinda 框架的 WXPCommReqResp
-                                    if (className == "com.tencent.kinda.framework.module.impl.WXPCommReqResp") {
-                                        val originalRespBytes = XposedHelpers.callMethod(
-                                            respV0,
-                                            "getWXPRespData"
-                                        ) as? ByteArray
-                                        if (originalRespBytes != null) {
-                                            WePacketManager.handleResponseTamper(
-                                                uri,
-                                                cgiId,
-                                                originalRespBytes
-                                            )?.let { tampered ->
-                                                XposedHelpers.callMethod(
-                                                    respV0,
-                                                    "setWXPRespData",
-                                                    tampered
-                                                )
-                                                WeLogger.i(
-                                                    "PkgDispatcher",
-                                                    "Response Tampered (WXP): $uri"
-                                                )
-                                            }
-                                        }
-                                    }
-                                    // 处理标准混淆的 ICommReqResp 实现
-                                    else {
-                                        val respWrapper = try {
-                                            XposedHelpers.getObjectField(respV0, "b")
-                                        } catch (_: NoSuchFieldError) {
-                                            XposedHelpers.callMethod(respV0, "getRespObj")
-                                        }
-
-                                        if (respWrapper != null) {
-                                            val respPbObj = try {
-                                                respWrapper.asResolver().firstField { name = "a" }
-                                                    .get()
-                                            } catch (_: NoSuchFieldException) {
-                                                null
-                                            }
-
-                                            if (respPbObj != null) {
-                                                try {
-                                                    val originalRespBytes = respPbObj.asResolver()
-                                                        .firstMethod { name = "toByteArray" }
-                                                        .invoke() as ByteArray
-                                                    WePacketManager.handleResponseTamper(
-                                                        uri,
-                                                        cgiId,
-                                                        originalRespBytes
-                                                    )?.let { tampered ->
-                                                        XposedHelpers.callMethod(
-                                                            respPbObj,
-                                                            "parseFrom",
-                                                            tampered
-                                                        )
-                                                        WeLogger.i(
-                                                            "PkgDispatcher",
-                                                            "Response Tampered (PB): $uri"
-                                                        )
-                                                    }
-                                                } catch (_: NoSuchElementException) {
-                                                } catch (_: NoSuchMethodException) {
-                                                }
-                                            }
-                                        }
-                                    }
+                                    handleResponse(args!![4] ?: v0Var, uri, cgiId)
                                 } catch (t: Throwable) {
                                     WeLogger.e("PkgDispatcher", "Tamper inner logic fail", t)
                                 }
@@ -176,6 +87,64 @@ object WePacketDispatcher : ApiHookItem(), IResolvesDex {
         }
     }
 
+    /**
+     * @return 请求在去重窗口内重复时返回 false，此时不再安装响应回调代理
+     */
+    private fun handleRequest(
+        v0Var: Any,
+        plan: PacketAccessPlans.ReqRespPlan,
+        uri: String,
+        cgiId: Int
+    ): Boolean {
+        val reqWrapper = plan.getReqObj?.invoke(v0Var) ?: return true
+        val reqPbObj = PacketAccessPlans.wrapper(reqWrapper).getProto?.invoke(reqWrapper) ?: return true // m.a
+        val protoPlan = PacketAccessPlans.proto(reqPbObj)
+        val reqBytes = protoPlan.toByteArray?.invoke(reqPbObj) as? ByteArray ?: return true
+        WePacketCapture.record(WePacketCapture.DIRECTION_REQUEST, uri, cgiId, reqBytes)
+
+        // 按 (cgiId, uri, 包装类, 请求字节) 的哈希去重，窗口内重复的请求不再交给拦截器
+        var key = DedupeFilter.hash(cgiId.toLong(), uri)
+        key = DedupeFilter.hash(key, reqWrapper.javaClass.name)
+        key = DedupeFilter.hash(key, reqPbObj.javaClass.name)
+        key = DedupeFilter.hash(key, reqBytes)
+        if (recentRequests.isDuplicate(key, SystemClock.uptimeMillis())) {
+            WeLogger.i("PkgDispatcher", "Request skipped (duplicate): $uri")
+            return false
+        }
+
+        WePacketManager.handleRequestTamper(uri, cgiId, reqBytes)?.let { tampered ->
+            protoPlan.parseFrom?.invoke(reqPbObj, tampered)
+            WeLogger.i("PkgDispatcher", "Request Tampered: $uri")
+        }
+        return true
+    }
+
+    private fun handleResponse(respV0: Any, uri: String, cgiId: Int) {
+        val plan = PacketAccessPlans.reqResp(respV0)
+
+        // 处理 Kinda 框架的 WXPCommReqResp
+        if (plan.isWxp) {
+            val originalRespBytes = plan.getWxpRespData?.invoke(respV0) as? ByteArray ?: return
+            WePacketCapture.record(WePacketCapture.DIRECTION_RESPONSE, uri, cgiId, originalRespBytes)
+            WePacketManager.handleResponseTamper(uri, cgiId, originalRespBytes)?.let { tampered ->
+                plan.setWxpRespData?.invoke(respV0, tampered)
+                WeLogger.i("PkgDispatcher", "Response Tampered (WXP): $uri")
+            }
+            return
+        }
+
+        // 处理标准混淆的 ICommReqResp 实现
+        val respWrapper = plan.getRespWrapper?.invoke(respV0) ?: return
+        val respPbObj = PacketAccessPlans.wrapper(respWrapper).getProto?.invoke(respWrapper) ?: return
+        val protoPlan = PacketAccessPlans.proto(respPbObj)
+        val originalRespBytes = protoPlan.toByteArray?.invoke(respPbObj) as? ByteArray ?: return
+        WePacketCapture.record(WePacketCapture.DIRECTION_RESPONSE, uri, cgiId, originalRespBytes)
+        WePacketManager.handleResponseTamper(uri, cgiId, originalRespBytes)?.let { tampered ->
+            protoPlan.parseFrom?.invoke(respPbObj, tampered)
+            WeLogger.i("PkgDispatcher", "Response Tampered (PB): $uri")
+        }
+    }
+
     override fun resolveDex(dexKit: DexKitBridge): Map<String, String> {
         val descriptors = mutableMapOf<String, String>()
 
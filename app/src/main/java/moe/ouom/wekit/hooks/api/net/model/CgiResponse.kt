@@ -0,0 +1,12 @@
+package moe.ouom.wekit.hooks.api.net.model
+
+class CgiResponse(
+    val json: String,
+    val bytes: ByteArray?
+)
+
+class CgiException(
+    val errType: Int,
+    val errCode: Int,
+    val errMsg: String
+) : Exception("errType=$errType, errCode=$errCode, errMsg=$errMsg")
@@ -6,6 +6,7 @@ import android.view.View
 import com.highcapable.kavaref.KavaRef.Companion.asResolver
 import moe.ouom.wekit.core.dsl.dexClass
 import moe.ouom.wekit.core.dsl.dexMethod
+import moe.ouom.wekit.core.dsl.eqStrings
 import moe.ouom.wekit.core.model.ApiHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
@@ -41,9 +42,27 @@ object WeChatMessageContextMenuApi : ApiHookItem(), IResolvesDex {
         menuItems.remove(provider.javaClass.name)
     }
 
-    private val methodCreateMenu by dexMethod()
-    private val methodSelectMenuItem by dexMethod()
-    private val classChattingMessBox by dexClass()
+    private val methodCreateMenu by dexMethod(
+        eqStrings(
+            "MicroMsg.ChattingItem",
+            "msg is null!",
+            searchPackages = listOf("com.tencent.mm.ui.chatting.viewitems")
+        )
+    )
+    private val methodSelectMenuItem by dexMethod(
+        eqStrings(
+            "MicroMsg.ChattingItem",
+            "context item select failed, null dataTag",
+            searchPackages = listOf("com.tencent.mm.ui.chatting.viewitems")
+        )
+    )
+    private val classChattingMessBox by dexClass(
+        eqStrings(
+            "MicroMsg.ChattingUI.FootComponent",
+            "onNotifyChange event %s talker %s",
+            searchPackages = listOf("com.tencent.mm.ui.chatting.component")
+        )
+    )
     private var currentView: View? =
         null // selectMenu is guaranteed to be called after createMenu, so this will not cause NPE
 
@@ -65,8 +84,9 @@ object WeChatMessageContextMenuApi : ApiHookItem(), IResolvesDex {
                         .invoke()!!
 
                     try {
+                        val snapshot = MessageInfo(msgInfo)
                         for (item in menuItems.values.flatten()) {
-                            if (item.shouldShow(MessageInfo(msgInfo))) {
+                            if (item.shouldShow(snapshot)) {
                                 menu.asResolver()
                                     .firstMethod {
                                         parameters(Int::class, CharSequence::class, Drawable::class)
@@ -171,29 +191,11 @@ object WeChatMessageContextMenuApi : ApiHookItem(), IResolvesDex {
     override fun resolveDex(dexKit: DexKitBridge): Map<String, String> {
         val descriptors = mutableMapOf<String, String>()
 
-        methodCreateMenu.find(dexKit, descriptors) {
-            searchPackages("com.tencent.mm.ui.chatting.viewitems")
-            matcher {
-                usingEqStrings("MicroMsg.ChattingItem", "msg is null!")
-            }
-        }
+        methodCreateMenu.resolve(dexKit, descriptors)
 
-        methodSelectMenuItem.find(dexKit, descriptors) {
-            searchPackages("com.tencent.mm.ui.chatting.viewitems")
-            matcher {
-                usingEqStrings("MicroMsg.ChattingItem", "context item select failed, null dataTag")
-            }
-        }
+        methodSelectMenuItem.resolve(dexKit, descriptors)
 
-        classChattingMessBox.find(dexKit, descriptors) {
-            searchPackages("com.tencent.mm.ui.chatting.component")
-            matcher {
-                usingEqStrings(
-                    "MicroMsg.ChattingUI.FootComponent",
-                    "onNotifyChange event %s talker %s"
-                )
-            }
-        }
+        classChattingMessBox.resolve(dexKit, descriptors)
 
         return descriptors
     }
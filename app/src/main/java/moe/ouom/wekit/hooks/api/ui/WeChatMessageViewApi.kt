@@ -1,10 +1,12 @@
 package moe.ouom.wekit.hooks.api.ui
 
 import android.view.View
-import com.highcapable.kavaref.KavaRef.Companion.asResolver
 import de.robv.android.xposed.XC_MethodHook
 import dev.ujhhgtg.nameof.nameof
 import moe.ouom.wekit.core.dsl.dexMethod
+import moe.ouom.wekit.core.dsl.eqStrings
+import moe.ouom.wekit.core.dsl.fieldAccessor
+import moe.ouom.wekit.core.dsl.methodAccessor
 import moe.ouom.wekit.core.model.ApiHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
@@ -45,37 +47,50 @@ object WeChatMessageViewApi : ApiHookItem(), IResolvesDex {
 
     private val TAG = nameof(WeChatMessageViewApi)
 
-    private val methodChatItemOnBindView by dexMethod()
+    private val methodChatItemOnBindView by dexMethod(
+        eqStrings(
+            "MicroMsg.MvvmChattingItem",
+            "dealItemView",
+            "[onBindView] finish position:"
+        )
+    )
+
+    // 每绑定一行都会走到，成员只解析一次
+    private val holderView = fieldAccessor {
+        type = View::class.java
+        superclass()
+    }
+    private val itemChattingContext = fieldAccessor { type = WeMessageApi.classChattingContext.clazz }
+    private val itemChattingDataAdapter = fieldAccessor { type = WeMessageApi.classChattingDataAdapter.clazz }
+    private val adapterGetItem = methodAccessor { name = "getItem" }
 
     override fun onEnable() {
         methodChatItemOnBindView.toDexMethod {
             hook {
                 afterIfEnabled { param ->
-                    val holder = param.args[0]
-                    val view = holder.asResolver()
-                        .firstField {
-                            type = View::class
-                            superclass()
-                        }
-                        .get()!! as View
-                    val msgId = param.args[2] as Int
-                    val chattingContext = param.thisObject.asResolver()
-                        .firstField { type = WeMessageApi.classChattingContext.clazz }
-                        .get()!!
-                    val chattingDataAdapter = param.thisObject.asResolver()
-                        .firstField { type = WeMessageApi.classChattingDataAdapter.clazz }
-                        .get()!!
-                    val msgInfo = chattingDataAdapter.asResolver()
-                        .firstMethod { name = "getItem" }
-                        .invoke(msgId)!!
-
+                    if (listeners.isEmpty()) return@afterIfEnabled
+                    val view: View
+                    val chattingContext: Any
+                    val snapshot: MessageInfo
+                    try {
+                        view = holderView.get(param.args[0]) as View
+                        val msgId = param.args[2] as Int
+                        chattingContext = itemChattingContext.get(param.thisObject)!!
+                        val chattingDataAdapter = itemChattingDataAdapter.get(param.thisObject)!!
+                        val msgInfo = adapterGetItem.invoke(chattingDataAdapter, msgId)!!
+                        // 所有监听器共享同一个快照
+                        snapshot = MessageInfo(msgInfo)
+                    } catch (ex: Exception) {
+                        WeLogger.e(TAG, "failed to build message snapshot", ex)
+                        return@afterIfEnabled
+                    }
                     for (listener in listeners) {
                         try {
                             listener.onCreateView(
                                 param,
                                 view,
                                 chattingContext,
-                                MessageInfo(msgInfo)
+                                snapshot
                             )
                         } catch (ex: Exception) {
                             WeLogger.e(TAG, "listener ${listener.javaClass.name} threw", ex)
@@ -89,15 +104,7 @@ object WeChatMessageViewApi : ApiHookItem(), IResolvesDex {
     override fun resolveDex(dexKit: DexKitBridge): Map<String, String> {
         val descriptors = mutableMapOf<String, String>()
 
-        methodChatItemOnBindView.find(dexKit, descriptors) {
-            matcher {
-                usingEqStrings(
-                    "MicroMsg.MvvmChattingItem",
-                    "dealItemView",
-                    "[onBindView] finish position:"
-                )
-            }
-        }
+        methodChatItemOnBindView.resolve(dexKit, descriptors)
 
         return descriptors
     }
@@ -9,6 +9,7 @@ import de.robv.android.xposed.XC_MethodHook
 import dev.ujhhgtg.nameof.nameof
 import moe.ouom.wekit.core.dsl.dexClass
 import moe.ouom.wekit.core.dsl.dexMethod
+import moe.ouom.wekit.core.dsl.eqStrings
 import moe.ouom.wekit.core.model.ApiHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
@@ -50,8 +51,20 @@ object WeHomeScreenPopupMenuApi : ApiHookItem(), IResolvesDex {
 
     private val TAG = nameof(WeHomeScreenPopupMenuApi)
 
-    private val methodAddItem by dexMethod()
-    private val methodHandleItemClick by dexMethod()
+    private val methodAddItem by dexMethod(
+        eqStrings(
+            "MicroMsg.PlusSubMenuHelper",
+            "dyna plus config is null, we use default one",
+            searchPackages = listOf("com.tencent.mm.ui")
+        )
+    )
+    private val methodHandleItemClick by dexMethod(
+        eqStrings(
+            "MicroMsg.PlusSubMenuHelper",
+            "processOnItemClick",
+            searchPackages = listOf("com.tencent.mm.ui")
+        )
+    )
     private val classMenuItemData by dexClass()
     private val classMenuItemWrapper by dexClass()
 
@@ -145,22 +158,9 @@ object WeHomeScreenPopupMenuApi : ApiHookItem(), IResolvesDex {
     override fun resolveDex(dexKit: DexKitBridge): Map<String, String> {
         val descriptors = mutableMapOf<String, String>()
 
-        methodAddItem.find(dexKit, descriptors) {
-            searchPackages("com.tencent.mm.ui")
-            matcher {
-                usingEqStrings(
-                    "MicroMsg.PlusSubMenuHelper",
-                    "dyna plus config is null, we use default one"
-                )
-            }
-        }
+        methodAddItem.resolve(dexKit, descriptors)
 
-        methodHandleItemClick.find(dexKit, descriptors) {
-            searchPackages("com.tencent.mm.ui")
-            matcher {
-                usingEqStrings("MicroMsg.PlusSubMenuHelper", "processOnItemClick")
-            }
-        }
+        methodHandleItemClick.resolve(dexKit, descriptors)
 
         classMenuItemData.find(dexKit, descriptors) {
             searchPackages("com.tencent.mm.ui")
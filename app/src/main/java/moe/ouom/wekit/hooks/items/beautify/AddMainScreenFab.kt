@@ -57,6 +57,7 @@ import androidx.compose.ui.unit.sp
 import com.highcapable.kavaref.KavaRef.Companion.asResolver
 import dev.ujhhgtg.nameof.nameof
 import moe.ouom.wekit.constants.PackageNames
+import moe.ouom.wekit.core.model.ActivationTrigger
 import moe.ouom.wekit.core.model.SwitchHookItem
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
 import moe.ouom.wekit.hooks.api.core.WeConversationApi
@@ -107,6 +108,10 @@ object AddMainScreenFab : SwitchHookItem() {
         context.startActivity(intent)
     }
 
+    // MainTabUI.doOnCreate 由 LauncherUI.onCreate 调用，在其创建前安装即可
+    override fun activationTrigger() =
+        ActivationTrigger.OnActivityCreated("com.tencent.mm.ui.LauncherUI")
+
     override fun onEnable() {
         WeMainActivityBeautifyApi.methodDoOnCreate.toDexMethod {
             hook {
@@ -18,6 +18,7 @@ import com.highcapable.kavaref.KavaRef.Companion.asResolver
 import dev.ujhhgtg.nameof.nameof
 import moe.ouom.wekit.preferences.WePrefs
 import moe.ouom.wekit.core.dsl.dexClass
+import moe.ouom.wekit.core.dsl.eqStrings
 import moe.ouom.wekit.core.model.ClickableHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
@@ -36,8 +37,20 @@ object ApplyDialogBackgroundBlur : ClickableHookItem(), IResolvesDex {
     const val KEY_BLUR_RADIUS = "blur_radius"
     const val DEFAULT_BLUR_RADIUS = 20
 
-    private val classMmAlertDialog by dexClass()
-    private val classMmProgressDialog by dexClass()
+    private val classMmAlertDialog by dexClass(
+        eqStrings(
+            "MicroMsg.MMAlertDialog",
+            "dialog dismiss error!",
+            searchPackages = listOf("com.tencent.mm.ui.widget.dialog")
+        )
+    )
+    private val classMmProgressDialog by dexClass(
+        eqStrings(
+            $$"com/tencent/mm/ui/widget/dialog/MMProgressDialog$Builder",
+            "show",
+            searchPackages = listOf("com.tencent.mm.ui.widget.dialog")
+        )
+    )
     private val classMmQuickDialog by dexClass()
 
     override fun onEnable() {
@@ -73,19 +86,9 @@ object ApplyDialogBackgroundBlur : ClickableHookItem(), IResolvesDex {
     override fun resolveDex(dexKit: DexKitBridge): Map<String, String> {
         val descriptors = mutableMapOf<String, String>()
 
-        classMmAlertDialog.find(dexKit, descriptors) {
-            searchPackages("com.tencent.mm.ui.widget.dialog")
-            matcher {
-                usingEqStrings("MicroMsg.MMAlertDialog", "dialog dismiss error!")
-            }
-        }
+        classMmAlertDialog.resolve(dexKit, descriptors)
 
-        classMmProgressDialog.find(dexKit, descriptors) {
-            searchPackages("com.tencent.mm.ui.widget.dialog")
-            matcher {
-                usingEqStrings($$"com/tencent/mm/ui/widget/dialog/MMProgressDialog$Builder", "show")
-            }
-        }
+        classMmProgressDialog.resolve(dexKit, descriptors)
 
         classMmQuickDialog.find(dexKit, descriptors) {
             searchPackages("com.tencent.mm.ui.widget.dialog")
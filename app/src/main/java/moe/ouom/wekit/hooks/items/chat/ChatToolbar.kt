@@ -49,6 +49,7 @@ import com.highcapable.kavaref.extension.toClass
 import dev.ujhhgtg.nameof.nameof
 import kotlinx.coroutines.flow.MutableStateFlow
 import moe.ouom.wekit.core.dsl.dexMethod
+import moe.ouom.wekit.core.dsl.eqStrings
 import moe.ouom.wekit.core.model.SwitchHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
@@ -70,7 +71,13 @@ object ChatToolbar : SwitchHookItem(), IResolvesDex {
     private const val VIEW_TAG = "wekit_chat_toolbar"
 
     private val methodAppPanelInitAppGrid by dexMethod()
-    private val methodAppPanelOnMeasure by dexMethod()
+    private val methodAppPanelOnMeasure by dexMethod(
+        eqStrings(
+            "MicroMsg.AppPanel",
+            "onMeasure width: %d, heigth:%d, isMeasured:%b, gridWidth:%d, gridHeight:%d",
+            searchPackages = listOf("com.tencent.mm.pluginsdk.ui.chat")
+        )
+    )
 
     private var lastToolListUpdateTime = now()
 
@@ -247,15 +254,7 @@ object ChatToolbar : SwitchHookItem(), IResolvesDex {
             }
         }
 
-        methodAppPanelOnMeasure.find(dexKit, descriptors) {
-            searchPackages("com.tencent.mm.pluginsdk.ui.chat")
-            matcher {
-                usingEqStrings(
-                    "MicroMsg.AppPanel",
-                    "onMeasure width: %d, heigth:%d, isMeasured:%b, gridWidth:%d, gridHeight:%d"
-                )
-            }
-        }
+        methodAppPanelOnMeasure.resolve(dexKit, descriptors)
 
         return descriptors
     }
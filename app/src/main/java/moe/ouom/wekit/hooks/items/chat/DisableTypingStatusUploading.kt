@@ -3,6 +3,7 @@ package moe.ouom.wekit.hooks.items.chat
 import com.highcapable.kavaref.KavaRef.Companion.asResolver
 import dev.ujhhgtg.nameof.nameof
 import moe.ouom.wekit.core.dsl.dexClass
+import moe.ouom.wekit.core.dsl.eqStrings
 import moe.ouom.wekit.core.model.SwitchHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
@@ -13,7 +14,13 @@ import org.luckypray.dexkit.DexKitBridge
 object DisableTypingStatusUploading : SwitchHookItem(), IResolvesDex {
 
     private val TAG = nameof(DisableTypingStatusUploading)
-    private val classMmTypingSendReq by dexClass()
+    private val classMmTypingSendReq by dexClass(
+        eqStrings(
+            "null cannot be cast to non-null type com.tencent.mm.protocal.MMTypingSend.Req",
+            "autoAuth",
+            searchPackages = listOf("com.tencent.mm.modelsimple")
+        )
+    )
 
     override fun onEnable() {
         classMmTypingSendReq.clazz.asResolver().firstMethod { name = "doScene" }
@@ -26,15 +33,7 @@ object DisableTypingStatusUploading : SwitchHookItem(), IResolvesDex {
     override fun resolveDex(dexKit: DexKitBridge): Map<String, String> {
         val descriptors = mutableMapOf<String, String>()
 
-        classMmTypingSendReq.find(dexKit, descriptors) {
-            searchPackages("com.tencent.mm.modelsimple")
-            matcher {
-                usingEqStrings(
-                    "null cannot be cast to non-null type com.tencent.mm.protocal.MMTypingSend.Req",
-                    "autoAuth"
-                )
-            }
-        }
+        classMmTypingSendReq.resolve(dexKit, descriptors)
 
         return descriptors
     }
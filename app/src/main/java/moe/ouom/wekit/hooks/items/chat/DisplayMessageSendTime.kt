@@ -7,8 +7,8 @@ import android.view.View
 import android.view.ViewGroup
 import android.widget.RelativeLayout
 import android.widget.TextView
-import com.highcapable.kavaref.KavaRef.Companion.asResolver
 import de.robv.android.xposed.XC_MethodHook
+import moe.ouom.wekit.core.dsl.fieldAccessor
 import moe.ouom.wekit.core.model.SwitchHookItem
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
 import moe.ouom.wekit.hooks.api.core.model.MessageInfo
@@ -30,6 +30,11 @@ object DisplayMessageSendTime : SwitchHookItem(),
 
     private const val VIEW_TAG = "wekit_message_send_time"
 
+    private val tagAvatar = fieldAccessor {
+        name = "avatarIV"
+        superclass()
+    }
+
     @SuppressLint("SetTextI18n")
     override fun onCreateView(
         param: XC_MethodHook.MethodHookParam,
@@ -41,12 +46,7 @@ object DisplayMessageSendTime : SwitchHookItem(),
         val text = formatEpoch(msgInfo.createTime)
 
         // FIXME: method 1, bigger font size leads to clipping
-        val avatar = tag.asResolver()
-            .firstField {
-                name = "avatarIV"
-                superclass()
-            }
-            .get() as? View? ?: return
+        val avatar = tagAvatar.getOrNull(tag) as? View? ?: return
         val parent = avatar.parent as ViewGroup
         if (parent.findViewWithTag<TextView>(VIEW_TAG) != null) return
 
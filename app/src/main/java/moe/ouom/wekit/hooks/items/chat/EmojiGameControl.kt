@@ -32,6 +32,7 @@ import de.robv.android.xposed.XposedHelpers
 import dev.ujhhgtg.nameof.nameof
 import moe.ouom.wekit.utils.RuntimeConfig
 import moe.ouom.wekit.core.dsl.dexMethod
+import moe.ouom.wekit.core.dsl.eqStrings
 import moe.ouom.wekit.core.model.SwitchHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
@@ -53,7 +54,7 @@ object EmojiGameControl : SwitchHookItem(), IResolvesDex {
     private val TAG = nameof(EmojiGameControl)
 
     private val methodRandom by dexMethod()
-    private val methodPanelClick by dexMethod()
+    private val methodPanelClick by dexMethod(eqStrings("MicroMsg.EmojiPanelClickListener"))
 
     private var valMorra = 0
     private var valDice = 0
@@ -83,11 +84,7 @@ object EmojiGameControl : SwitchHookItem(), IResolvesDex {
             }
         }
 
-        methodPanelClick.find(dexKit, descriptors) {
-            matcher {
-                usingEqStrings("MicroMsg.EmojiPanelClickListener")
-            }
-        }
+        methodPanelClick.resolve(dexKit, descriptors)
 
         return descriptors
     }
@@ -44,6 +44,8 @@ import io.noties.markwon.ext.tasklist.TaskListPlugin
 import io.noties.markwon.image.ImagesPlugin
 import moe.ouom.wekit.preferences.WePrefs
 import moe.ouom.wekit.core.dsl.dexClass
+import moe.ouom.wekit.core.dsl.eqStrings
+import moe.ouom.wekit.core.dsl.fieldAccessor
 import moe.ouom.wekit.core.model.ClickableHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
@@ -74,6 +76,18 @@ object MarkdownRendering : ClickableHookItem(), IResolvesDex {
 
     private external fun convertMarkdownToHtmlNative(markdown: String): String?
 
+    // onDraw 是热路径，成员只解析一次
+    private val neatText = fieldAccessor {
+        type = CharSequence::class.java
+        superclass()
+    }
+    private val tagMsgInfoWrapper = fieldAccessor {
+        type = classMsgInfoWrapper.clazz
+        superclass()
+    }
+    private val wrapperFirstField = fieldAccessor { superclass() }
+    private val wrapperMsgInfo = fieldAccessor { type = WeMessageApi.classMsgInfo.clazz }
+
     // Apply a small compensation to the max width to prevent unnecessary text wrapping
     private const val MAX_WIDTH_BUFFER = 40
 
@@ -86,27 +100,12 @@ object MarkdownRendering : ClickableHookItem(), IResolvesDex {
                     markwon = buildMarkwon(neatTextView.context)
                 }
 
-                var origText = (neatTextView.asResolver()
-                    .firstField {
-                        type = CharSequence::class
-                        superclass()
-                    }.get()!! as CharSequence).toString()
+                var origText = (neatText.get(neatTextView) as CharSequence).toString()
                 if (origText.isBlank()) return@hookBefore
                 origText = origText.replaceEmojis()
 
-                val msgInfo = MessageInfo(
-                    neatTextView.tag.asResolver()
-                        .firstField {
-                            type = classMsgInfoWrapper.clazz
-                            superclass()
-                        }
-                        .get()!!.asResolver()
-                        .firstField {
-                            superclass()
-                        }
-                        .get()!!.asResolver()
-                        .firstField { type = WeMessageApi.classMsgInfo.clazz }
-                        .get()!!)
+                val wrapper = tagMsgInfoWrapper.get(neatTextView.tag)!!
+                val msgInfo = MessageInfo(wrapperMsgInfo.get(wrapperFirstField.get(wrapper)!!)!!)
                 if (!msgInfo.isText) return@hookBefore
                 val isSelfSender = msgInfo.isSelfSender()
 
@@ -361,16 +360,19 @@ object MarkdownRendering : ClickableHookItem(), IResolvesDex {
         }
     }
 
-    private val classMsgInfoWrapper by dexClass()
+    private val classMsgInfoWrapper by dexClass(
+        eqStrings(
+            "params",
+            "other",
+            "null cannot be cast to non-null type com.tencent.mm.storage.MsgInfo",
+            "msgInfo"
+        )
+    )
 
     override fun resolveDex(dexKit: DexKitBridge): Map<String, String> {
         val descriptors = mutableMapOf<String, String>()
 
-        classMsgInfoWrapper.find(dexKit, descriptors) {
-            matcher {
-                usingEqStrings("params", "other", "null cannot be cast to non-null type com.tencent.mm.storage.MsgInfo", "msgInfo")
-            }
-        }
+        classMsgInfoWrapper.resolve(dexKit, descriptors)
 
         return descriptors
     }
@@ -3,6 +3,7 @@ package moe.ouom.wekit.hooks.items.chat
 import com.highcapable.kavaref.KavaRef.Companion.asResolver
 import moe.ouom.wekit.core.dsl.dexClass
 import moe.ouom.wekit.core.dsl.dexMethod
+import moe.ouom.wekit.core.dsl.eqStrings
 import moe.ouom.wekit.core.model.SwitchHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
@@ -11,12 +12,28 @@ import org.luckypray.dexkit.DexKitBridge
 @HookItem(path = "聊天/引用消息直达", desc = "点击被引用消息时直接跳转至对应消息")
 object QuotedMessageDirectJump : SwitchHookItem(), IResolvesDex {
 
-    private val methodClickEvent by dexMethod()
+    private val methodClickEvent by dexMethod(
+        eqStrings(
+            "MicroMsg.msgquote.QuoteMsgSourceClickLogic",
+            "handleItemClickEvent,quotedMsg is null!",
+            searchPackages = listOf("com.tencent.mm.ui.chatting.viewitems")
+        )
+    )
     private val methodClickToPositionEvent by dexMethod()
     private val methodGetQuoteMessageInfo by dexMethod()
     private val methodChattingContextGetTalker by dexMethod()
-    private val classEnumQuoteJumpToPositionSource by dexClass()
-    private val classChattingContext by dexClass()
+    private val classEnumQuoteJumpToPositionSource by dexClass(
+        eqStrings(
+            "QuoteLongClickFromQuoteView",
+            "QuoteClickFromTextPreviewLocateView"
+        )
+    )
+    private val classChattingContext by dexClass(
+        eqStrings(
+            "MicroMsg.ChattingContext",
+            "[notifyDataSetChange]"
+        )
+    )
 
     override fun onEnable() {
         methodClickEvent.toDexMethod {
@@ -60,15 +77,7 @@ object QuotedMessageDirectJump : SwitchHookItem(), IResolvesDex {
     override fun resolveDex(dexKit: DexKitBridge): Map<String, String> {
         val descriptors = mutableMapOf<String, String>()
 
-        methodClickEvent.find(dexKit, descriptors) {
-            searchPackages("com.tencent.mm.ui.chatting.viewitems")
-            matcher {
-                usingEqStrings(
-                    "MicroMsg.msgquote.QuoteMsgSourceClickLogic",
-                    "handleItemClickEvent,quotedMsg is null!"
-                )
-            }
-        }
+        methodClickEvent.resolve(dexKit, descriptors)
 
         methodClickToPositionEvent.find(dexKit, descriptors) {
             matcher {
@@ -90,11 +99,7 @@ object QuotedMessageDirectJump : SwitchHookItem(), IResolvesDex {
             }
         }
 
-        classChattingContext.find(dexKit, descriptors) {
-            matcher {
-                usingEqStrings("MicroMsg.ChattingContext", "[notifyDataSetChange]")
-            }
-        }
+        classChattingContext.resolve(dexKit, descriptors)
 
         methodChattingContextGetTalker.find(dexKit, descriptors) {
             matcher {
@@ -103,11 +108,7 @@ object QuotedMessageDirectJump : SwitchHookItem(), IResolvesDex {
             }
         }
 
-        classEnumQuoteJumpToPositionSource.find(dexKit, descriptors) {
-            matcher {
-                usingEqStrings("QuoteLongClickFromQuoteView", "QuoteClickFromTextPreviewLocateView")
-            }
-        }
+        classEnumQuoteJumpToPositionSource.resolve(dexKit, descriptors)
 
         return descriptors
     }
@@ -8,6 +8,7 @@ import com.highcapable.kavaref.extension.toClass
 import dev.ujhhgtg.nameof.nameof
 import moe.ouom.wekit.core.dsl.dexClass
 import moe.ouom.wekit.core.dsl.dexMethod
+import moe.ouom.wekit.core.dsl.eqStrings
 import moe.ouom.wekit.core.model.SwitchHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
@@ -36,8 +37,13 @@ object SaveVoicesToLocalStorage : SwitchHookItem(), IResolvesDex,
 
     private val TAG = nameof(SaveVoicesToLocalStorage)
 
-    private val classVoiceLogic by dexClass()
-    private val methodGetAmrFullPath by dexMethod()
+    private val classVoiceLogic by dexClass(
+        eqStrings(
+            "MicroMsg.VoiceLogic",
+            "startRecord insert voicestg success"
+        )
+    )
+    private val methodGetAmrFullPath by dexMethod(eqStrings("getAmrFullPath cost: "))
 
     private lateinit var methodStreamSilkDecInit: Method
     private lateinit var methodStreamSilkDecUnInit: Method
@@ -65,17 +71,9 @@ object SaveVoicesToLocalStorage : SwitchHookItem(), IResolvesDex,
     override fun resolveDex(dexKit: DexKitBridge): Map<String, String> {
         val descriptors = mutableMapOf<String, String>()
 
-        classVoiceLogic.find(dexKit, descriptors) {
-            matcher {
-                usingEqStrings("MicroMsg.VoiceLogic", "startRecord insert voicestg success")
-            }
-        }
+        classVoiceLogic.resolve(dexKit, descriptors)
 
-        methodGetAmrFullPath.find(dexKit, descriptors) {
-            matcher {
-                usingEqStrings("getAmrFullPath cost: ")
-            }
-        }
+        methodGetAmrFullPath.resolve(dexKit, descriptors)
 
         return descriptors
     }
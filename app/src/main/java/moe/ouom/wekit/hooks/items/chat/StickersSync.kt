@@ -30,6 +30,7 @@ import kotlinx.serialization.Serializable
 import kotlinx.serialization.json.Json
 import moe.ouom.wekit.core.dsl.dexClass
 import moe.ouom.wekit.core.dsl.dexMethod
+import moe.ouom.wekit.core.model.ActivationTrigger
 import moe.ouom.wekit.core.model.ClickableHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
@@ -287,6 +288,9 @@ object StickersSync : ClickableHookItem(), IResolvesDex {
         return emojiThumb
     }
 
+    // 贴纸面板在启动后才会查询贴纸包，无需占用启动时间
+    override fun activationTrigger() = ActivationTrigger.OnMainIdle
+
     override fun onEnable() {
         val emojiGroupInfoCls = "com.tencent.mm.storage.emotion.EmojiGroupInfo".toClass()
 
@@ -13,6 +13,7 @@ import com.highcapable.kavaref.KavaRef.Companion.asResolver
 import de.robv.android.xposed.XC_MethodHook
 import dev.ujhhgtg.nameof.nameof
 import moe.ouom.wekit.core.dsl.dexClass
+import moe.ouom.wekit.core.dsl.eqStrings
 import moe.ouom.wekit.core.model.SwitchHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
@@ -212,20 +213,18 @@ object SwipeToQuote : SwitchHookItem(), IResolvesDex,
     private fun dpToPx(context: Context, dp: Int) =
         (dp * context.resources.displayMetrics.density).toInt()
 
-    private val classChattingUiFootComponent by dexClass()
+    private val classChattingUiFootComponent by dexClass(
+        eqStrings(
+            "MicroMsg.ChattingUI.FootComponent",
+            "onNotifyChange event %s talker %s",
+            searchPackages = listOf("com.tencent.mm.ui.chatting.component")
+        )
+    )
 
     override fun resolveDex(dexKit: DexKitBridge): Map<String, String> {
         val descriptors = mutableMapOf<String, String>()
 
-        classChattingUiFootComponent.find(dexKit, descriptors) {
-            searchPackages("com.tencent.mm.ui.chatting.component")
-            matcher {
-                usingEqStrings(
-                    "MicroMsg.ChattingUI.FootComponent",
-                    "onNotifyChange event %s talker %s"
-                )
-            }
-        }
+        classChattingUiFootComponent.resolve(dexKit, descriptors)
 
         return descriptors
     }
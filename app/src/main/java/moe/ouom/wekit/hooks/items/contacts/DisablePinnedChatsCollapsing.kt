@@ -1,6 +1,7 @@
 package moe.ouom.wekit.hooks.items.contacts
 
 import moe.ouom.wekit.core.dsl.dexMethod
+import moe.ouom.wekit.core.dsl.eqStrings
 import moe.ouom.wekit.core.model.SwitchHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
@@ -13,7 +14,13 @@ import org.luckypray.dexkit.DexKitBridge
 )
 object DisablePinnedChatsCollapsing : SwitchHookItem(), IResolvesDex {
 
-    private val methodAddCollapseChatItem by dexMethod()
+    private val methodAddCollapseChatItem by dexMethod(
+        eqStrings(
+            "MicroMsg.FolderHelper",
+            "fold item exist",
+            searchPackages = listOf("com.tencent.mm.ui.conversation")
+        )
+    )
     private val methodIfShouldAddCollapseChatItem by dexMethod()
 
     override fun onEnable() {
@@ -38,12 +45,7 @@ object DisablePinnedChatsCollapsing : SwitchHookItem(), IResolvesDex {
     override fun resolveDex(dexKit: DexKitBridge): Map<String, String> {
         val descriptors = mutableMapOf<String, String>()
 
-        methodAddCollapseChatItem.find(dexKit, descriptors) {
-            searchPackages("com.tencent.mm.ui.conversation")
-            matcher {
-                usingEqStrings("MicroMsg.FolderHelper", "fold item exist")
-            }
-        }
+        methodAddCollapseChatItem.resolve(dexKit, descriptors)
 
         methodIfShouldAddCollapseChatItem.find(dexKit, descriptors) {
             searchPackages("com.tencent.mm.ui.conversation")
@@ -8,9 +8,10 @@ import android.text.Spanned
 import android.text.style.ReplacementSpan
 import android.view.View
 import android.widget.TextView
-import com.highcapable.kavaref.KavaRef.Companion.asResolver
 import de.robv.android.xposed.XC_MethodHook
 import moe.ouom.wekit.core.dsl.dexMethod
+import moe.ouom.wekit.core.dsl.eqStrings
+import moe.ouom.wekit.core.dsl.fieldAccessor
 import moe.ouom.wekit.core.model.SwitchHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
@@ -28,7 +29,12 @@ import kotlin.math.roundToInt
 object DisplayGroupMemberRoles : SwitchHookItem(), IResolvesDex,
     WeChatMessageViewApi.ICreateViewListener {
 
-    private val methodGetChatroomData by dexMethod()
+    private val methodGetChatroomData by dexMethod(
+        eqStrings(
+            "MicroMsg.ChatRoomMember",
+            "getChatroomData hashMap is null!"
+        )
+    )
 
     // Pair<groupId: String, sender: String>, type: Int (1=owner, 2=admin, 3=member)
     private val resolvedRoles = LruCache<Pair<String, String>, Int>()
@@ -41,6 +47,16 @@ object DisplayGroupMemberRoles : SwitchHookItem(), IResolvesDex,
         WeChatMessageViewApi.removeListener(this)
     }
 
+    private val groupRoomOwner = fieldAccessor {
+        name = "field_roomowner"
+        superclass()
+    }
+    private val memberRoleFlagsField = fieldAccessor { type = Int::class.javaPrimitiveType }
+    private val tagUserTV = fieldAccessor {
+        name = "userTV"
+        superclass()
+    }
+
     private const val OWNER_COLOR = 0xFFFFC107
     private const val ADMIN_COLOR = 0xFF2196F3
     private const val MEMBER_COLOR = 0xFF9E9E9E
@@ -57,34 +73,20 @@ object DisplayGroupMemberRoles : SwitchHookItem(), IResolvesDex,
 
         val role = resolvedRoles.getOrPut(groupId to sender) {
             val group = WeConversationApi.getGroup(groupId)
-            val senderIsGroupOwner = group.asResolver()
-                .firstField {
-                    name = "field_roomowner"
-                    superclass()
-                }
-                .get()!! as String == sender
+            val senderIsGroupOwner = groupRoomOwner.get(group) as String == sender
 
             if (senderIsGroupOwner) return@getOrPut 1
 
             val memberData = methodGetChatroomData.method.invoke(group, sender) ?: return
-            val memberRoleFlags = memberData.asResolver()
-                .firstField {
-                    type = Int::class
-                }
-                .get()!! as Int
+            val memberRoleFlags = memberRoleFlagsField.getInt(memberData)
             val senderIsGroupManager = (memberRoleFlags and 2048) != 0
 
             return@getOrPut if (senderIsGroupManager) 2 else 3
         }
 
         val tag = view.tag
-        val textView = tag.asResolver()
-            .firstField {
-                name = "userTV"
-                superclass()
-            }
-            // might be null and throw NPE, although it doesn't affect functionality, I don't want it to litter the error logs
-            .get() as? TextView? ?: return
+        // might be null, although it doesn't affect functionality, I don't want it to litter the error logs
+        val textView = tagUserTV.getOrNull(tag) as? TextView? ?: return
         val displayName = textView.text
 
         val roleText = when (role) {
@@ -123,11 +125,7 @@ object DisplayGroupMemberRoles : SwitchHookItem(), IResolvesDex,
         val descriptors = mutableMapOf<String, String>()
 
         // this is actually get group MEMBER data
-        methodGetChatroomData.find(dexKit, descriptors) {
-            matcher {
-                usingEqStrings("MicroMsg.ChatRoomMember", "getChatroomData hashMap is null!")
-            }
-        }
+        methodGetChatroomData.resolve(dexKit, descriptors)
 
         return descriptors
     }
@@ -0,0 +1,116 @@
+package moe.ouom.wekit.hooks.items.debug
+
+import android.content.Context
+import android.os.Handler
+import android.os.Looper
+import androidx.compose.foundation.layout.fillMaxWidth
+import androidx.compose.foundation.layout.heightIn
+import androidx.compose.foundation.lazy.LazyColumn
+import androidx.compose.foundation.lazy.itemsIndexed
+import androidx.compose.material3.HorizontalDivider
+import androidx.compose.material3.ListItem
+import androidx.compose.material3.ListItemDefaults
+import androidx.compose.material3.MaterialTheme
+import androidx.compose.material3.Text
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.text.font.FontFamily
+import androidx.compose.ui.text.style.TextOverflow
+import androidx.compose.ui.unit.dp
+import moe.ouom.wekit.core.model.ClickableHookItem
+import moe.ouom.wekit.hooks.utils.annotation.HookItem
+import moe.ouom.wekit.ui.content.AlertDialogContent
+import moe.ouom.wekit.ui.content.Button
+import moe.ouom.wekit.ui.content.TextButton
+import moe.ouom.wekit.ui.utils.showComposeDialog
+import moe.ouom.wekit.utils.ToastUtils
+import moe.ouom.wekit.utils.profiling.HookProfiler
+
+@HookItem(
+    path = "调试/功能性能分析",
+    desc = "查看当前进程各功能的启用耗时与回调耗时, 并导出 Perfetto 可读取的 Trace 文件"
+)
+object HookProfilerViewer : ClickableHookItem() {
+
+    override fun onClick(context: Context) {
+        val snapshots = HookProfiler.snapshots()
+        if (snapshots.isEmpty()) {
+            ToastUtils.showToast(context, "暂无性能数据")
+            return
+        }
+
+        showComposeDialog(context) {
+            AlertDialogContent(
+                title = { Text("功能性能分析 (${snapshots.size} 项)") },
+                text = {
+                    LazyColumn(modifier = Modifier.heightIn(max = 420.dp)) {
+                        itemsIndexed(snapshots) { index, s ->
+                            ListItem(
+                                headlineContent = {
+                                    Text(
+                                        text = s.path,
+                                        style = MaterialTheme.typography.bodyMedium,
+                                        maxLines = 1,
+                                        overflow = TextOverflow.Ellipsis
+                                    )
+                                },
+                                supportingContent = {
+                                    Text(
+                                        text = buildString {
+                                            append("启用 ${if (s.enableNanos < 0) "-" else formatNanos(s.enableNanos)}")
+                                            append(" · 调用 ${s.invocations} 次")
+                                            if (s.invocations > 0) {
+                                                append("\n累计≈${formatNanos(s.estimatedTotalNanos)}")
+                                                append(" · p50 ${formatNanos(s.p50Nanos)}")
+                                                append(" · p99 ${formatNanos(s.p99Nanos)}")
+                                            }
+                                        },
+                                        style = MaterialTheme.typography.labelSmall.copy(
+                                            fontFamily = FontFamily.Monospace
+                                        ),
+                                        color = MaterialTheme.colorScheme.onSurfaceVariant
+                                    )
+                                },
+                                colors = ListItemDefaults.colors(
+                                    containerColor = MaterialTheme.colorScheme.surfaceContainerHigh
+                                ),
+                                modifier = Modifier.fillMaxWidth()
+                            )
+                            if (index < snapshots.lastIndex) HorizontalDivider(thickness = 0.5.dp)
+                        }
+                    }
+                },
+                dismissButton = {
+                    TextButton(onClick = {
+                        HookProfiler.reset()
+                        onDismiss()
+                        ToastUtils.showToast(context, "已重置统计")
+                    }) { Text("重置") }
+                },
+                confirmButton = {
+                    Button(onClick = {
+                        onDismiss()
+                        // 导出涉及 JSON 构建与文件写入，不放在主线程
+                        Thread {
+                            val file = HookProfiler.exportTrace()
+                            Handler(Looper.getMainLooper()).post {
+                                if (file != null) {
+                                    ToastUtils.showToast(context, "已导出到 $file")
+                                } else {
+                                    ToastUtils.showToast(context, "导出失败")
+                                }
+                            }
+                        }.start()
+                    }) { Text("导出 Trace") }
+                }
+            )
+        }
+    }
+
+    private fun formatNanos(nanos: Long): String = when {
+        nanos >= 1_000_000 -> "%.1fms".format(nanos / 1_000_000.0)
+        nanos >= 1_000 -> "%.1fµs".format(nanos / 1_000.0)
+        else -> "${nanos}ns"
+    }
+
+    override fun noSwitchWidget(): Boolean = true
+}
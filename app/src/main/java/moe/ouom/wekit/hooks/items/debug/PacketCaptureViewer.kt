@@ -0,0 +1,239 @@
+package moe.ouom.wekit.hooks.items.debug
+
+import android.content.ClipData
+import android.content.ClipboardManager
+import android.content.Context
+import androidx.compose.foundation.clickable
+import androidx.compose.foundation.layout.fillMaxWidth
+import androidx.compose.foundation.layout.height
+import androidx.compose.foundation.layout.heightIn
+import androidx.compose.foundation.lazy.LazyColumn
+import androidx.compose.foundation.lazy.itemsIndexed
+import androidx.compose.foundation.rememberScrollState
+import androidx.compose.foundation.verticalScroll
+import androidx.compose.material3.HorizontalDivider
+import androidx.compose.material3.ListItem
+import androidx.compose.material3.ListItemDefaults
+import androidx.compose.material3.MaterialTheme
+import androidx.compose.material3.Text
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.text.font.FontFamily
+import androidx.compose.ui.text.style.TextOverflow
+import androidx.compose.ui.unit.dp
+import dev.ujhhgtg.nameof.nameof
+import moe.ouom.wekit.core.model.ClickableHookItem
+import moe.ouom.wekit.hooks.api.net.WePacketCapture
+import moe.ouom.wekit.hooks.api.net.WeProtoData
+import moe.ouom.wekit.hooks.utils.annotation.HookItem
+import moe.ouom.wekit.ui.content.AlertDialogContent
+import moe.ouom.wekit.ui.content.Button
+import moe.ouom.wekit.ui.content.TextButton
+import moe.ouom.wekit.ui.utils.showComposeDialog
+import moe.ouom.wekit.utils.ToastUtils
+import moe.ouom.wekit.utils.formatBytesSize
+import moe.ouom.wekit.utils.formatEpoch
+import moe.ouom.wekit.utils.logging.WeLogger
+import java.nio.file.Path
+import kotlin.io.path.deleteIfExists
+import kotlin.io.path.fileSize
+import kotlin.io.path.name
+
+@HookItem(
+    path = "调试/数据包抓取",
+    desc = "开启后在后台记录所有 CGI 请求与响应的原始数据, 点击查看已保存的抓包文件"
+)
+object PacketCaptureViewer : ClickableHookItem() {
+
+    private val TAG = nameof(PacketCaptureViewer)
+
+    override fun onEnable() {
+        WePacketCapture.start()
+    }
+
+    override fun onDisable() {
+        WePacketCapture.stop()
+    }
+
+    override fun onClick(context: Context) {
+        val files = WePacketCapture.listCaptureFiles()
+        if (files.isEmpty()) {
+            ToastUtils.showToast(context, "暂无抓包文件")
+            return
+        }
+
+        showComposeDialog(context) {
+            AlertDialogContent(
+                title = {
+                    Text(
+                        if (WePacketCapture.isRecording) {
+                            "抓包文件 · 已记录 ${WePacketCapture.capturedCount} 条, 丢弃 ${WePacketCapture.droppedCount} 条"
+                        } else {
+                            "抓包文件 (${files.size} 个)"
+                        }
+                    )
+                },
+                text = {
+                    LazyColumn(modifier = Modifier.heightIn(max = 420.dp)) {
+                        itemsIndexed(files) { index, file ->
+                            ListItem(
+                                headlineContent = {
+                                    Text(
+                                        text = file.name,
+                                        style = MaterialTheme.typography.bodyMedium,
+                                        maxLines = 1,
+                                        overflow = TextOverflow.Ellipsis
+                                    )
+                                },
+                                supportingContent = {
+                                    Text(
+                                        text = formatBytesSize(file.fileSize()),
+                                        style = MaterialTheme.typography.labelSmall,
+                                        color = MaterialTheme.colorScheme.onSurfaceVariant
+                                    )
+                                },
+                                colors = ListItemDefaults.colors(
+                                    containerColor = MaterialTheme.colorScheme.surfaceContainerHigh
+                                ),
+                                modifier = Modifier.clickable {
+                                    onDismiss()
+                                    showRecords(context, file)
+                                }
+                            )
+                            if (index < files.lastIndex) HorizontalDivider(thickness = 0.5.dp)
+                        }
+                    }
+                },
+                dismissButton = {
+                    TextButton(onClick = {
+                        onDismiss()
+                        deleteAllCaptures(context, files)
+                    }) { Text("全部删除", color = MaterialTheme.colorScheme.error) }
+                },
+                confirmButton = { Button(onDismiss) { Text("关闭") } }
+            )
+        }
+    }
+
+    private fun showRecords(context: Context, file: Path) {
+        val records = try {
+            WePacketCapture.readRecords(file)
+        } catch (e: Throwable) {
+            WeLogger.e(TAG, "Failed to read capture ${file.name}", e)
+            ToastUtils.showToast(context, "读取抓包文件失败: ${e.message}")
+            return
+        }
+        if (records.isEmpty()) {
+            ToastUtils.showToast(context, "该文件中没有完整的记录")
+            return
+        }
+
+        showComposeDialog(context) {
+            AlertDialogContent(
+                title = { Text("${file.name} (${records.size} 条)") },
+                text = {
+                    LazyColumn(modifier = Modifier.heightIn(max = 420.dp)) {
+                        itemsIndexed(records) { index, record ->
+                            ListItem(
+                                headlineContent = {
+                                    Text(
+                                        text = "${directionLabel(record)} ${record.cgiId} · ${record.uri}",
+                                        style = MaterialTheme.typography.bodyMedium,
+                                        maxLines = 1,
+                                        overflow = TextOverflow.Ellipsis
+                                    )
+                                },
+                                supportingContent = {
+                                    Text(
+                                        text = "${formatEpoch(record.timestamp)} · ${formatBytesSize(record.payloadLength.toLong())}",
+                                        style = MaterialTheme.typography.labelSmall.copy(
+                                            fontFamily = FontFamily.Monospace
+                                        ),
+                                        color = MaterialTheme.colorScheme.onSurfaceVariant
+                                    )
+                                },
+                                colors = ListItemDefaults.colors(
+                                    containerColor = MaterialTheme.colorScheme.surfaceContainerHigh
+                                ),
+                                modifier = Modifier.clickable {
+                                    showRecordDetail(context, file, record)
+                                }
+                            )
+                            if (index < records.lastIndex) HorizontalDivider(thickness = 0.5.dp)
+                        }
+                    }
+                },
+                confirmButton = { Button(onDismiss) { Text("关闭") } }
+            )
+        }
+    }
+
+    private fun showRecordDetail(context: Context, file: Path, record: WePacketCapture.Record) {
+        // 只在查看时才读取并解码负载
+        val decoded = try {
+            val payload = WePacketCapture.readPayload(file, record)
+            runCatching {
+                WeProtoData().apply { fromBytes(payload) }.toJsonObject().toString(2)
+            }.getOrElse { "hex->" + WeProtoData.bytesToHex(payload) }
+        } catch (e: Throwable) {
+            WeLogger.e(TAG, "Failed to read capture payload", e)
+            ToastUtils.showToast(context, "读取数据失败: ${e.message}")
+            return
+        }
+
+        showComposeDialog(context) {
+            AlertDialogContent(
+                title = {
+                    Text(
+                        text = "${directionLabel(record)} ${record.cgiId} · ${record.uri}",
+                        style = MaterialTheme.typography.titleMedium,
+                        maxLines = 1,
+                        overflow = TextOverflow.Ellipsis
+                    )
+                },
+                text = {
+                    Text(
+                        text = decoded,
+                        style = MaterialTheme.typography.bodySmall.copy(
+                            fontFamily = FontFamily.Monospace
+                        ),
+                        color = MaterialTheme.colorScheme.onSurfaceVariant,
+                        modifier = Modifier
+                            .fillMaxWidth()
+                            .height(320.dp)
+                            .verticalScroll(rememberScrollState())
+                    )
+                },
+                dismissButton = { TextButton(onDismiss) { Text("返回") } },
+                confirmButton = {
+                    Button(onClick = {
+                        val clipboard =
+                            context.getSystemService(Context.CLIPBOARD_SERVICE) as? ClipboardManager
+                        clipboard?.setPrimaryClip(ClipData.newPlainText("Packet", decoded))
+                        ToastUtils.showToast(context, "已复制")
+                    }) { Text("复制") }
+                }
+            )
+        }
+    }
+
+    private fun directionLabel(record: WePacketCapture.Record) =
+        if (record.direction == WePacketCapture.DIRECTION_REQUEST) "↑" else "↓"
+
+    private fun deleteAllCaptures(context: Context, files: List<Path>) {
+        // 正在写入的文件仍被写线程持有，删掉后后续记录会写进已删除的 inode
+        var kept = 0
+        val count = files.count {
+            if (WePacketCapture.isCaptureFileOpen(it)) {
+                kept++
+                false
+            } else {
+                runCatching { it.deleteIfExists() }.getOrDefault(false)
+            }
+        }
+        if (kept > 0) {
+            ToastUtils.showToast(context, "已删除 $count 个文件, 正在写入的文件已保留")
+        } else {
+            ToastUtils.showToast(context, "已删除 $count 个文件")
+        }
+    }
+}
@@ -4,6 +4,7 @@ import android.app.Activity
 import com.highcapable.kavaref.KavaRef.Companion.asResolver
 import com.highcapable.kavaref.extension.toClass
 import moe.ouom.wekit.core.dsl.dexMethod
+import moe.ouom.wekit.core.dsl.eqStrings
 import moe.ouom.wekit.core.model.SwitchHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
@@ -12,7 +13,13 @@ import org.luckypray.dexkit.DexKitBridge
 @HookItem(path = "小程序/跳过开屏广告", desc = "跳过小程序开屏广告")
 object SkipMiniAppSplashAds : SwitchHookItem(), IResolvesDex {
 
-    private val methodAdDataCallback by dexMethod()
+    private val methodAdDataCallback by dexMethod(
+        eqStrings(
+            "MicroMsg.AppBrand.JsApiAdOperateWXData[AppBrandSplashAd]",
+            "cgi callback, callbackId:%s, service not running or preloaded",
+            searchPackages = listOf("com.tencent.mm.plugin.appbrand.jsapi.auth")
+        )
+    )
 
     override fun onEnable() {
         methodAdDataCallback.toDexMethod {
@@ -37,15 +44,7 @@ object SkipMiniAppSplashAds : SwitchHookItem(), IResolvesDex {
     override fun resolveDex(dexKit: DexKitBridge): Map<String, String> {
         val descriptors = mutableMapOf<String, String>()
 
-        methodAdDataCallback.find(dexKit, descriptors) {
-            searchPackages("com.tencent.mm.plugin.appbrand.jsapi.auth")
-            matcher {
-                usingEqStrings(
-                    "MicroMsg.AppBrand.JsApiAdOperateWXData[AppBrandSplashAd]",
-                    "cgi callback, callbackId:%s, service not running or preloaded"
-                )
-            }
-        }
+        methodAdDataCallback.resolve(dexKit, descriptors)
 
         return descriptors
     }
@@ -18,6 +18,8 @@ object AntiMomentsDelete : SwitchHookItem(), WeDatabaseListenerApi.IUpdateListen
     private const val TBL_SNS_INFO = "SnsInfo"
     private const val DEFAULT_WATERMARK = "[拦截删除]"
 
+    override val updateTables = setOf(TBL_SNS_INFO)
+
     override fun onUpdate(table: String, values: ContentValues): Boolean {
         if (!isEnabled) return false
 
@@ -28,6 +28,8 @@ object FakeMomentsLikes : SwitchHookItem(), WeMomentsContextMenuApi.IMenuItemsPr
     private val TAG = nameof(FakeMomentsLikes)
     private const val TBL_SNS_INFO = "SnsInfo"
 
+    override val updateTables = setOf(TBL_SNS_INFO)
+
     // 存储每个朋友圈动态的伪点赞用户配置 (snsId -> Set<微信id>)
     private val fakeLikeWxIds = mutableMapOf<Long, Set<String>>()
 
@@ -20,6 +20,7 @@ import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.launch
 import moe.ouom.wekit.constants.PackageNames
+import moe.ouom.wekit.core.model.ActivationTrigger
 import moe.ouom.wekit.core.model.SwitchHookItem
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
 import moe.ouom.wekit.hooks.api.core.WeConversationApi
@@ -92,6 +93,9 @@ object NotificationEvolved : SwitchHookItem() {
 
     private val MESSAGE_REGEX = Regex("""^(\[\d+条])?(.+?)?: (.*)$""")
 
+    // 注册广播与拉取头像可以等到宿主启动完成后进行
+    override fun activationTrigger() = ActivationTrigger.OnMainIdle
+
     override fun onEnable() {
         CoroutineScope(Dispatchers.IO).launch {
             runCatching {
@@ -44,6 +44,11 @@ object AutoOpenRedPacket : ClickableHookItem(), WeDatabaseListenerApi.IInsertLis
 
     private val currentRedPacketMap = ConcurrentHashMap<String, RedPacketInfo>()
 
+    override val insertTables = setOf("message")
+    override val insertFilters = listOf(
+        WeDatabaseListenerApi.ColumnFilter.int("type") { MessageType.isRedPacket(it) }
+    )
+
     data class RedPacketInfo(
         val sendId: String,
         val nativeUrl: String,
@@ -34,13 +34,13 @@ object ModifyTransferWalletBalanceDisplay : ClickableHookItem(), IWePacketInterc
     private const val KEY_CFT_BALANCE = "fake_cft_balance"
     private const val KEY_LQT_BALANCE = "fake_lqt_balance"
 
+    override val cgiIds = setOf(2882)
+
     override fun onEnable() {
         WePacketManager.addInterceptor(this)
     }
 
     override fun onResponse(uri: String, cgiId: Int, respBytes: ByteArray): ByteArray? {
-        if (cgiId != 2882) return null
-
         WeLogger.i(TAG, "拦截到收银台数据包: $uri")
 
         try {
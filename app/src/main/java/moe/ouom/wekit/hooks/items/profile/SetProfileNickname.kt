@@ -9,6 +9,7 @@ import androidx.compose.runtime.remember
 import androidx.compose.runtime.setValue
 import moe.ouom.wekit.core.model.ClickableHookItem
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
+import moe.ouom.wekit.hooks.api.net.SetNicknameRequest
 import moe.ouom.wekit.hooks.api.net.WePacketHelper
 import moe.ouom.wekit.ui.content.AlertDialogContent
 import moe.ouom.wekit.ui.content.TextButton
@@ -33,15 +34,7 @@ object SetProfileNickname : ClickableHookItem() {
                 dismissButton = { TextButton(onClick = onDismiss) { Text("取消") } },
                 confirmButton = {
                     TextButton(onClick = {
-                        val payload = """{"1":{"1":1,"2":{"1":64,"2":{"1":16,"2":{"1":1,"2":"${
-                            escapeJsonString(nickname)
-                        }"}}}}}"""
-
-                        WePacketHelper.sendCgi(
-                            "/cgi-bin/micromsg-bin/oplog",
-                            681, 0, 0,
-                            jsonPayload = payload
-                        ) {
+                        WePacketHelper.sendCgi(SetNicknameRequest(nickname)) {
                             onSuccess { json, _ ->
                                 WeLogger.i("WeProfileNameSetter", "成功，回包: $json")
                                 showComposeDialog(context) {
@@ -73,9 +66,5 @@ object SetProfileNickname : ClickableHookItem() {
         }
     }
 
-    private fun escapeJsonString(input: String): String {
-        return input.replace("\"", "\\\"")
-    }
-
     override fun noSwitchWidget(): Boolean = true
 }
\ No newline at end of file
@@ -50,7 +50,12 @@ object JsApiExposer {
             .build()
     }
 
-    fun exposeApis(scope: ScriptableObject, talker: String? = null) {
+    /**
+     * 各 API 对象填充完毕后即封存：它们由所有脚本共享，脚本不能改写 `log.info` 之类的属性来影响其他脚本
+     *
+     * @param talker 返回当前正在处理的会话，wechat.replyXxx 系列函数依赖它；不在 onMessage 中时返回 null
+     */
+    fun exposeApis(scope: ScriptableObject, talker: () -> String? = { null }) {
         exposeHttpApis(scope)
         exposeLogApis(scope)
         exposeStorageApis(scope)
@@ -172,6 +177,7 @@ object JsApiExposer {
             }
         )
 
+        httpObj.sealObject()
         ScriptableObject.putProperty(scope, "http", httpObj)
     }
 
@@ -419,6 +425,7 @@ object JsApiExposer {
             }
         )
 
+        logObj.sealObject()
         ScriptableObject.putProperty(scope, "log", logObj)
     }
 
@@ -488,6 +495,7 @@ object JsApiExposer {
             }
         )
 
+        timeObj.sealObject()
         ScriptableObject.putProperty(scope, "time", timeObj)
     }
 
@@ -716,10 +724,11 @@ object JsApiExposer {
         )
 
         // Bind the object to the global scope
+        storageObj.sealObject()
         ScriptableObject.putProperty(scope, "storage", storageObj)
     }
 
-    fun exposeWeChatApis(scope: ScriptableObject, talker: String? = null) {
+    fun exposeWeChatApis(scope: ScriptableObject, talker: () -> String? = { null }) {
         val weObj = NativeObject()
 
         ScriptableObject.putProperty(
@@ -804,85 +813,88 @@ object JsApiExposer {
                 }
             }
         )
-        if (talker != null) {
-            ScriptableObject.putProperty(
-                weObj, "replyText",
-                object : BaseFunction() {
-                    override fun call(
-                        cx: Context,
-                        scope: Scriptable,
-                        thisObj: Scriptable,
-                        args: Array<Any?>
-                    ): Any? {
-                        val text = args.getOrNull(0)?.toString() ?: return null
-                        WeMessageApi.sendText(talker, text)
-                        return null
-                    }
+        ScriptableObject.putProperty(
+            weObj, "replyText",
+            object : BaseFunction() {
+                override fun call(
+                    cx: Context,
+                    scope: Scriptable,
+                    thisObj: Scriptable,
+                    args: Array<Any?>
+                ): Any? {
+                    val current = talker() ?: return replyOutsideMessage()
+                    val text = args.getOrNull(0)?.toString() ?: return null
+                    WeMessageApi.sendText(current, text)
+                    return null
                 }
-            )
-            ScriptableObject.putProperty(
-                weObj, "replyImage",
-                object : BaseFunction() {
-                    override fun call(
-                        cx: Context,
-                        scope: Scriptable,
-                        thisObj: Scriptable,
-                        args: Array<Any?>
-                    ): Any? {
-                        val path = args.getOrNull(0)?.toString() ?: return null
-                        WeMessageApi.sendImage(talker, path)
-                        return null
-                    }
+            }
+        )
+        ScriptableObject.putProperty(
+            weObj, "replyImage",
+            object : BaseFunction() {
+                override fun call(
+                    cx: Context,
+                    scope: Scriptable,
+                    thisObj: Scriptable,
+                    args: Array<Any?>
+                ): Any? {
+                    val current = talker() ?: return replyOutsideMessage()
+                    val path = args.getOrNull(0)?.toString() ?: return null
+                    WeMessageApi.sendImage(current, path)
+                    return null
                 }
-            )
-            ScriptableObject.putProperty(
-                weObj, "replyFile",
-                object : BaseFunction() {
-                    override fun call(
-                        cx: Context,
-                        scope: Scriptable,
-                        thisObj: Scriptable,
-                        args: Array<Any?>
-                    ): Any? {
-                        val path = args.getOrNull(0)?.toString() ?: return null
-                        val title = args.getOrNull(1)?.toString() ?: path.substringAfterLast('/')
-                        WeMessageApi.sendFile(talker, path, title)
-                        return null
-                    }
+            }
+        )
+        ScriptableObject.putProperty(
+            weObj, "replyFile",
+            object : BaseFunction() {
+                override fun call(
+                    cx: Context,
+                    scope: Scriptable,
+                    thisObj: Scriptable,
+                    args: Array<Any?>
+                ): Any? {
+                    val current = talker() ?: return replyOutsideMessage()
+                    val path = args.getOrNull(0)?.toString() ?: return null
+                    val title = args.getOrNull(1)?.toString() ?: path.substringAfterLast('/')
+                    WeMessageApi.sendFile(current, path, title)
+                    return null
                 }
-            )
-            ScriptableObject.putProperty(
-                weObj, "replyVoice",
-                object : BaseFunction() {
-                    override fun call(
-                        cx: Context,
-                        scope: Scriptable,
-                        thisObj: Scriptable,
-                        args: Array<Any?>
-                    ): Any? {
-                        val path = args.getOrNull(0)?.toString() ?: return null
-                        val durationMs = (args.getOrNull(1) as? Number)?.toInt() ?: 0
-                        WeMessageApi.sendVoice(talker, path, durationMs)
-                        return null
-                    }
+            }
+        )
+        ScriptableObject.putProperty(
+            weObj, "replyVoice",
+            object : BaseFunction() {
+                override fun call(
+                    cx: Context,
+                    scope: Scriptable,
+                    thisObj: Scriptable,
+                    args: Array<Any?>
+                ): Any? {
+                    val current = talker() ?: return replyOutsideMessage()
+                    val path = args.getOrNull(0)?.toString() ?: return null
+                    val durationMs = (args.getOrNull(1) as? Number)?.toInt() ?: 0
+                    WeMessageApi.sendVoice(current, path, durationMs)
+                    return null
                 }
-            )
-            ScriptableObject.putProperty(
-                weObj, "replyAppMsg",
-                object : BaseFunction() {
-                    override fun call(
-                        cx: Context,
-                        scope: Scriptable,
-                        thisObj: Scriptable,
-                        args: Array<Any?>
-                    ): Any? {
-                        val content = args.getOrNull(0)?.toString() ?: return null
-                        WeMessageApi.sendXmlAppMsg(talker, content)
-                        return null
-                    }
+            }
+        )
+        ScriptableObject.putProperty(
+            weObj, "replyAppMsg",
+            object : BaseFunction() {
+                override fun call(
+                    cx: Context,
+                    scope: Scriptable,
+                    thisObj: Scriptable,
+                    args: Array<Any?>
+                ): Any? {
+                    val current = talker() ?: return replyOutsideMessage()
+                    val content = args.getOrNull(0)?.toString() ?: return null
+                    WeMessageApi.sendXmlAppMsg(current, content)
+                    return null
                 }
-            )
-        }
+            }
+        )
         ScriptableObject.putProperty(weObj, "getSelfWxId", object : BaseFunction() {
             override fun call(
                 cx: Context?,
@@ -904,6 +916,12 @@ object JsApiExposer {
             }
         })
 
+        weObj.sealObject()
         ScriptableObject.putProperty(scope, "wechat", weObj)
     }
+
+    private fun replyOutsideMessage(): Any? {
+        WeLogger.w(TAG, "wechat.replyXxx() can only be used inside onMessage()")
+        return null
+    }
 }
\ No newline at end of file
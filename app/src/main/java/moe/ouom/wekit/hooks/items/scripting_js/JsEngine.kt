@@ -2,19 +2,18 @@ package moe.ouom.wekit.hooks.items.scripting_js
 
 import dev.ujhhgtg.nameof.nameof
 import moe.ouom.wekit.hooks.api.core.WeMessageApi
+import moe.ouom.wekit.hooks.api.net.WeProtoData
 import moe.ouom.wekit.utils.logging.WeLogger
 import org.json.JSONObject
-import org.mozilla.javascript.Context
 import org.mozilla.javascript.Function
+import org.mozilla.javascript.NativeJSON
 import org.mozilla.javascript.NativeObject
-import org.mozilla.javascript.ScriptableObject
 
 object JsEngine {
 
     private val TAG = nameof(JsEngine)
 
     fun executeAllOnMessage(
-        rules: Map<String, String>,
         talker: String,
         content: String,
         type: Int,
@@ -26,48 +25,21 @@ object JsEngine {
             return
         }
 
-        for (rule in rules) {
-            WeLogger.d(TAG, "evaluating rule name='${rule.key}'")
+        for (script in JsScriptRuntime.scripts()) {
+            val fn = script.onMessage ?: continue
+            WeLogger.d(TAG, "evaluating rule name='${script.name}'")
 
             try {
-                executeOnMessage(rule.value, talker, content, type, isSend)
+                val result = JsScriptRuntime.call(
+                    script, fn, arrayOf(talker, content, type, isSend), talker
+                ) ?: continue
+                handleOnMessageReturnValue(result, talker)
             } catch (e: Exception) {
-                WeLogger.e(TAG, "rule name='${rule.key}' threw during onMessage", e)
+                WeLogger.e(TAG, "rule name='${script.name}' threw during onMessage", e)
             }
         }
     }
 
-    private fun executeOnMessage(
-        script: String,
-        talker: String,
-        content: String,
-        type: Int,
-        isSend: Int,
-    ) {
-        val cx: Context = Context.enter()
-        try {
-            cx.optimizationLevel = -1
-            val scope = cx.initStandardObjects()
-
-            JsApiExposer.exposeApis(scope, talker)
-
-            cx.evaluateString(scope, script, "AutomationRule", 1, null)
-
-            val fn = scope.get("onMessage", scope)
-            if (fn == ScriptableObject.NOT_FOUND || fn !is Function) {
-                WeLogger.w(TAG, "JS script does not define onMessage()")
-                return
-            }
-
-            val result = fn.call(cx, scope, scope, arrayOf<Any?>(talker, content, type, isSend))
-                ?: return
-
-            handleOnMessageReturnValue(result, talker)
-        } finally {
-            Context.exit()
-        }
-    }
-
     private fun handleOnMessageReturnValue(result: Any, talker: String) {
         when (result) {
             is String -> {
@@ -101,132 +73,77 @@ object JsEngine {
         }
     }
 
+    /**
+     * @return 有脚本修改了数据包时返回 true，data 已被原地修改
+     */
     fun executeAllOnRequest(
         uri: String,
         cgiId: Int,
-        json: JSONObject,
-    ): JSONObject {
-        var modifiedJson = json
-
-        for (rule in JsScriptingHook.rules) {
-            try {
-                val result = executeOnRequest(rule.value, uri, cgiId, modifiedJson)
-                if (result != null) {
-                    modifiedJson = result
-                }
-            } catch (e: Exception) {
-                WeLogger.e(TAG, "rule name='${rule.key}' threw during onRequest", e)
-            }
-        }
-
-        return modifiedJson
-    }
-
+        data: WeProtoData,
+    ): Boolean = executeAllOnPacket(uri, cgiId, data, "onRequest") { it.onRequest }
 
-    private fun executeOnRequest(
-        script: String,
+    /**
+     * @return 有脚本修改了数据包时返回 true，data 已被原地修改
+     */
+    fun executeAllOnResponse(
         uri: String,
         cgiId: Int,
-        json: JSONObject,
-    ): JSONObject? {
-        val cx: Context = Context.enter()
-        try {
-            cx.optimizationLevel = -1
-            val scope = cx.initStandardObjects()
+        data: WeProtoData,
+    ): Boolean = executeAllOnPacket(uri, cgiId, data, "onResponse") { it.onResponse }
 
-            JsApiExposer.exposeApis(scope)
-
-            val jsonStr = json.toString()
-            val jsonObj = cx.evaluateString(scope, "($jsonStr)", "json", 1, null)
-
-            cx.evaluateString(scope, script, "AutomationRule", 1, null)
-
-            val fn = scope.get("onRequest", scope)
-            if (fn == ScriptableObject.NOT_FOUND || fn !is Function) {
-                return null
-            }
-
-            val result = fn.call(cx, scope, scope, arrayOf<Any?>(uri, cgiId, jsonObj))
-                ?: return null
-
-            val resultStr = when (result) {
-                is NativeObject -> {
-                    val stringify = scope.get("JSON", scope) as NativeObject
-                    val stringifyFn = stringify.get("stringify", stringify) as Function
-                    stringifyFn.call(cx, scope, stringify, arrayOf(result)) as String
-                }
-
-                is String -> result
-                else -> return null
-            }
-
-            return JSONObject(resultStr)
-        } finally {
-            Context.exit()
-        }
-    }
-
-    fun executeAllOnResponse(
+    private fun executeAllOnPacket(
         uri: String,
         cgiId: Int,
-        json: JSONObject,
-    ): JSONObject {
-        var modifiedJson = json
-
-        for (rule in JsScriptingHook.rules) {
+        data: WeProtoData,
+        hookName: String,
+        selector: (JsScriptRuntime.CompiledScript) -> Function?
+    ): Boolean {
+        var modified = false
+
+        for (script in JsScriptRuntime.scripts()) {
+            if (!script.acceptsCgi(cgiId)) continue
+            val fn = selector(script) ?: continue
             try {
-                val result = executeOnResponse(rule.value, uri, cgiId, modifiedJson)
-                if (result != null) {
-                    modifiedJson = result
-                }
+                modified = executeOnPacket(script, fn, uri, cgiId, data) || modified
             } catch (e: Exception) {
-                WeLogger.e(TAG, "rule name='${rule.key}' threw during onResponse", e)
+                WeLogger.e(TAG, "rule name='${script.name}' threw during $hookName", e)
             }
         }
 
-        return modifiedJson
+        return modified
     }
 
-    private fun executeOnResponse(
-        script: String,
+    private fun executeOnPacket(
+        script: JsScriptRuntime.CompiledScript,
+        fn: Function,
         uri: String,
         cgiId: Int,
-        json: JSONObject,
-    ): JSONObject? {
-        val cx: Context = Context.enter()
-        try {
-            cx.optimizationLevel = -1
-            val scope = cx.initStandardObjects()
-
-            JsApiExposer.exposeApis(scope)
+        data: WeProtoData,
+    ): Boolean {
+        return JsScriptRuntime.withContext { cx ->
+            val view = JsProtoView(data, script.scope)
 
-            val jsonStr = json.toString()
-            val jsonObj = cx.evaluateString(scope, "($jsonStr)", "json", 1, null)
+            val result = JsScriptRuntime.call(script, fn, arrayOf(uri, cgiId, view))
+                ?: return@withContext false
 
-            cx.evaluateString(scope, script, "AutomationRule", 1, null)
+            when (result) {
+                // 原样返回视图：只写回被改动的字段
+                view -> view.commit()
 
-            val fn = scope.get("onResponse", scope)
-            if (fn == ScriptableObject.NOT_FOUND || fn !is Function) {
-                return null
-            }
-
-            val result = fn.call(cx, scope, scope, arrayOf<Any?>(uri, cgiId, jsonObj))
-                ?: return null
-
-            val resultStr = when (result) {
+                // 返回了新对象或 JSON 字符串：按旧方式整体套用
                 is NativeObject -> {
-                    val stringify = scope.get("JSON", scope) as NativeObject
-                    val stringifyFn = stringify.get("stringify", stringify) as Function
-                    stringifyFn.call(cx, scope, stringify, arrayOf(result)) as String
+                    val json = NativeJSON.stringify(cx, script.scope, result, null, null) as String
+                    data.applyViewJson(JSONObject(json), true)
+                    true
                 }
 
-                is String -> result
-                else -> return null
-            }
+                is String -> {
+                    data.applyViewJson(JSONObject(result), true)
+                    true
+                }
 
-            return JSONObject(resultStr)
-        } finally {
-            Context.exit()
+                else -> false
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,164 @@
+package moe.ouom.wekit.hooks.items.scripting_js
+
+import moe.ouom.wekit.hooks.api.net.WeProtoData
+import org.json.JSONArray
+import org.json.JSONObject
+import org.mozilla.javascript.Context
+import org.mozilla.javascript.NativeArray
+import org.mozilla.javascript.Scriptable
+import org.mozilla.javascript.ScriptableObject
+import org.mozilla.javascript.Undefined
+
+/**
+ * [WeProtoData] 的惰性 JS 视图
+ *
+ * 与原先传给脚本的 JSON 对象形状一致：键为字段号，重复字段为数组，子消息为嵌套对象，二进制为 "hex->..."；
+ * 字段只在脚本访问时解码，写入与删除先记录在视图中，[commit] 时只把被改动的字段写回，
+ * 未改动时 [commit] 返回 false，调用方可以直接跳过重新编码
+ */
+class JsProtoView(
+    private val data: WeProtoData,
+    scope: Scriptable
+) : ScriptableObject(scope, ScriptableObject.getObjectPrototype(scope)) {
+
+    private object Deleted
+
+    // 脚本写入或删除的字段
+    private val overrides = LinkedHashMap<Int, Any>()
+
+    // 已物化的字段值：子消息视图或重复字段数组，commit 时检查其内部改动
+    private val materialized = HashMap<Int, Any>()
+    private val originals = HashMap<Int, List<Any?>>()
+
+    override fun getClassName() = "ProtoData"
+
+    override fun get(name: String, start: Scriptable): Any =
+        name.toIntOrNull()?.let { get(it, start) } ?: super.get(name, start)
+
+    override fun get(index: Int, start: Scriptable): Any {
+        overrides[index]?.let { return if (it === Deleted) NOT_FOUND else it }
+        materialized[index]?.let { return it }
+
+        val values = data.viewValues(index)
+        if (values.isEmpty()) return NOT_FOUND
+
+        val converted = values.map { toJs(it) }
+        val result: Any = if (converted.size == 1) {
+            converted[0]
+        } else {
+            Context.getCurrentContext().newArray(parentScope, converted.toTypedArray())
+        }
+        if (result is JsProtoView || result is NativeArray) {
+            materialized[index] = result
+            originals[index] = converted
+        }
+        return result
+    }
+
+    override fun has(name: String, start: Scriptable): Boolean =
+        name.toIntOrNull()?.let { has(it, start) } ?: super.has(name, start)
+
+    override fun has(index: Int, start: Scriptable): Boolean {
+        overrides[index]?.let { return it !== Deleted }
+        return data.occurrenceCount(index) > 0
+    }
+
+    override fun put(name: String, start: Scriptable, value: Any?) {
+        name.toIntOrNull()?.let { put(it, start, value) } ?: super.put(name, start, value)
+    }
+
+    override fun put(index: Int, start: Scriptable, value: Any?) {
+        overrides[index] = if (value == null || value is Undefined) Deleted else value
+    }
+
+    override fun delete(name: String) {
+        name.toIntOrNull()?.let { delete(it) } ?: super.delete(name)
+    }
+
+    override fun delete(index: Int) {
+        overrides[index] = Deleted
+    }
+
+    override fun getIds(): Array<Any> {
+        val ids = LinkedHashSet<Int>(data.fieldNumbers())
+        overrides.forEach { (fn, v) -> if (v === Deleted) ids.remove(fn) else ids.add(fn) }
+        return arrayOf(*ids.toTypedArray())
+    }
+
+    /**
+     * 将视图中的改动写回 [data]
+     * @return 是否有任何字段被改动
+     */
+    fun commit(): Boolean {
+        var changed = false
+
+        overrides.forEach { (fn, value) ->
+            if (value === Deleted) data.removeAll(fn) else data.replaceViewValue(fn, toJson(value))
+            changed = true
+        }
+
+        materialized.forEach { (fn, value) ->
+            if (fn in overrides) return@forEach
+            when (value) {
+                is JsProtoView -> changed = value.commit() || changed
+                is NativeArray -> changed = commitArray(fn, value) || changed
+            }
+        }
+        return changed
+    }
+
+    private fun commitArray(fn: Int, array: NativeArray): Boolean {
+        val original = originals[fn] ?: return false
+        if (array.length != original.size.toLong()) {
+            data.replaceViewValue(fn, toJson(array))
+            return true
+        }
+
+        var changed = false
+        for (i in original.indices) {
+            val current = array.get(i, array)
+            when {
+                current is JsProtoView && current === original[i] ->
+                    changed = current.commit() || changed
+
+                current != original[i] &&
+                        !(current is CharSequence && current.toString() == original[i]) -> {
+                    toJson(current)?.let { data.setViewValue(fn, i, it) }
+                    changed = true
+                }
+            }
+        }
+        return changed
+    }
+
+    /**
+     * 完整展开为 JSON，包含尚未提交的改动
+     */
+    fun toJsonObject(): JSONObject {
+        commit()
+        return data.toJsonObject()
+    }
+
+    private fun toJs(value: Any): Any = when (value) {
+        is WeProtoData -> JsProtoView(value, parentScope)
+        is Number -> value.toDouble()
+        else -> value
+    }
+
+    private fun toJson(value: Any?): Any? = when (value) {
+        null, is Undefined -> null
+        is JsProtoView -> value.toJsonObject()
+        is NativeArray -> JSONArray().also { arr -> value.forEach { arr.put(toJson(it)) } }
+        is Scriptable -> JSONObject().also { obj ->
+            value.ids.forEach { id ->
+                val v = if (id is Int) value.get(id, value) else value.get(id.toString(), value)
+                toJson(v)?.let { obj.put(id.toString(), it) }
+            }
+        }
+
+        is Boolean -> if (value) 1L else 0L
+        is Double -> if (value % 1.0 == 0.0) value.toLong() else value
+        is CharSequence -> value.toString()
+        else -> value
+    }
+}
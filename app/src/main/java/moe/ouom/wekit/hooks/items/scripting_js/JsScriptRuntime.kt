@@ -0,0 +1,212 @@
+package moe.ouom.wekit.hooks.items.scripting_js
+
+import dev.ujhhgtg.nameof.nameof
+import moe.ouom.wekit.utils.logging.WeLogger
+import org.mozilla.javascript.Context
+import org.mozilla.javascript.Function
+import org.mozilla.javascript.NativeArray
+import org.mozilla.javascript.Scriptable
+import org.mozilla.javascript.ScriptableObject
+import java.nio.file.Path
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import kotlin.io.path.exists
+import kotlin.io.path.fileSize
+import kotlin.io.path.getLastModifiedTime
+import kotlin.io.path.listDirectoryEntries
+import kotlin.io.path.name
+import kotlin.io.path.readText
+
+/**
+ * 脚本运行时
+ *
+ * 每个脚本文件只编译、执行顶层代码一次，之后的事件直接调用缓存的 onMessage / onRequest / onResponse；
+ * 标准对象与 JsApiExposer 暴露的 API 位于一个共享并封存的作用域中，每个脚本拥有以其为原型的独立作用域，
+ * 因此脚本的顶层变量会在多次事件之间保留
+ *
+ * 文件变化（修改时间或大小）由后台线程每隔 [CHECK_INTERVAL_MS] 检查一次并重新编译，
+ * 事件热路径上的 [scripts] 只读取当前列表，不加锁也不访问文件系统
+ *
+ * 脚本可以在顶层声明 `var cgiIds = [...]`，此时 onRequest / onResponse 只会收到这些 CGI 的数据包
+ */
+object JsScriptRuntime {
+
+    private val TAG = nameof(JsScriptRuntime)
+
+    private const val CHECK_INTERVAL_MS = 2000L
+
+    class CompiledScript internal constructor(
+        val name: String,
+        internal val lastModified: Long,
+        internal val size: Long,
+        val scope: Scriptable,
+        val onMessage: Function?,
+        val onRequest: Function?,
+        val onResponse: Function?,
+        // 为 null 时接收所有 CGI
+        val cgiIds: Set<Int>?
+    ) {
+        val handlesPackets get() = onRequest != null || onResponse != null
+
+        fun acceptsCgi(cgiId: Int) = cgiIds == null || cgiId in cgiIds
+    }
+
+    // 回复类 API 需要知道当前会话，由调用方在执行 onMessage 前设置
+    private val currentTalker = ThreadLocal<String?>()
+
+    private val sharedScope: ScriptableObject by lazy {
+        withContext { cx ->
+            cx.initStandardObjects(null, true).also {
+                JsApiExposer.exposeApis(it) { currentTalker.get() }
+                it.sealObject()
+            }
+        }
+    }
+
+    private var scriptsDir: Path? = null
+
+    @Volatile
+    private var scripts: List<CompiledScript> = emptyList()
+
+    private val watcher by lazy {
+        Executors.newSingleThreadScheduledExecutor { runnable ->
+            Thread(runnable, "WeKit-ScriptWatcher").apply { isDaemon = true }
+        }
+    }
+
+    private var watchTask: ScheduledFuture<*>? = null
+
+    /**
+     * 脚本列表发生变化后调用，运行在 [load] 的调用线程或后台检查线程上
+     */
+    @Volatile
+    var onScriptsChanged: (() -> Unit)? = null
+
+    @Synchronized
+    fun load(dir: Path) {
+        scriptsDir = dir
+        scripts = emptyList()
+        refreshIfNeeded()
+        onScriptsChanged?.invoke()
+        watchTask?.cancel(false)
+        watchTask = watcher.scheduleWithFixedDelay(
+            {
+                runCatching { refreshIfNeeded() }
+                    .onFailure { WeLogger.e(TAG, "failed to check scripts", it) }
+            },
+            CHECK_INTERVAL_MS,
+            CHECK_INTERVAL_MS,
+            TimeUnit.MILLISECONDS
+        )
+    }
+
+    @Synchronized
+    fun unload() {
+        watchTask?.cancel(false)
+        watchTask = null
+        scriptsDir = null
+        scripts = emptyList()
+        onScriptsChanged?.invoke()
+    }
+
+    /**
+     * 当前已编译的脚本，文件变化由后台检查线程负责
+     */
+    fun scripts(): List<CompiledScript> = scripts
+
+    fun <T> withContext(block: (Context) -> T): T {
+        val cx = Context.enter()
+        try {
+            // Android 上无法加载运行时生成的 JVM 字节码，只能使用解释模式
+            cx.optimizationLevel = -1
+            return block(cx)
+        } finally {
+            Context.exit()
+        }
+    }
+
+    /**
+     * 在脚本自己的作用域中调用函数；同一脚本的调用互斥，避免多线程同时修改其顶层状态
+     */
+    fun call(script: CompiledScript, fn: Function, args: Array<Any?>, talker: String? = null): Any? =
+        synchronized(script) {
+            withContext { cx ->
+                currentTalker.set(talker)
+                try {
+                    fn.call(cx, script.scope, script.scope, args)
+                } finally {
+                    currentTalker.remove()
+                }
+            }
+        }
+
+    @Synchronized
+    private fun refreshIfNeeded() {
+        val dir = scriptsDir ?: return
+        if (!dir.exists()) {
+            if (scripts.isNotEmpty()) {
+                scripts = emptyList()
+                onScriptsChanged?.invoke()
+            }
+            return
+        }
+
+        val previous = scripts.associateBy { it.name }
+        val files = runCatching { dir.listDirectoryEntries("*.js").sortedBy { it.name } }
+            .getOrElse {
+                WeLogger.e(TAG, "failed to list scripts", it)
+                return
+            }
+
+        var changed = files.size != previous.size
+        val updated = files.mapNotNull { path ->
+            val modified = runCatching { path.getLastModifiedTime().toMillis() }.getOrDefault(0L)
+            val size = runCatching { path.fileSize() }.getOrDefault(-1L)
+            val cached = previous[path.name]
+            if (cached != null && cached.lastModified == modified && cached.size == size) {
+                return@mapNotNull cached
+            }
+            changed = true
+            compile(path, modified, size)
+        }
+        if (changed) {
+            scripts = updated
+            onScriptsChanged?.invoke()
+        }
+    }
+
+    private fun compile(path: Path, lastModified: Long, size: Long): CompiledScript? {
+        val source = runCatching { path.readText() }.getOrElse {
+            WeLogger.e(TAG, "failed to read script ${path.name}", it)
+            return null
+        }
+
+        return try {
+            withContext { cx ->
+                val scope = cx.newObject(sharedScope).apply {
+                    prototype = sharedScope
+                    parentScope = null
+                }
+                cx.compileString(source, path.name, 1, null).exec(cx, scope)
+
+                fun lookup(name: String) = scope.get(name, scope) as? Function
+
+                CompiledScript(
+                    name = path.name,
+                    lastModified = lastModified,
+                    size = size,
+                    scope = scope,
+                    onMessage = lookup("onMessage"),
+                    onRequest = lookup("onRequest"),
+                    onResponse = lookup("onResponse"),
+                    cgiIds = (scope.get("cgiIds", scope) as? NativeArray)
+                        ?.mapNotNullTo(HashSet()) { (it as? Number)?.toInt() }
+                ).also { WeLogger.i(TAG, "compiled script, name='${path.name}', length=${source.length}") }
+            }
+        } catch (e: Exception) {
+            WeLogger.e(TAG, "failed to compile script ${path.name}", e)
+            null
+        }
+    }
+}
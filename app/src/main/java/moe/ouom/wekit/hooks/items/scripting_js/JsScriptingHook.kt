@@ -5,15 +5,12 @@ import dev.ujhhgtg.nameof.nameof
 import moe.ouom.wekit.core.model.SwitchHookItem
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
 import moe.ouom.wekit.hooks.api.core.WeDatabaseListenerApi
+import moe.ouom.wekit.hooks.api.net.WePacketManager
 import moe.ouom.wekit.hooks.api.net.intf.IWePacketInterceptor
 import moe.ouom.wekit.hooks.api.net.WeProtoData
 import moe.ouom.wekit.utils.PathUtils
 import moe.ouom.wekit.utils.logging.WeLogger
-import java.util.concurrent.ConcurrentHashMap
 import kotlin.io.path.div
-import kotlin.io.path.listDirectoryEntries
-import kotlin.io.path.name
-import kotlin.io.path.readText
 
 @HookItem(path = "脚本/脚本引擎", desc = "点击管理脚本")
 object JsScriptingHook : SwitchHookItem(),
@@ -40,18 +37,46 @@ object JsScriptingHook : SwitchHookItem(),
     // type=1040187441 qq music
     // type=1090519089 file
 
-    val rules = ConcurrentHashMap<String, String>()
+    override val insertTables = setOf("message")
+
+    // 脚本执行可能很慢，不应阻塞消息入库
+    override val insertAsync = true
+
+    // 所有处理数据包的脚本都声明了 cgiIds 时只订阅其并集，否则订阅全部
+    @Volatile
+    private var packetCgiIds: Set<Int> = emptySet()
+
+    override val cgiIds get() = packetCgiIds
 
     override fun onEnable() {
         WeDatabaseListenerApi.addListener(this)
 
+        JsScriptRuntime.onScriptsChanged = ::updatePacketSubscription
         WeLogger.i(TAG, "loading scripts...")
-        for (path in (PathUtils.moduleDataPath!! / "scripts").listDirectoryEntries("*.js")) {
-            val name = path.name
-            val content = runCatching { path.readText() }.getOrElse { continue }
-            WeLogger.i(TAG, "loaded script, name='${name}', length=${content.length}")
-            rules[name] = content
+        JsScriptRuntime.load(PathUtils.moduleDataPath!! / "scripts")
+    }
+
+    /**
+     * 没有脚本处理数据包时不注册拦截器，数据包分发钩子可以完全跳过这些 CGI
+     */
+    private fun updatePacketSubscription() {
+        val packetScripts = JsScriptRuntime.scripts().filter { it.handlesPackets }
+        if (packetScripts.isEmpty()) {
+            WePacketManager.removeInterceptor(this)
+            return
         }
+
+        val subscribeAll = packetScripts.any { it.cgiIds == null }
+        val union = if (subscribeAll) emptySet() else packetScripts.flatMapTo(HashSet()) { it.cgiIds!! }
+        // 所有脚本都声明了 cgiIds 但并集为空（如 `var cgiIds = []`）时没有任何数据包需要处理，
+        // 不能把空集合交给拦截器表，那会被当作订阅全部
+        if (!subscribeAll && union.isEmpty()) {
+            WePacketManager.removeInterceptor(this)
+            return
+        }
+
+        packetCgiIds = union
+        if (!WePacketManager.addInterceptor(this)) WePacketManager.refreshInterceptors()
     }
 
     // --- onMessage ---
@@ -76,12 +101,15 @@ object JsScriptingHook : SwitchHookItem(),
             "message received: talker=$talker type=$type content.length=${content.length}"
         )
 
-        JsEngine.executeAllOnMessage(rules, talker, content, type, isSend)
+        JsEngine.executeAllOnMessage(talker, content, type, isSend)
     }
 
     override fun onDisable() {
         WeLogger.i(TAG, "removing automation DB listener")
         WeDatabaseListenerApi.removeListener(this)
+        WePacketManager.removeInterceptor(this)
+        JsScriptRuntime.onScriptsChanged = null
+        JsScriptRuntime.unload()
     }
 
     // --- onRequest ---
@@ -95,9 +123,8 @@ object JsScriptingHook : SwitchHookItem(),
         try {
             val data = WeProtoData()
             data.fromBytes(reqBytes)
-            val json = data.toJsonObject()
-            val modifiedJson = JsEngine.executeAllOnRequest(uri, cgiId, json)
-            data.applyViewJson(modifiedJson, true)
+            // 未被修改的包不重新编码
+            if (!JsEngine.executeAllOnRequest(uri, cgiId, data)) return null
             return data.toPacketBytes()
         } catch (e: Exception) {
             WeLogger.e(TAG, e)
@@ -117,9 +144,7 @@ object JsScriptingHook : SwitchHookItem(),
         try {
             val data = WeProtoData()
             data.fromBytes(respBytes)
-            val json = data.toJsonObject()
-            val modifiedJson = JsEngine.executeAllOnResponse(uri, cgiId, json)
-            data.applyViewJson(modifiedJson, true)
+            if (!JsEngine.executeAllOnResponse(uri, cgiId, data)) return null
             return data.toPacketBytes()
         } catch (e: Exception) {
             WeLogger.e(TAG, e)
@@ -1,6 +1,7 @@
 package moe.ouom.wekit.hooks.items.system
 
 import moe.ouom.wekit.core.dsl.dexMethod
+import moe.ouom.wekit.core.dsl.eqStrings
 import moe.ouom.wekit.core.model.SwitchHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
@@ -8,7 +9,12 @@ import org.luckypray.dexkit.DexKitBridge
 
 @HookItem(path = "系统与隐私/禁用 WebView 安全警告", desc = "禁用 WebView 相关的安全警告提示")
 object DisableWebViewSafetyWarnings : SwitchHookItem(), IResolvesDex {
-    private val methodGetIsInterceptEnabled by dexMethod()
+    private val methodGetIsInterceptEnabled by dexMethod(
+        eqStrings(
+            "MicroMsg.WebViewHighRiskAdH5Interceptor",
+            "isInterceptEnabled, expt="
+        )
+    )
     private val methodGetIsUrlSafe by dexMethod()
 
     override fun onEnable() {
@@ -32,14 +38,7 @@ object DisableWebViewSafetyWarnings : SwitchHookItem(), IResolvesDex {
     override fun resolveDex(dexKit: DexKitBridge): Map<String, String> {
         val descriptors = mutableMapOf<String, String>()
 
-        methodGetIsInterceptEnabled.find(dexKit, descriptors) {
-            matcher {
-                usingEqStrings(
-                    "MicroMsg.WebViewHighRiskAdH5Interceptor",
-                    "isInterceptEnabled, expt="
-                )
-            }
-        }
+        methodGetIsInterceptEnabled.resolve(dexKit, descriptors)
 
         methodGetIsUrlSafe.find(dexKit, descriptors) {
             matcher {
@@ -2,6 +2,7 @@ package moe.ouom.wekit.hooks.items.system
 
 import dev.ujhhgtg.nameof.nameof
 import moe.ouom.wekit.core.dsl.dexMethod
+import moe.ouom.wekit.core.dsl.eqStrings
 import moe.ouom.wekit.core.model.SwitchHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
@@ -12,7 +13,13 @@ import org.luckypray.dexkit.DexKitBridge
 object DisableXposedDetection : SwitchHookItem(), IResolvesDex {
 
     private val TAG = nameof(DisableXposedDetection)
-    private val methodCheckStackTraceElements by dexMethod()
+    private val methodCheckStackTraceElements by dexMethod(
+        eqStrings(
+            "de.robv.android.xposed.XposedBridge",
+            "com.zte.heartyservice.SCC.FrameworkBridge",
+            searchPackages = listOf("com.tencent.mm.app")
+        )
+    )
 
     override fun onEnable() {
         methodCheckStackTraceElements.toDexMethod {
@@ -28,15 +35,7 @@ object DisableXposedDetection : SwitchHookItem(), IResolvesDex {
     override fun resolveDex(dexKit: DexKitBridge): Map<String, String> {
         val descriptors = mutableMapOf<String, String>()
 
-        methodCheckStackTraceElements.find(dexKit, descriptors) {
-            searchPackages("com.tencent.mm.app")
-            matcher {
-                usingEqStrings(
-                    "de.robv.android.xposed.XposedBridge",
-                    "com.zte.heartyservice.SCC.FrameworkBridge"
-                )
-            }
-        }
+        methodCheckStackTraceElements.resolve(dexKit, descriptors)
 
         return descriptors
     }
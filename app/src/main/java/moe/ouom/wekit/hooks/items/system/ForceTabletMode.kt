@@ -3,6 +3,7 @@ package moe.ouom.wekit.hooks.items.system
 import android.content.Context
 import androidx.compose.material3.Text
 import moe.ouom.wekit.core.dsl.dexMethod
+import moe.ouom.wekit.core.dsl.eqStrings
 import moe.ouom.wekit.core.model.SwitchHookItem
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.utils.annotation.HookItem
@@ -15,7 +16,7 @@ import org.luckypray.dexkit.DexKitBridge
 @HookItem(path = "系统与隐私/强制平板模式", desc = "让应用将当前设备识别为平板")
 object ForceTabletMode : SwitchHookItem(), IResolvesDex {
 
-    private val methodIsTablet by dexMethod()
+    private val methodIsTablet by dexMethod(eqStrings("Lenovo TB-9707F", "eebbk"))
 
     override fun onEnable() {
         methodIsTablet.toDexMethod {
@@ -30,11 +31,7 @@ object ForceTabletMode : SwitchHookItem(), IResolvesDex {
     override fun resolveDex(dexKit: DexKitBridge): Map<String, String> {
         val descriptors = mutableMapOf<String, String>()
 
-        methodIsTablet.find(dexKit, descriptors) {
-            matcher {
-                usingEqStrings("Lenovo TB-9707F", "eebbk")
-            }
-        }
+        methodIsTablet.resolve(dexKit, descriptors)
 
         return descriptors
     }
@@ -15,13 +15,13 @@ object RemoveArticleAds : SwitchHookItem(), IWePacketInterceptor {
 
     private val TAG = nameof(RemoveArticleAds)
 
+    override val cgiIds = setOf(21909)
+
     override fun onEnable() {
         WePacketManager.addInterceptor(this)
     }
 
     override fun onResponse(uri: String, cgiId: Int, respBytes: ByteArray): ByteArray? {
-        if (cgiId != 21909) return null
-
         try {
             val data = WeProtoData()
             data.fromBytes(respBytes)
@@ -0,0 +1,101 @@
+package moe.ouom.wekit.hooks.utils
+
+import android.app.Activity
+import android.app.Application
+import android.os.Bundle
+import android.os.Looper
+import dev.ujhhgtg.nameof.nameof
+import moe.ouom.wekit.core.model.ActivationTrigger
+import moe.ouom.wekit.core.model.BaseHookItem
+import moe.ouom.wekit.utils.HostInfo
+import moe.ouom.wekit.utils.logging.WeLogger
+
+/**
+ * 延迟激活调度器
+ *
+ * 按 [ActivationTrigger] 登记 HookItem，触发时机到来时在主线程调用激活回调
+ * Activity 触发使用 [Application.ActivityLifecycleCallbacks.onActivityPreCreated]，
+ * 保证 Hook 在目标 Activity 的 onCreate 之前安装；所有登记项触发后自动注销
+ */
+object DeferredActivator {
+
+    private val TAG = nameof(DeferredActivator)
+
+    private class Pending(
+        val item: BaseHookItem,
+        val activate: (BaseHookItem) -> Unit
+    )
+
+    private val lock = Any()
+    private val byActivity = HashMap<String, MutableList<Pending>>()
+    private val onIdle = mutableListOf<Pending>()
+
+    private var callbacksRegistered = false
+    private var idleHandlerQueued = false
+
+    fun schedule(
+        item: BaseHookItem,
+        trigger: ActivationTrigger,
+        activate: (BaseHookItem) -> Unit
+    ) {
+        val pending = Pending(item, activate)
+        when (trigger) {
+            is ActivationTrigger.Eager -> fire(pending)
+
+            is ActivationTrigger.OnActivityCreated -> synchronized(lock) {
+                byActivity.getOrPut(trigger.activityClassName) { mutableListOf() }.add(pending)
+                if (!callbacksRegistered) {
+                    callbacksRegistered = true
+                    HostInfo.application.registerActivityLifecycleCallbacks(lifecycleCallbacks)
+                }
+            }
+
+            is ActivationTrigger.OnMainIdle -> synchronized(lock) {
+                onIdle.add(pending)
+                if (!idleHandlerQueued) {
+                    idleHandlerQueued = true
+                    Looper.getMainLooper().queue.addIdleHandler {
+                        val items = synchronized(lock) {
+                            idleHandlerQueued = false
+                            onIdle.toList().also { onIdle.clear() }
+                        }
+                        items.forEach(::fire)
+                        false
+                    }
+                }
+            }
+        }
+        WeLogger.d(TAG, "scheduled ${item.path} on $trigger")
+    }
+
+    private fun fire(pending: Pending) {
+        runCatching {
+            WeLogger.i(TAG, "activating ${pending.item.path}")
+            pending.activate(pending.item)
+        }.onFailure { e ->
+            WeLogger.e(TAG, "error activating item ${pending.item.javaClass.simpleName}", e)
+        }
+    }
+
+    private val lifecycleCallbacks = object : Application.ActivityLifecycleCallbacks {
+        override fun onActivityPreCreated(activity: Activity, savedInstanceState: Bundle?) {
+            val items = synchronized(lock) {
+                val items = byActivity.remove(activity.javaClass.name) ?: return
+                if (byActivity.isEmpty()) {
+                    callbacksRegistered = false
+                    HostInfo.application.unregisterActivityLifecycleCallbacks(this)
+                }
+                items
+            }
+            items.forEach(::fire)
+        }
+
+        override fun onActivityCreated(activity: Activity, savedInstanceState: Bundle?) {}
+        override fun onActivityStarted(activity: Activity) {}
+        override fun onActivityResumed(activity: Activity) {}
+        override fun onActivityPaused(activity: Activity) {}
+        override fun onActivityStopped(activity: Activity) {}
+        override fun onActivitySaveInstanceState(activity: Activity, outState: Bundle) {}
+        override fun onActivityDestroyed(activity: Activity) {}
+    }
+}
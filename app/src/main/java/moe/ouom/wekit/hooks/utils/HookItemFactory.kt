@@ -1,15 +1,37 @@
 package moe.ouom.wekit.hooks.utils
 
 import moe.ouom.wekit.core.model.BaseHookItem
+import moe.ouom.wekit.core.model.HookItemDescriptor
+import moe.ouom.wekit.dexkit.cache.DexCacheManager
+import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.hooks.gen.HookItemEntryList
 
 object HookItemFactory {
 
-    // 使用 LinkedHashMap 保持 KSP 生成的顺序
-    private val ITEM_MAP: Map<Class<out BaseHookItem>, BaseHookItem> =
-        LinkedHashMap<Class<out BaseHookItem>, BaseHookItem>().apply {
-            HookItemEntryList.getAllHookItems().forEach { put(it.javaClass, it) }
-        }
+    // 保持 KSP 生成的顺序
+    val descriptors: List<HookItemDescriptor> get() = HookItemEntryList.descriptors
+
+    fun getDescriptorsForProcess(process: Int) = descriptors.filter { it.runsIn(process) }
+
+    fun getItems() = materialize(descriptors)
 
-    fun getItems() = ITEM_MAP.values.toList()
+    /**
+     * 仅实例化满足 [predicate] 的项，例如设置界面按分类取项
+     */
+    fun getItems(predicate: (HookItemDescriptor) -> Boolean) = materialize(descriptors.filter(predicate))
+
+    /**
+     * 启动时未开启的项不会实例化，也就没有从缓存加载 dex 描述；
+     * 在这里首次实例化时补上，缓存失效的交给后台适配，之后在设置中开启即可直接使用。
+     * 设置界面在主线程调用，[DexCacheManager.loadCachedItems] 只访问内存，写盘由后台适配结束时完成
+     */
+    private fun materialize(list: List<HookItemDescriptor>): List<BaseHookItem> {
+        val fresh = list.filter { it.resolvesDex && !it.isInstantiated }
+        val items = list.map { it.item }
+        if (fresh.isNotEmpty()) {
+            val broken = DexCacheManager.loadCachedItems(fresh.map { it.item as IResolvesDex })
+            if (broken.isNotEmpty()) HookItemsLoader.resolveLater(broken)
+        }
+        return items
+    }
 }
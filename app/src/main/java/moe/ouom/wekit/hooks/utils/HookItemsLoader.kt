@@ -1,26 +1,21 @@
 package moe.ouom.wekit.hooks.utils
 
 import android.content.pm.ApplicationInfo
-import android.os.Handler
-import android.os.Looper
 import dev.ujhhgtg.nameof.nameof
-import kotlinx.coroutines.CoroutineScope
-import kotlinx.coroutines.Dispatchers
-import kotlinx.coroutines.SupervisorJob
-import moe.ouom.wekit.utils.RuntimeConfig
 import moe.ouom.wekit.preferences.WePrefs
 import moe.ouom.wekit.constants.PreferenceKeys.NO_DEX_RESOLVE
+import moe.ouom.wekit.core.model.ActivationTrigger
 import moe.ouom.wekit.core.model.ApiHookItem
 import moe.ouom.wekit.core.model.BaseHookItem
 import moe.ouom.wekit.core.model.ClickableHookItem
 import moe.ouom.wekit.core.model.SwitchHookItem
+import moe.ouom.wekit.dexkit.DexResolveService
 import moe.ouom.wekit.dexkit.cache.DexCacheManager
 import moe.ouom.wekit.dexkit.intf.IResolvesDex
 import moe.ouom.wekit.utils.HostInfo
-import moe.ouom.wekit.ui.content.DexResolverDialogContent
-import moe.ouom.wekit.ui.utils.showComposeDialog
 import moe.ouom.wekit.utils.TargetProcessUtils
 import moe.ouom.wekit.utils.logging.WeLogger
+import moe.ouom.wekit.utils.profiling.HookProfiler
 
 object HookItemsLoader {
 
@@ -34,38 +29,38 @@ object HookItemsLoader {
     /**
      * 加载并判断哪些需要加载
      * 策略：
-     * 1. 识别出哪些缓存过期，哪些缓存有效
-     * 2. 尝试加载有效缓存，若加载失败则归入“待修复列表”
-     * 3. 对“待修复列表”启动异步线程弹出 Dialog
-     * 4. 仅筛选出那些配置开启且缓存就绪（或不需要缓存）的项进行最终加载
+     * 1. 一次遍历校验缓存并加载有效缓存，过期、缺失或加载失败的项归入“待修复列表”
+     * 2. 对“待修复列表”在后台立即开始适配，完成一项热加载一项
+     * 3. 仅筛选出那些配置开启且缓存就绪（或不需要缓存）的项进行最终加载
+     * 4. 声明了延迟激活时机的项只登记，时机到来时再安装 Hook
+     * 未开启的项既不实例化也不校验缓存，在设置界面首次取出时再处理，见 [HookItemFactory]
      */
     fun loadHookItems(
         process: Int,
         appInfo: ApplicationInfo
     ) {
-        // 获取全量 HookItem 列表
-        val allHookItems = HookItemFactory.getItems()
+        // 只取本进程的描述，其他进程的项既不实例化也不校验缓存
+        val descriptors = HookItemFactory.getDescriptorsForProcess(process)
+
+        loadedProcess = process
+
+        // 一次遍历读取开关状态，只有开启或可能常驻的项才会被实例化
+        val allHookItems = descriptors
+            .filter { it.mayRunWhenDisabled || WePrefs.getBoolOrFalse(it.path) }
+            .map { it.item }
 
         // 筛选出所有需要进行 Dex 查找的项
         val allDexResolvingItems = allHookItems.filterIsInstance<IResolvesDex>()
 
-        // 检查哪些项的缓存已经过期
-        val outdatedItems = DexCacheManager.getOutdatedItems(allDexResolvingItems)
-
-        // 筛选出理论上缓存有效的项
-        val potentiallyValidItems = allDexResolvingItems.filterNot { outdatedItems.contains(it) }
+        // 单次遍历完成缓存校验与加载，返回 过期/缺失/损坏 的项
+        val allBrokenItems = DexCacheManager.loadCachedItems(allDexResolvingItems)
 
         WeLogger.i(
             TAG,
-            "found ${outdatedItems.size} outdated items, ${potentiallyValidItems.size} potentially valid items"
+            "found ${allBrokenItems.size} broken items, ${allDexResolvingItems.size - allBrokenItems.size} loaded from cache, " +
+                    "${descriptors.size - allHookItems.size} disabled items left uninitialized"
         )
 
-        // 尝试从缓存加载 Descriptor，返回加载失败的项
-        val corruptedItems = loadDescriptorsFromCache(potentiallyValidItems)
-
-        // 汇总所有不可用的项
-        val allBrokenItems = (outdatedItems + corruptedItems).distinct()
-
         // 如果存在不可用的项，根据配置决定是否启动修复流程
         if (allBrokenItems.isNotEmpty()) {
             handleBrokenItemsAsync(process, appInfo, allBrokenItems)
@@ -75,34 +70,16 @@ object HookItemsLoader {
         val enabledItems = mutableListOf<BaseHookItem>()
 
         allHookItems.forEach { hookItem ->
-            // 如果该项需要 Dex 查找，且属于 损坏/过期 列表，则直接跳过，不尝试加载
+            // 如果该项需要 Dex 查找，且属于 损坏/过期 列表，则直接跳过，待后台适配完成后再热加载
             if (hookItem is IResolvesDex && allBrokenItems.contains(hookItem)) {
                 WeLogger.w(
                     TAG,
-                    "Skipping ${(hookItem as? BaseHookItem)?.path} due to missing or invalid cache"
+                    "Deferring ${(hookItem as? BaseHookItem)?.path} due to missing or invalid cache"
                 )
                 return@forEach
             }
 
-            var isEnabled = false
-            when (hookItem) {
-                is ClickableHookItem -> {
-                    hookItem.setEnabledSilently(WePrefs.getBoolOrFalse(hookItem.path))
-                    isEnabled =
-                        (hookItem.isEnabled && process == hookItem.targetProcess) || hookItem.alwaysEnable
-                }
-
-                is SwitchHookItem -> {
-                    hookItem.setEnabledSilently(WePrefs.getBoolOrFalse(hookItem.path))
-                    isEnabled = hookItem.isEnabled && process == hookItem.targetProcess
-                }
-
-                is ApiHookItem -> {
-                    isEnabled = process == hookItem.targetProcess
-                }
-            }
-
-            if (isEnabled) {
+            if (shouldEnable(hookItem)) {
                 enabledItems.add(hookItem)
             }
         }
@@ -111,6 +88,36 @@ object HookItemsLoader {
         loadAllItems(enabledItems)
     }
 
+    /**
+     * 启动后才实例化的项（如在设置界面中首次取出）缓存失效时，交给后台适配
+     */
+    fun resolveLater(items: List<IResolvesDex>) {
+        val process = loadedProcess ?: return
+        handleBrokenItemsAsync(process, HostInfo.appInfo, items)
+    }
+
+    @Volatile
+    private var loadedProcess: Int? = null
+
+    // 传入的项已按进程筛选
+    private fun shouldEnable(hookItem: BaseHookItem): Boolean {
+        return when (hookItem) {
+            is ClickableHookItem -> {
+                hookItem.setEnabledSilently(WePrefs.getBoolOrFalse(hookItem.path))
+                hookItem.isEnabled || hookItem.alwaysEnable
+            }
+
+            is SwitchHookItem -> {
+                hookItem.setEnabledSilently(WePrefs.getBoolOrFalse(hookItem.path))
+                hookItem.isEnabled
+            }
+
+            is ApiHookItem -> true
+
+            else -> false
+        }
+    }
+
     private fun handleBrokenItemsAsync(
         process: Int,
         appInfo: ApplicationInfo,
@@ -126,93 +133,25 @@ object HookItemsLoader {
             return
         }
 
-        WeLogger.i(
-            TAG,
-            "launching background thread to repair ${brokenItems.size} items"
-        )
-
-        Thread {
-            val startTime = System.currentTimeMillis()
-            val timeoutMs = 90 * 1000L // 90 秒超时
-
-            while (System.currentTimeMillis() - startTime < timeoutMs) {
-                // 只有主进程才处理 UI 弹窗
-                if (process != TargetProcessUtils.PROC_MAIN) return@Thread
-
-                try {
-                    Thread.sleep(200)
-                } catch (_: InterruptedException) {
-                    return@Thread
-                }
-
-                val activity = RuntimeConfig.getLauncherUiActivity()
-                if (activity != null) {
-                    // 确保 Activity 已经初始化完成
-                    runCatching {
-                        Thread.sleep(1500)
-                    }
-
-                    Handler(Looper.getMainLooper()).post {
-                        showComposeDialog(activity) {
-                            DexResolverDialogContent(
-                                activity,
-                                brokenItems,
-                                appInfo,
-                                CoroutineScope(Dispatchers.Main + SupervisorJob()),
-                                onDismiss = onDismiss
-                            )
-                        }
-                    }
-                    return@Thread
-                }
-            }
-            WeLogger.e(
-                TAG,
-                "wait for main activity timed out, dex resolution dialog skipped"
-            )
-        }.start()
-    }
+        // 只有主进程负责适配，其他进程下次启动时直接读取缓存
+        if (process != TargetProcessUtils.PROC_MAIN) return
 
-    /**
-     * 从缓存加载 descriptor
-     * @return 加载失败的项列表
-     */
-    private fun loadDescriptorsFromCache(items: List<IResolvesDex>): List<IResolvesDex> {
-        val failedItems = mutableListOf<IResolvesDex>()
-
-        items.forEach { item ->
-            try {
-                val cache = DexCacheManager.loadItemCache(item)
-                if (cache != null) {
-                    item.loadFromCache(cache)
-                } else {
-                    WeLogger.w(
-                        TAG,
-                        "Cache is null for ${(item as? BaseHookItem)?.path}"
-                    )
-                    failedItems.add(item)
-                }
-            } catch (e: Exception) {
-                // 捕获所有异常，视为缓存损坏
-                val path = (item as? BaseHookItem)?.path ?: "unknown"
-                WeLogger.e(TAG, "Cache load failed for $path", e)
-
-                // 尝试清理坏掉的缓存
-                runCatching {
-                    DexCacheManager.deleteCache(path)
-                }
-                failedItems.add(item)
+        // 每一项适配完成后立即热加载，无需重启宿主
+        DexResolveService.start(appInfo, brokenItems) { item ->
+            val hookItem = item as? BaseHookItem ?: return@start
+            if (shouldEnable(hookItem)) {
+                WeLogger.i(TAG, "hot-loading ${hookItem.path}")
+                // 适配通常在宿主界面已创建后才完成，延迟激活的时机可能已经错过，这里直接激活
+                hookItem.enable()
             }
         }
-
-        return failedItems
     }
 
     private fun loadAllItems(items: List<BaseHookItem>) {
+        val start = System.nanoTime()
         items.forEach { hookItem ->
             runCatching {
-                WeLogger.i(TAG, "initializing ${hookItem.path}")
-                hookItem.enable()
+                activate(hookItem)
             }.onFailure { e ->
                 WeLogger.e(
                     TAG,
@@ -221,5 +160,28 @@ object HookItemsLoader {
                 )
             }
         }
+        HookProfiler.recordLoader(start, System.nanoTime() - start)
+    }
+
+    /**
+     * 按 [BaseHookItem.activationTrigger] 立即激活或登记延迟激活
+     */
+    private fun activate(hookItem: BaseHookItem) {
+        val trigger = hookItem.activationTrigger()
+        if (trigger == ActivationTrigger.Eager) {
+            WeLogger.i(TAG, "initializing ${hookItem.path}")
+            hookItem.enable()
+            return
+        }
+
+        DeferredActivator.schedule(hookItem, trigger) { item ->
+            // 等待期间用户可能已在设置中关闭该项
+            val stillEnabled = when (item) {
+                is ClickableHookItem -> item.isEnabled || item.alwaysEnable
+                is SwitchHookItem -> item.isEnabled
+                else -> true
+            }
+            if (stillEnabled) item.enable()
+        }
     }
-}
\ No newline at end of file
+}
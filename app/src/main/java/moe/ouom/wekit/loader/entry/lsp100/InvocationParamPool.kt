@@ -0,0 +1,91 @@
+package moe.ouom.wekit.loader.entry.lsp100
+
+import io.github.libxposed.api.annotations.XposedApiExact
+import moe.ouom.wekit.loader.entry.lsp100.Lsp100HookWrapper.InvocationParamWrapper
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * [InvocationParamWrapper] 的线程内对象池
+ *
+ * before 中取出，after 结束时归还；被 Hook 的方法内部可能再触发其他 Hook，
+ * 因此每个线程按栈保存至多 [MAX_POOLED] 个实例，嵌套更深时临时新建、归还时丢弃。
+ * 实例归还后其 before/after 均被清空、generation 递增，回调在调用结束后继续访问会被 checkLifecycle 拒绝；
+ * 包装实例与 extras 数组均被复用，但每次调用仍会创建一个只含代次的 ParamView：
+ * 回调可能把它保存到调用结束之后，只有每次调用一个新的对象才能在实例被复用时可靠地拒绝旧引用，
+ * 因此稳定运行时每次调用仍有一次小对象分配，计入 [Stats.viewsAllocated]
+ */
+@XposedApiExact(100)
+internal object InvocationParamPool {
+
+    private const val MAX_POOLED = 8
+
+    class Stats(
+        val acquired: Long,
+        val wrappersAllocated: Long,
+        val extrasAllocated: Long,
+        val viewsAllocated: Long,
+    )
+
+    private class Stack {
+        val items = arrayOfNulls<InvocationParamWrapper>(MAX_POOLED)
+        var size = 0
+    }
+
+    private val stacks = object : ThreadLocal<Stack>() {
+        override fun initialValue() = Stack()
+    }
+
+    /**
+     * 分配统计，仅用于调试；稳定运行后 [Stats.wrappersAllocated] 与 [Stats.extrasAllocated]
+     * 应停止增长，[Stats.acquired] 与 [Stats.viewsAllocated] 随调用次数同步增长
+     */
+    @Volatile
+    var isAllocationTrackingEnabled = false
+
+    private val acquired = AtomicLong()
+    private val wrappersAllocated = AtomicLong()
+    private val extrasAllocated = AtomicLong()
+    private val viewsAllocated = AtomicLong()
+
+    val stats: Stats
+        get() = Stats(acquired.get(), wrappersAllocated.get(), extrasAllocated.get(), viewsAllocated.get())
+
+    fun resetStats() {
+        acquired.set(0)
+        wrappersAllocated.set(0)
+        extrasAllocated.set(0)
+        viewsAllocated.set(0)
+    }
+
+    fun acquire(): InvocationParamWrapper {
+        val stack = stacks.get()!!
+        val param = if (stack.size > 0) {
+            val i = --stack.size
+            stack.items[i]!!.also { stack.items[i] = null }
+        } else {
+            if (isAllocationTrackingEnabled) wrappersAllocated.incrementAndGet()
+            InvocationParamWrapper()
+        }
+        if (isAllocationTrackingEnabled) acquired.incrementAndGet()
+        check(!param.inUse) { "invocation param acquired twice" }
+        param.inUse = true
+        return param
+    }
+
+    fun release(param: InvocationParamWrapper) {
+        check(param.inUse) { "invocation param released twice" }
+        param.reset()
+        val stack = stacks.get()!!
+        if (stack.size < MAX_POOLED) {
+            stack.items[stack.size++] = param
+        }
+    }
+
+    internal fun onExtrasAllocated() {
+        if (isAllocationTrackingEnabled) extrasAllocated.incrementAndGet()
+    }
+
+    internal fun onViewAllocated() {
+        if (isAllocationTrackingEnabled) viewsAllocated.incrementAndGet()
+    }
+}
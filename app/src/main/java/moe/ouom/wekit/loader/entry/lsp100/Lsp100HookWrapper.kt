@@ -20,6 +20,7 @@ object Lsp100HookWrapper {
 
     var self: XposedModule? = null
 
+    // emptyArray() 每次都会新建数组，归还参数对象时复用这一个
     private val EMPTY_CALLBACKS = emptyArray<CallbackWrapper>()
     private val DEFAULT_PROXY: Class<*> = Lsp100CallbackProxy.P0000000050::class.java
     private const val DEFAULT_PRIORITY = 50
@@ -28,8 +29,16 @@ object Lsp100HookWrapper {
     private val sHookedMethods: MutableSet<Member> = ConcurrentHashMap.newKeySet()
     private val sRegistryWriteLock = Any()
 
-    private val sCallbackRegistry =
-        ConcurrentHashMap<Int, ConcurrentHashMap<Class<*>, ConcurrentHashMap<Member, CallbackListHolder>>>()
+    /**
+     * 生成的代理类按优先级区分，调用时只带 tag (即优先级)，同一 tag 下的所有成员共用一个槽位。
+     * 不同优先级通常只有个位数，槽位数组写时复制，热路径线性查找即可，不装箱也不加锁
+     */
+    class TagSlot(val tag: Int) {
+        val holders = ConcurrentHashMap<Member, CallbackListHolder>()
+    }
+
+    @Volatile
+    private var sTagSlots: Array<TagSlot> = emptyArray()
 
     class CallbackWrapper(
         val callback: IHookBridge.IMemberHookCallback,
@@ -37,12 +46,27 @@ object Lsp100HookWrapper {
         val tag: Int,
     )
 
+    /**
+     * 写入方在 [lock] 下整体替换 [callbacks]，从不原地修改数组，
+     * 因此分发时一次 volatile 读拿到的数组就是稳定的快照
+     */
     class CallbackListHolder {
         val lock = Any()
         @Volatile
         var callbacks: Array<CallbackWrapper> = emptyArray()
     }
 
+    private fun slotFor(tag: Int): TagSlot? {
+        for (slot in sTagSlots) {
+            if (slot.tag == tag) return slot
+        }
+        return null
+    }
+
+    // 只在 sRegistryWriteLock 下调用
+    private fun getOrCreateSlot(tag: Int): TagSlot =
+        slotFor(tag) ?: TagSlot(tag).also { sTagSlots = sTagSlots + it }
+
     fun hookAndRegisterMethodCallback(
         method: Member,
         callback: IHookBridge.IMemberHookCallback,
@@ -57,13 +81,10 @@ object Lsp100HookWrapper {
 
         val wrapper = CallbackWrapper(callback, priority, tag)
         val handle = UnhookHandle(wrapper, method)
-        val declaringClass = method.declaringClass
 
         val holder: CallbackListHolder
         synchronized(sRegistryWriteLock) {
-            val taggedRegistry = sCallbackRegistry.getOrPut(tag) { ConcurrentHashMap() }
-            val callbackList = taggedRegistry.getOrPut(declaringClass) { ConcurrentHashMap() }
-            holder = callbackList.getOrPut(method) {
+            holder = getOrCreateSlot(tag).holders.getOrPut(method) {
                 @Suppress("UNCHECKED_CAST")
                 when (method) {
                     is Method -> self!!.hook(method, tag, proxyClass as Class<out XposedInterface.Hooker>)
@@ -90,71 +111,100 @@ object Lsp100HookWrapper {
     }
 
     fun removeMethodCallback(method: Member, callback: CallbackWrapper) {
-        val taggedRegistry = sCallbackRegistry[callback.tag] ?: return
-        val callbackList = taggedRegistry[method.declaringClass] ?: return
-        val holder = callbackList[method] ?: return
+        val holder = slotFor(callback.tag)?.holders?.get(method) ?: return
         synchronized(holder.lock) {
             holder.callbacks = holder.callbacks.filter { it !== callback }.toTypedArray()
         }
     }
 
     fun isMethodCallbackRegistered(method: Member, callback: CallbackWrapper): Boolean {
-        val taggedRegistry = sCallbackRegistry[callback.tag] ?: return false
-        val callbackList = taggedRegistry[method.declaringClass] ?: return false
-        val holder = callbackList[method] ?: return false
+        val holder = slotFor(callback.tag)?.holders?.get(method) ?: return false
         return holder.callbacks.any { it === callback }
     }
 
-    private fun copyCallbacks(holder: CallbackListHolder?): Array<CallbackWrapper> {
-        holder ?: return EMPTY_CALLBACKS
-        return synchronized(holder.lock) { holder.callbacks.clone() }
-    }
-
-    class InvocationParamWrapper : IHookBridge.IMemberHookParam {
+    /**
+     * 由 [InvocationParamPool] 复用，只在一次调用的 before 开始到 after 结束之间有效
+     *
+     * 回调拿到的是每次调用单独创建的 [ParamView]，它记住创建时的 [generation]；
+     * 实例归还时 generation 递增，回调保留的旧 ParamView 在实例被下一次调用取出后访问同样会被拒绝，
+     * 不会读写到其他调用的参数与结果
+     */
+    class InvocationParamWrapper {
+        internal var inUse = false
+        internal var generation = 0
         var index: Int = -1
         var isAfter: Boolean = false
         var before: XposedInterface.BeforeHookCallback? = null
         var after: XposedInterface.AfterHookCallback? = null
-        var callbacks: Array<CallbackWrapper> = emptyArray()
+        var callbacks: Array<CallbackWrapper> = EMPTY_CALLBACKS
         var extras: Array<Any?>? = null
+        internal var view: ParamView? = null
 
-        override val member: Member get() = checkLifecycle().run {
-            if (isAfter) after!!.member else before!!.member
+        // 每次调用唯一的一次分配，见 InvocationParamPool 的说明
+        internal fun newView(): ParamView {
+            InvocationParamPool.onViewAllocated()
+            return ParamView(generation).also { view = it }
         }
 
-        override val thisObject: Any? get() = checkLifecycle().run {
-            if (isAfter) after!!.thisObject else before!!.thisObject
-        }
-
-        override val args: Array<Any?> get() = checkLifecycle().run {
-            if (isAfter) after!!.args else before!!.args
-        }
+        inner class ParamView internal constructor(private val generation: Int) : IHookBridge.IMemberHookParam {
 
-        override var result: Any?
-            get() = checkLifecycle().run { if (isAfter) after!!.result else null }
-            set(value) = checkLifecycle().run {
-                if (isAfter) after!!.setResult(value) else before!!.returnAndSkip(value)
+            override val member: Member get() = checkLifecycle(generation).run {
+                if (isAfter) after!!.member else before!!.member
             }
 
-        override var throwable: Throwable?
-            get() = checkLifecycle().run { if (isAfter) after!!.throwable else null }
-            set(value) = checkLifecycle().run {
-                requireNotNull(value)
-                if (isAfter) after!!.setThrowable(value) else before!!.throwAndSkip(value)
+            override val thisObject: Any? get() = checkLifecycle(generation).run {
+                if (isAfter) after!!.thisObject else before!!.thisObject
             }
 
-        override var extra: Any?
-            get() = checkLifecycle().run { extras?.get(index) }
-            set(value) = checkLifecycle().run {
-                if (extras == null) extras = arrayOfNulls(callbacks.size)
-                extras!![index] = value
+            override val args: Array<Any?> get() = checkLifecycle(generation).run {
+                if (isAfter) after!!.args else before!!.args
             }
 
-        private fun checkLifecycle() {
-            if ((isAfter && after == null) || (!isAfter && before == null)) {
+            override var result: Any?
+                get() = checkLifecycle(generation).run { if (isAfter) after!!.result else null }
+                set(value) = checkLifecycle(generation).run {
+                    if (isAfter) after!!.setResult(value) else before!!.returnAndSkip(value)
+                }
+
+            override var throwable: Throwable?
+                get() = checkLifecycle(generation).run { if (isAfter) after!!.throwable else null }
+                set(value) = checkLifecycle(generation).run {
+                    requireNotNull(value)
+                    if (isAfter) after!!.setThrowable(value) else before!!.throwAndSkip(value)
+                }
+
+            override var extra: Any?
+                get() = checkLifecycle(generation).run { extras?.get(index) }
+                set(value) = checkLifecycle(generation).run {
+                    // 复用上次调用留下的数组，容量不足时才重新分配
+                    val current = extras
+                    val array = if (current != null && current.size >= callbacks.size) {
+                        current
+                    } else {
+                        InvocationParamPool.onExtrasAllocated()
+                        arrayOfNulls<Any?>(callbacks.size).also { extras = it }
+                    }
+                    array[index] = value
+                }
+        }
+
+        private fun checkLifecycle(viewGeneration: Int) {
+            if (!inUse || viewGeneration != generation || (isAfter && after == null) || (!isAfter && before == null)) {
                 throw IllegalStateException("attempt to access hook param after destroyed")
             }
         }
+
+        internal fun reset() {
+            extras?.fill(null)
+            index = -1
+            isAfter = false
+            callbacks = EMPTY_CALLBACKS
+            before = null
+            after = null
+            view = null
+            generation++
+            inUse = false
+        }
     }
 
     object Lsp100HookAgent : XposedInterface.Hooker {
@@ -164,20 +214,23 @@ object Lsp100HookWrapper {
             callback: XposedInterface.BeforeHookCallback,
             tag: Int,
         ): InvocationParamWrapper? {
-            val taggedRegistry = sCallbackRegistry[tag] ?: return null
-            val member = callback.member
-            val holder = taggedRegistry[member.declaringClass]?.get(member) ?: return null
-            val callbacks = copyCallbacks(holder).takeIf { it.isNotEmpty() } ?: return null
+            val holder = slotFor(tag)?.holders?.get(callback.member) ?: return null
+            val callbacks = holder.callbacks
+            if (callbacks.isEmpty()) return null
 
-            val param = InvocationParamWrapper().apply {
+            val param = InvocationParamPool.acquire().apply {
                 this.callbacks = callbacks
                 this.before = callback
                 this.isAfter = false
             }
+            val view = param.newView()
             for (i in callbacks.indices) {
                 param.index = i
-                runCatching { callbacks[i].callback.beforeHookedMember(param) }
-                    .onFailure { self!!.log(it.toString(), it) }
+                try {
+                    callbacks[i].callback.beforeHookedMember(view)
+                } catch (t: Throwable) {
+                    self!!.log(t.toString(), t)
+                }
             }
             param.index = -1
             return param
@@ -192,15 +245,16 @@ object Lsp100HookWrapper {
             param ?: return
             param.isAfter = true
             param.after = callback
+            val view = param.view!!
             for (i in param.callbacks.indices.reversed()) {
                 param.index = i
-                runCatching { param.callbacks[i].callback.afterHookedMember(param) }
-                    .onFailure { self!!.log(it.toString(), it) }
+                try {
+                    param.callbacks[i].callback.afterHookedMember(view)
+                } catch (t: Throwable) {
+                    self!!.log(t.toString(), t)
+                }
             }
-            param.callbacks = emptyArray()
-            param.extras = null
-            param.before = null
-            param.after = null
+            InvocationParamPool.release(param)
         }
     }
 
@@ -50,7 +50,10 @@ class Lsp100ProxyClassMaker private constructor() {
 
         sProxyClassLoader?.runCatching { loadClass(className) }?.getOrNull()?.let { return it }
 
-        val dex = makeClassByteCodeForPriority(priority)
+        // 生成 dex 需要加载整套 dexlib2，优先复用预生成或之前进程持久化的结果
+        val shortName = priorityToShortName(priority)
+        val dex = ProxyDexCache.load(shortName)
+            ?: makeClassByteCodeForPriority(priority).also { ProxyDexCache.store(shortName, it) }
         return loadProxyClassForPriority(className, dex)
     }
 
@@ -153,7 +156,7 @@ class Lsp100ProxyClassMaker private constructor() {
             }
         }
 
-        private fun priorityToShortName(priority: Int): String =
+        internal fun priorityToShortName(priority: Int): String =
             if (priority >= 0) "P%010d".format(priority)
             else "N%010d".format(-priority.toLong())
 
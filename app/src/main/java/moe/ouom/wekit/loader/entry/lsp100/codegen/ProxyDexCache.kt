@@ -0,0 +1,127 @@
+package moe.ouom.wekit.loader.entry.lsp100.codegen
+
+import android.app.Application
+import android.util.Log
+import moe.ouom.wekit.BuildConfig
+import moe.ouom.wekit.utils.HostInfo
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
+import kotlin.io.path.createDirectories
+import kotlin.io.path.createTempFile
+import kotlin.io.path.deleteRecursively
+import kotlin.io.path.div
+import kotlin.io.path.exists
+import kotlin.io.path.isDirectory
+import kotlin.io.path.listDirectoryEntries
+import kotlin.io.path.moveTo
+import kotlin.io.path.name
+import kotlin.io.path.readBytes
+import kotlin.io.path.readText
+import kotlin.io.path.writeBytes
+import kotlin.io.path.writeText
+
+/**
+ * 代理 Hook 类的 dex 持久化缓存
+ *
+ * 每个优先级对应的代理类只取决于模块构建本身，生成一次后即可在所有宿主进程、所有启动间复用。
+ * 查找顺序: APK assets 中预生成的 dex → 缓存目录中按构建分目录保存的 dex → 现场生成后写回缓存目录
+ *
+ * 缓存的 dex 会被注入宿主进程执行，因此只存放在宿主的内部存储中，不使用外部存储：
+ * ```
+ * codeCacheDir/lsp100_proxy/<versionCode>-<gitHash>-<buildTimestamp>/<P0000000050>.dex
+ * noBackupFilesDir/lsp100_proxy/<versionCode>-<gitHash>-<buildTimestamp>/<P0000000050>.sha256
+ * ```
+ * 加载前校验 SHA-256 与单独保存的摘要一致，不一致时丢弃并重新生成；
+ * 其他构建留下的目录在首次写入时清理
+ */
+internal object ProxyDexCache {
+
+    private const val TAG = "ProxyDexCache"
+
+    private const val CACHE_DIR_NAME = "lsp100_proxy"
+    private const val ASSET_DIR = "assets/lsp100_proxy"
+    private const val DEX_SUFFIX = ".dex"
+    private const val DIGEST_SUFFIX = ".sha256"
+
+    private val BUILD_KEY = "${BuildConfig.VERSION_CODE}-${BuildConfig.GIT_HASH}-${BuildConfig.BUILD_TIMESTAMP}"
+
+    // 宿主 Application 尚未就绪时无法取得内部存储目录，此时只是不缓存
+    private val dexDir: Path?
+        get() = buildDirUnder { it.codeCacheDir.toPath() }
+
+    private val digestDir: Path?
+        get() = buildDirUnder { it.noBackupFilesDir.toPath() }
+
+    private inline fun buildDirUnder(root: (Application) -> Path): Path? =
+        runCatching {
+            (root(HostInfo.application) / CACHE_DIR_NAME / BUILD_KEY).also { it.createDirectories() }
+        }.getOrNull()
+
+    fun load(shortName: String): ByteArray? =
+        loadFromAssets(shortName) ?: loadFromCache(shortName)
+
+    private fun loadFromAssets(shortName: String): ByteArray? =
+        runCatching {
+            ProxyDexCache::class.java.classLoader
+                ?.getResourceAsStream("$ASSET_DIR/$shortName$DEX_SUFFIX")
+                ?.use { it.readBytes() }
+        }.getOrNull()?.takeIf(::isDex)
+
+    private fun loadFromCache(shortName: String): ByteArray? {
+        val file = dexDir?.let { it / "$shortName$DEX_SUFFIX" } ?: return null
+        val digestFile = digestDir?.let { it / "$shortName$DIGEST_SUFFIX" } ?: return null
+        if (!file.exists() || !digestFile.exists()) return null
+        val dex = runCatching { file.readBytes() }.getOrNull()
+        val expected = runCatching { digestFile.readText().trim() }.getOrNull()
+        if (dex == null || !isDex(dex) || expected == null || sha256(dex) != expected) {
+            Log.w(TAG, "discarding unverified proxy dex ${file.name}")
+            return null
+        }
+        return dex
+    }
+
+    /**
+     * 先写摘要再原子替换 dex，多个宿主进程同时生成时以最后一个为准，内容相同
+     */
+    fun store(shortName: String, dex: ByteArray) {
+        val dir = dexDir ?: return
+        val digests = digestDir ?: return
+        try {
+            cleanStaleBuilds(dir)
+            cleanStaleBuilds(digests)
+            atomicWrite(digests, "$shortName$DIGEST_SUFFIX") { it.writeText(sha256(dex)) }
+            atomicWrite(dir, "$shortName$DEX_SUFFIX") { it.writeBytes(dex) }
+        } catch (e: Exception) {
+            Log.w(TAG, "failed to persist proxy dex $shortName", e)
+        }
+    }
+
+    private inline fun atomicWrite(dir: Path, name: String, write: (Path) -> Unit) {
+        val tmp = createTempFile(dir, name, ".tmp")
+        write(tmp)
+        tmp.moveTo(dir / name, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+    }
+
+    private val cleanedRoots = HashSet<Path>()
+
+    @OptIn(kotlin.io.path.ExperimentalPathApi::class)
+    private fun cleanStaleBuilds(dir: Path) {
+        val root = dir.parent ?: return
+        synchronized(cleanedRoots) {
+            if (!cleanedRoots.add(root)) return
+        }
+        runCatching {
+            root.listDirectoryEntries()
+                .filter { it.isDirectory() && it.name != BUILD_KEY }
+                .forEach { it.deleteRecursively() }
+        }
+    }
+
+    private fun sha256(bytes: ByteArray) =
+        MessageDigest.getInstance("SHA-256").digest(bytes).joinToString("") { "%02x".format(it) }
+
+    private fun isDex(bytes: ByteArray) =
+        bytes.size > 0x70 && bytes[0] == 'd'.code.toByte() && bytes[1] == 'e'.code.toByte() &&
+                bytes[2] == 'x'.code.toByte() && bytes[3] == '\n'.code.toByte()
+}
@@ -8,10 +8,13 @@ import de.robv.android.xposed.XC_MethodHook
 import de.robv.android.xposed.XposedHelpers
 import dev.ujhhgtg.nameof.nameof
 import moe.ouom.wekit.constants.PackageNames
+import moe.ouom.wekit.dexkit.DexResolveService
 import moe.ouom.wekit.dexkit.cache.DexCacheManager
+import moe.ouom.wekit.hooks.utils.HookItemFactory
 import moe.ouom.wekit.hooks.utils.HookItemsLoader
 import moe.ouom.wekit.loader.utils.ActivityProxy
 import moe.ouom.wekit.loader.utils.ParcelableFixer
+import moe.ouom.wekit.preferences.WeConfig
 import moe.ouom.wekit.utils.ModuleRes
 import moe.ouom.wekit.utils.RuntimeConfig
 import moe.ouom.wekit.utils.TargetProcessUtils
@@ -28,7 +31,10 @@ object WeLauncher {
         WeLogger.i(TAG, "ParcelableFixer installed")
 
         val pi = context.packageManager.getPackageInfo(context.packageName, 0)
-        DexCacheManager.init(requireNotNull(pi.versionName))
+        DexCacheManager.init(
+            requireNotNull(pi.versionName),
+            HookItemFactory.descriptors.filter { it.resolvesDex }.map { it.path }
+        )
 
         if (processType == TargetProcessUtils.PROC_MAIN) {
             val appContext = context.applicationContext ?: context
@@ -54,6 +60,7 @@ object WeLauncher {
             override fun afterHookedMethod(param: MethodHookParam) {
                 val activity = param.thisObject as Activity
                 ModuleRes.init(activity, PackageNames.THIS)
+                WeConfig.syncWithOuterProcess()
             }
         })
 
@@ -68,6 +75,7 @@ object WeLauncher {
                     val sharedPreferences =
                         activity.getSharedPreferences("com.tencent.mm_preferences", 0)
                     RuntimeConfig.setMmPrefs(sharedPreferences)
+                    DexResolveService.onLauncherUiCreated(activity)
                 }
             })
     }
@@ -115,6 +115,11 @@ class MmkvPrefsImpl(name: String) : WePrefs() {
 
     override fun getAll(): Map<String, *> = mShadowMap
 
+    /**
+     * 同步其他进程写入的内容，MMKV 只在本进程访问实例时才会自行检查
+     */
+    fun checkContentChangedByOuterProcess() = mmkvInstance.checkContentChangedByOuterProcess()
+
     override fun getString(key: String): String? = mmkvInstance.getString(key, null)
 
     override fun getString(key: String, defValue: String?): String? =
@@ -175,6 +180,7 @@ class MmkvPrefsImpl(name: String) : WePrefs() {
                 ObjectOutputStream(outputStream).writeObject(obj)
                 mmkvInstance.putBytes(key, outputStream.toByteArray())
                 mmkvInstance.putInt(key + TYPE_SUFFIX, TYPE_SERIALIZABLE)
+                notifyChanged(key)
             }.onFailure { throw RuntimeException(it) }
 
             else -> throw IllegalArgumentException("unsupported type ${obj::class}")
@@ -185,36 +191,42 @@ class MmkvPrefsImpl(name: String) : WePrefs() {
     override fun putString(key: String, value: String?): WePrefs {
         mmkvInstance.putString(key, value)
         mmkvInstance.putInt(key + TYPE_SUFFIX, TYPE_STRING)
+        notifyChanged(key)
         return this
     }
 
     override fun putStringSet(key: String, values: Set<String>?): WePrefs {
         mmkvInstance.putStringSet(key, values)
         mmkvInstance.putInt(key + TYPE_SUFFIX, TYPE_STRING_SET)
+        notifyChanged(key)
         return this
     }
 
     override fun putInt(key: String, value: Int): WePrefs {
         mmkvInstance.putInt(key, value)
         mmkvInstance.putInt(key + TYPE_SUFFIX, TYPE_INT)
+        notifyChanged(key)
         return this
     }
 
     override fun putLong(key: String, value: Long): WePrefs {
         mmkvInstance.putLong(key, value)
         mmkvInstance.putInt(key + TYPE_SUFFIX, TYPE_LONG)
+        notifyChanged(key)
         return this
     }
 
     override fun putFloat(key: String, value: Float): WePrefs {
         mmkvInstance.putFloat(key, value)
         mmkvInstance.putInt(key + TYPE_SUFFIX, TYPE_FLOAT)
+        notifyChanged(key)
         return this
     }
 
     override fun putBoolean(key: String, value: Boolean): WePrefs {
         mmkvInstance.putBoolean(key, value)
         mmkvInstance.putInt(key + TYPE_SUFFIX, TYPE_BOOL)
+        notifyChanged(key)
         return this
     }
 
@@ -227,16 +239,19 @@ class MmkvPrefsImpl(name: String) : WePrefs() {
     override fun putBytes(key: String, value: ByteArray) {
         mmkvInstance.putBytes(key, value)
         mmkvInstance.putInt(key + TYPE_SUFFIX, TYPE_BYTES)
+        notifyChanged(key)
     }
 
     override fun remove(key: String): WePrefs {
         mmkvInstance.remove(key)
         mmkvInstance.remove(key + TYPE_SUFFIX)
+        notifyChanged(key)
         return this
     }
 
     override fun clear(): WePrefs {
         mmkvInstance.clear()
+        notifyChanged(null)
         return this
     }
 
@@ -0,0 +1,72 @@
+package moe.ouom.wekit.preferences
+
+import android.content.SharedPreferences
+import moe.ouom.wekit.constants.PreferenceKeys
+
+/**
+ * 高频配置的内存快照
+ *
+ * Hook 回调、数据库监听、收发包等热路径每次都要判断这些开关，
+ * 直接读 MMKV 会产生 JNI 调用；这里把它们缓存在 volatile 字段中，
+ * 本进程写入时通过 [WePrefs] 的变更通知立即刷新；
+ * 其他进程写入的值在调用 [syncWithOuterProcess] 时同步 (主进程在 LauncherUI 回到前台时调用)，
+ * 其余进程在下次启动时读到。MMKV 的跨进程变更通知只在本进程下次访问该实例时才会触发，热路径不再访问 MMKV，不能依赖它
+ */
+object WeConfig : SharedPreferences.OnSharedPreferenceChangeListener {
+
+    const val DEFAULT_HOOK_PRIORITY = 50
+
+    private val TRACKED_KEYS = setOf(
+        PreferenceKeys.HOOK_PRIORITY,
+        PreferenceKeys.ENABLE_LOG,
+        PreferenceKeys.VERBOSE_LOG,
+        PreferenceKeys.DB_VERBOSE_LOG
+    )
+
+    @Volatile
+    var hookPriority: Int = DEFAULT_HOOK_PRIORITY
+        private set
+
+    @Volatile
+    var enableLog: Boolean = false
+        private set
+
+    @Volatile
+    var verboseLog: Boolean = false
+        private set
+
+    /**
+     * 数据库详细日志依赖于详细日志，两者同时开启才为 true
+     */
+    @Volatile
+    var dbVerboseLog: Boolean = false
+        private set
+
+    init {
+        reload()
+        WePrefs.defaultConfig.registerOnSharedPreferenceChangeListener(this)
+    }
+
+    /**
+     * 检查其他进程是否修改过配置并刷新快照，开销为一次 JNI 调用，适合在界面切换等低频时机调用
+     */
+    fun syncWithOuterProcess() {
+        runCatching {
+            WePrefs.defaultConfig.checkContentChangedByOuterProcess()
+            reload()
+        }
+    }
+
+    override fun onSharedPreferenceChanged(prefs: SharedPreferences?, key: String?) {
+        // key 为 null 表示整体清空
+        if (key == null || key in TRACKED_KEYS) reload()
+    }
+
+    private fun reload() {
+        val prefs = WePrefs.defaultConfig
+        hookPriority = prefs.getIntOrDef(PreferenceKeys.HOOK_PRIORITY, DEFAULT_HOOK_PRIORITY)
+        enableLog = prefs.getBoolOrFalse(PreferenceKeys.ENABLE_LOG)
+        verboseLog = prefs.getBoolOrFalse(PreferenceKeys.VERBOSE_LOG)
+        dbVerboseLog = verboseLog && prefs.getBoolOrFalse(PreferenceKeys.DB_VERBOSE_LOG)
+    }
+}
@@ -2,9 +2,12 @@ package moe.ouom.wekit.preferences
 
 import android.content.SharedPreferences
 import android.content.SharedPreferences.OnSharedPreferenceChangeListener
+import java.util.concurrent.CopyOnWriteArraySet
 
 abstract class WePrefs protected constructor() : SharedPreferences, SharedPreferences.Editor {
 
+    private val changeListeners = CopyOnWriteArraySet<OnSharedPreferenceChangeListener>()
+
     fun getBoolOrFalse(key: String): Boolean {
         return getBoolOrDef(key, false)
     }
@@ -52,13 +55,27 @@ abstract class WePrefs protected constructor() : SharedPreferences, SharedPrefer
         return this
     }
 
+    /**
+     * 仅能收到本进程内的写入
+     */
     override fun registerOnSharedPreferenceChangeListener(
         listener: OnSharedPreferenceChangeListener
-    ): Unit = TODO()
+    ) {
+        changeListeners.add(listener)
+    }
 
     override fun unregisterOnSharedPreferenceChangeListener(
         listener: OnSharedPreferenceChangeListener
-    ): Unit = TODO()
+    ) {
+        changeListeners.remove(listener)
+    }
+
+    /**
+     * @param key 发生变化的键，整体清空时为 null
+     */
+    protected fun notifyChanged(key: String?) {
+        changeListeners.forEach { it.onSharedPreferenceChanged(this, key) }
+    }
 
     abstract val isReadOnly: Boolean
 
@@ -12,11 +12,8 @@ class CategorySettingsDialog(
 ) : BaseSettingsDialog(context, categoryName) {
 
     override fun initList() {
-        val allItems = HookItemFactory.getItems()
-
-        val targetItems = allItems.filter { item ->
-            item.path.startsWith("$categoryName/")
-        }
+        // 按描述表筛选，其他分类的项不会被实例化
+        val targetItems = HookItemFactory.getItems { it.path.startsWith("$categoryName/") }
 
         if (targetItems.isEmpty()) return
 
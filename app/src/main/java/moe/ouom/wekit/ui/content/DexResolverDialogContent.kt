@@ -3,7 +3,6 @@ package moe.ouom.wekit.ui.content
 import android.content.ClipData
 import android.content.ClipboardManager
 import android.content.Context
-import android.content.pm.ApplicationInfo
 import android.os.Process
 import android.widget.Toast
 import androidx.compose.animation.AnimatedVisibility
@@ -22,153 +21,29 @@ import androidx.compose.material3.MaterialTheme
 import androidx.compose.material3.Surface
 import androidx.compose.material3.Text
 import androidx.compose.runtime.Composable
+import androidx.compose.runtime.collectAsState
 import androidx.compose.runtime.getValue
-import androidx.compose.runtime.mutableIntStateOf
-import androidx.compose.runtime.mutableStateMapOf
-import androidx.compose.runtime.mutableStateOf
-import androidx.compose.runtime.remember
-import androidx.compose.runtime.setValue
 import androidx.compose.ui.Alignment
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.text.font.FontWeight
 import androidx.compose.ui.unit.dp
-import dev.ujhhgtg.nameof.nameof
-import kotlinx.coroutines.CoroutineScope
-import kotlinx.coroutines.Dispatchers
-import kotlinx.coroutines.async
-import kotlinx.coroutines.channels.Channel
-import kotlinx.coroutines.flow.asFlow
-import kotlinx.coroutines.flow.buffer
-import kotlinx.coroutines.flow.map
-import kotlinx.coroutines.flow.toList
-import kotlinx.coroutines.launch
-import kotlinx.coroutines.withContext
-import moe.ouom.wekit.core.model.BaseHookItem
-import moe.ouom.wekit.dexkit.cache.DexCacheManager
-import moe.ouom.wekit.dexkit.intf.IResolvesDex
-import moe.ouom.wekit.utils.logging.WeLogger
-import org.luckypray.dexkit.DexKitBridge
+import moe.ouom.wekit.dexkit.DexResolveService
 import java.io.PrintWriter
 import java.io.StringWriter
 
-private sealed class ScanProgress {
-    data class Start(val path: String) : ScanProgress()
-    data class Complete(val path: String) : ScanProgress()
-    data class Failed(val path: String, val error: Exception) : ScanProgress()
-}
-
-private sealed class ScanResult {
-    data class Success(val path: String) : ScanResult()
-    data class Failed(val path: String, val error: Exception) : ScanResult()
-}
-
-private sealed class DialogPhase {
-    object Idle : DialogPhase()
-    object Scanning : DialogPhase()
-    data class Done(val failed: List<ScanResult.Failed>) : DialogPhase()
-    data class Error(val message: String) : DialogPhase()
-}
-
-private val TAG = nameof(::DexResolverDialogContent)
-
+/**
+ * 后台适配进度窗口
+ * 适配由 [DexResolveService] 在后台完成，这里只展示进度与失败信息
+ */
 @Composable
 fun DexResolverDialogContent(
     context: Context,
-    outdatedItems: List<IResolvesDex>,
-    appInfo: ApplicationInfo,
-    scope: CoroutineScope,
     onDismiss: () -> Unit
 ) {
-    var phase by remember { mutableStateOf<DialogPhase>(DialogPhase.Idle) }
-    var currentTask by remember { mutableStateOf("") }
-    var taskCounter by remember { mutableIntStateOf(0) }
-    var completed by remember { mutableIntStateOf(0) }
-    val scanResults = remember { mutableStateMapOf<String, ScanResult>() }
-
-    fun updateProgress(progress: ScanProgress) {
-        val total = outdatedItems.size
-        when (progress) {
-            is ScanProgress.Start -> {
-                taskCounter++
-                currentTask = "正在适配: ${progress.path} ($taskCounter/$total)..."
-            }
-
-            is ScanProgress.Complete -> {
-                scanResults[progress.path] = ScanResult.Success(progress.path)
-                completed = scanResults.size
-                currentTask = "已完成: ${progress.path}"
-            }
-
-            is ScanProgress.Failed -> {
-                scanResults[progress.path] = ScanResult.Failed(progress.path, progress.error)
-                completed = scanResults.size
-                currentTask = "失败: ${progress.path}"
-            }
-        }
-    }
-
-    suspend fun scanItem(
-        item: IResolvesDex,
-        dexKit: DexKitBridge,
-        progressChannel: Channel<ScanProgress>
-    ): ScanResult {
-        val path = if (item is BaseHookItem) item.path else item::class.java.simpleName
-        return try {
-            progressChannel.send(ScanProgress.Start(path))
-            val descriptors = item.resolveDex(dexKit)
-            WeLogger.i(
-                TAG,
-                "Total descriptors: ${descriptors.size}, keys: ${descriptors.keys}"
-            )
-            DexCacheManager.saveItemCache(item, descriptors)
-            progressChannel.send(ScanProgress.Complete(path))
-            ScanResult.Success(path)
-        } catch (e: Exception) {
-            WeLogger.e(TAG, "Failed to scan: $path", e)
-            progressChannel.send(ScanProgress.Failed(path, e))
-            ScanResult.Failed(path, e)
-        }
-    }
-
-    fun startScanning() {
-        phase = DialogPhase.Scanning
-        scope.launch {
-            try {
-                val dexKit = withContext(Dispatchers.IO) { DexKitBridge.create(appInfo.sourceDir) }
-                dexKit.use { dexKit ->
-                    val progressChannel = Channel<ScanProgress>(Channel.UNLIMITED)
-
-                    // progress consumer on Main
-                    launch(Dispatchers.Main) {
-                        for (p in progressChannel) updateProgress(p)
-                    }
-
-                    // parallel scan — same flow/buffer/async structure
-                    val results = outdatedItems.asFlow()
-                        .map { item ->
-                            async(Dispatchers.IO) {
-                                scanItem(
-                                    item,
-                                    dexKit,
-                                    progressChannel
-                                )
-                            }
-                        }
-                        .buffer(8)
-                        .map { it.await() }
-                        .toList()
-
-                    progressChannel.close()
-
-                    val failed = results.filterIsInstance<ScanResult.Failed>()
-                    phase = DialogPhase.Done(failed)
-                }
-            } catch (e: Exception) {
-                WeLogger.e(TAG, "Scanning failed", e)
-                phase = DialogPhase.Error("扫描过程中发生未知错误: ${e.message}")
-            }
-        }
-    }
+    val progress by DexResolveService.progress.collectAsState()
+    val p = progress ?: return
+    val total = p.total
+    val scanning = !p.finished
 
     Surface(
         shape = MaterialTheme.shapes.extraLarge,
@@ -196,13 +71,13 @@ fun DexResolverDialogContent(
                 )
 
                 // Badge showing count
-                if (phase is DialogPhase.Idle || phase is DialogPhase.Scanning) {
+                if (scanning) {
                     Surface(
                         shape = RoundedCornerShape(12.dp),
                         color = MaterialTheme.colorScheme.primaryContainer
                     ) {
                         Text(
-                            text = "${outdatedItems.size}",
+                            text = "$total",
                             modifier = Modifier.padding(horizontal = 12.dp, vertical = 4.dp),
                             style = MaterialTheme.typography.labelLarge,
                             color = MaterialTheme.colorScheme.onPrimaryContainer,
@@ -215,42 +90,36 @@ fun DexResolverDialogContent(
             HorizontalDivider()
 
             // Tip text
-            val tipText = when (val p = phase) {
-                is DialogPhase.Idle ->
-                    "检测到 ${outdatedItems.size} 个功能需要更新 DEX 缓存，点击开始适配后将自动扫描并更新。" +
-                            "若直接关闭窗口，相关功能将不会被加载"
-
-                is DialogPhase.Scanning -> null
-                is DialogPhase.Done ->
-                    if (p.failed.isEmpty()) "适配完成！所有功能已成功更新 DEX 缓存"
-                    else "适配完成，但有 ${p.failed.size} 个功能失败 (不影响其他功能使用)"
-
-                is DialogPhase.Error -> p.message
-            }
-            if (tipText != null) {
-                Text(text = tipText, style = MaterialTheme.typography.bodyMedium)
+            val tipText = when {
+                p.fatalError != null -> p.fatalError
+                scanning ->
+                    "检测到 $total 个功能需要更新 DEX 缓存，正在后台自动适配，" +
+                            "适配完成的功能会立即生效，可直接关闭此窗口"
+
+                p.failed.isEmpty() -> "适配完成！所有功能已成功更新 DEX 缓存并已生效"
+                else -> "适配完成，但有 ${p.failed.size} 个功能失败 (不影响其他功能使用)"
             }
+            Text(text = tipText, style = MaterialTheme.typography.bodyMedium)
 
             // Progress
-            AnimatedVisibility(visible = phase is DialogPhase.Scanning) {
+            AnimatedVisibility(visible = scanning) {
                 Column(verticalArrangement = Arrangement.spacedBy(4.dp)) {
-                    Text(text = currentTask, style = MaterialTheme.typography.bodyMedium)
+                    Text(text = p.currentTask, style = MaterialTheme.typography.bodyMedium)
                     LinearWavyProgressIndicator(
-                        progress = { if (outdatedItems.isEmpty()) 0f else completed.toFloat() / outdatedItems.size },
+                        progress = { if (total == 0) 0f else p.completed.toFloat() / total },
                         modifier = Modifier.fillMaxWidth()
                     )
                     Text(
-                        text = "总进度: $completed/${outdatedItems.size}",
+                        text = "总进度: ${p.completed}/$total",
                         style = MaterialTheme.typography.labelSmall
                     )
                     LinearWavyProgressIndicator(modifier = Modifier.fillMaxWidth()) // indeterminate sub-bar
                 }
             }
 
-            // Error details (Done with failures)
-            val donePhase = phase as? DialogPhase.Done
-            AnimatedVisibility(visible = donePhase?.failed?.isNotEmpty() == true) {
-                donePhase?.failed?.let { failed ->
+            // Error details (failures so far)
+            AnimatedVisibility(visible = p.failed.isNotEmpty()) {
+                p.failed.let { failed ->
                     ErrorDetailsSection(
                         failedResults = failed,
                         onCopy = {
@@ -275,13 +144,8 @@ fun DexResolverDialogContent(
                 modifier = Modifier.fillMaxWidth(),
                 horizontalArrangement = Arrangement.spacedBy(8.dp, Alignment.End)
             ) {
-                if (phase !is DialogPhase.Scanning) {
-                    TextButton(onClick = onDismiss) { Text("关闭") }
-                }
-                if (phase is DialogPhase.Idle) {
-                    Button(onClick = ::startScanning) { Text("开始适配") }
-                }
-                if (phase is DialogPhase.Done || phase is DialogPhase.Error) {
+                TextButton(onClick = onDismiss) { Text("关闭") }
+                if (!scanning && (p.failed.isNotEmpty() || p.fatalError != null)) {
                     Button(onClick = {
                         onDismiss()
                         Process.killProcess(Process.myPid())
@@ -294,7 +158,7 @@ fun DexResolverDialogContent(
 
 @Composable
 private fun ErrorDetailsSection(
-    failedResults: List<ScanResult.Failed>,
+    failedResults: List<DexResolveService.ScanResult.Failed>,
     onCopy: () -> Unit
 ) {
     Surface(
@@ -326,7 +190,7 @@ private fun ErrorDetailsSection(
     }
 }
 
-private fun buildErrorReport(failedResults: List<ScanResult.Failed>) = buildString {
+private fun buildErrorReport(failedResults: List<DexResolveService.ScanResult.Failed>) = buildString {
     append("=== WeKit Dex 扫描错误报告 ===\n\n")
     failedResults.forEachIndexed { i, r ->
         append("${i + 1}. ${r.path}\n")
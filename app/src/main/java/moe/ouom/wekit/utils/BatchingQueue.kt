@@ -0,0 +1,79 @@
+package moe.ouom.wekit.utils
+
+import moe.ouom.wekit.utils.logging.WeLogger
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * 有界批量投递队列
+ *
+ * 生产者只做一次非阻塞 offer，队列满时丢弃新事件并计数，绝不阻塞调用方；
+ * 单个消费者线程按到达顺序成批取出并交给 [consumer]，因此同一消费方看到的事件顺序与入队顺序一致
+ */
+class BatchingQueue<E : Any>(
+    private val name: String,
+    capacity: Int,
+    private val maxBatchSize: Int,
+    private val consumer: (List<E>) -> Unit
+) {
+
+    data class Stats(
+        val offered: Long,
+        val dropped: Long,
+        val delivered: Long,
+        val batches: Long,
+        val pending: Int
+    )
+
+    private val queue = ArrayBlockingQueue<E>(capacity)
+
+    private val offered = AtomicLong()
+    private val dropped = AtomicLong()
+    private val delivered = AtomicLong()
+    private val batches = AtomicLong()
+
+    private val worker by lazy {
+        Thread(::drainLoop, name).apply {
+            isDaemon = true
+            start()
+        }
+    }
+
+    val stats: Stats
+        get() = Stats(offered.get(), dropped.get(), delivered.get(), batches.get(), queue.size)
+
+    /**
+     * @return 队列已满被丢弃时返回 false
+     */
+    fun offer(element: E): Boolean {
+        worker
+        offered.incrementAndGet()
+        if (queue.offer(element)) return true
+
+        val count = dropped.incrementAndGet()
+        // 按 2 的幂次输出，避免积压时刷屏
+        if (count and (count - 1) == 0L) {
+            WeLogger.w(name, "queue full, dropped $count events so far")
+        }
+        return false
+    }
+
+    private fun drainLoop() {
+        val batch = ArrayList<E>(maxBatchSize)
+        while (true) {
+            try {
+                batch.add(queue.take())
+                queue.drainTo(batch, maxBatchSize - 1)
+                consumer(batch)
+                delivered.addAndGet(batch.size.toLong())
+                batches.incrementAndGet()
+            } catch (_: InterruptedException) {
+                return
+            } catch (e: Throwable) {
+                WeLogger.e(name, "batch delivery failed", e)
+            } finally {
+                batch.clear()
+            }
+        }
+    }
+}
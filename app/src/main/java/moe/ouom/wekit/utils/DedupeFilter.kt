@@ -0,0 +1,108 @@
+package moe.ouom.wekit.utils
+
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * 定长无锁去重过滤器
+ *
+ * 以 64 位哈希为键，记录最近一次出现的时间；同一键在 [windowMs] 内再次出现视为重复。
+ * 槽位按哈希直接映射，每个键在 [PROBES] 个相邻槽位中查找；未找到时写入其中的空槽或过期槽，
+ * 都不可用时覆盖最旧的一条。容量因此固定、不会增长，仍在窗口内的键只有在探测范围被占满、
+ * 自身作为最旧的一条被覆盖后 (或并发写入同一槽位时) 才会漏判，不会误判
+ */
+class DedupeFilter(capacity: Int, private val windowMs: Long) {
+
+    data class Stats(val hits: Long, val misses: Long)
+
+    private val size = Integer.highestOneBit((capacity - 1).coerceAtLeast(1)) shl 1
+    private val mask = size - 1
+    private val keys = AtomicLongArray(size)
+    private val times = AtomicLongArray(size)
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+
+    val stats: Stats get() = Stats(hits.get(), misses.get())
+
+    /**
+     * @return 在时间窗口内已出现过时返回 true，此时不刷新其时间；否则记录并返回 false
+     */
+    fun isDuplicate(hash: Long, now: Long): Boolean {
+        // 0 表示空槽
+        val key = if (hash == 0L) 1L else hash
+        val base = (mix(key) and mask.toLong()).toInt()
+
+        // 先找遍所有探测槽位，键可能位于前面已过期或被清空的槽位之后
+        var victim = base
+        var victimTime = Long.MAX_VALUE
+        var free = -1
+        var expiredSelf = -1
+        for (i in 0 until PROBES) {
+            val slot = (base + i) and mask
+            val k = keys.get(slot)
+            val t = times.get(slot)
+            if (k == key) {
+                if (now - t < windowMs) {
+                    hits.incrementAndGet()
+                    return true
+                }
+                expiredSelf = slot
+                continue
+            }
+            if (free < 0 && (k == 0L || now - t >= windowMs)) {
+                free = slot
+            } else if (t < victimTime) {
+                victim = slot
+                victimTime = t
+            }
+        }
+        // 已过期的同一键优先复用，避免同一键占用两个槽位
+        if (expiredSelf >= 0) {
+            victim = expiredSelf
+        } else if (free >= 0) {
+            victim = free
+        }
+
+        // 先写时间再写键，读到新键的线程一定能看到对应的时间
+        times.set(victim, now)
+        keys.set(victim, key)
+        misses.incrementAndGet()
+        return false
+    }
+
+    companion object {
+        private const val PROBES = 4
+
+        private const val P1 = -0x61c8864e7a143579L // 0x9E3779B185EBCA87
+        private const val P2 = -0x3d4d51c2d82b14b1L // 0xC2B2AE3D27D4EB4F
+
+        fun hash(seed: Long, bytes: ByteArray): Long {
+            val buf = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN)
+            var h = seed xor (bytes.size.toLong() * P1)
+            var i = 0
+            while (i + 8 <= bytes.size) {
+                h = (h xor mix(buf.getLong(i))) * P1
+                h = java.lang.Long.rotateLeft(h, 27)
+                i += 8
+            }
+            while (i < bytes.size) {
+                h = (h xor (bytes[i].toLong() and 0xFF)) * P2
+                h = java.lang.Long.rotateLeft(h, 11)
+                i++
+            }
+            return mix(h)
+        }
+
+        fun hash(seed: Long, value: String): Long = mix(seed * P1 + value.hashCode())
+
+        private fun mix(value: Long): Long {
+            var h = value
+            h = (h xor (h ushr 33)) * P2
+            h = (h xor (h ushr 29)) * P1
+            return h xor (h ushr 32)
+        }
+    }
+}
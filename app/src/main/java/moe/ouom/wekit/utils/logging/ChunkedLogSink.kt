@@ -0,0 +1,89 @@
+package moe.ouom.wekit.utils.logging
+
+import android.util.Log
+import moe.ouom.wekit.BuildConfig
+import kotlin.math.min
+
+/**
+ * 分块写入 logcat 的 [Appendable]
+ *
+ * 内容每累积满一块就立即输出，不必先拼出完整字符串再用 substring 切分；
+ * 超过块数上限后的内容直接丢弃，只在结束时记录丢弃的字符数
+ *
+ * 通过 [WeLogger.logChunkedStream] 获取，同一线程内复用同一个实例
+ */
+class ChunkedLogSink internal constructor(
+    private val chunkSize: Int,
+    private val maxChunks: Int,
+) : Appendable {
+
+    private val buffer = StringBuilder(chunkSize)
+    private var priority = Log.INFO
+    private var tag = ""
+    private var part = 0
+    private var dropped = 0L
+
+    internal fun begin(priority: Int, tag: String): ChunkedLogSink {
+        this.priority = priority
+        this.tag = tag
+        buffer.setLength(0)
+        part = 0
+        dropped = 0
+        return this
+    }
+
+    override fun append(c: Char): Appendable {
+        if (part >= maxChunks) {
+            dropped++
+            return this
+        }
+        buffer.append(c)
+        if (buffer.length >= chunkSize) flushChunk()
+        return this
+    }
+
+    override fun append(csq: CharSequence?): Appendable {
+        val s = csq ?: "null"
+        return append(s, 0, s.length)
+    }
+
+    override fun append(csq: CharSequence?, start: Int, end: Int): Appendable {
+        val s = csq ?: "null"
+        var i = start
+        while (i < end) {
+            if (part >= maxChunks) {
+                dropped += end - i
+                break
+            }
+            val n = min(end - i, chunkSize - buffer.length)
+            buffer.append(s, i, i + n)
+            i += n
+            if (buffer.length >= chunkSize) flushChunk()
+        }
+        return this
+    }
+
+    internal fun finish() {
+        if (buffer.isNotEmpty()) {
+            if (part == 0) {
+                Log.println(priority, BuildConfig.TAG, "[$tag]$buffer")
+            } else {
+                flushChunk()
+            }
+        }
+        if (dropped > 0) {
+            Log.println(
+                priority,
+                BuildConfig.TAG,
+                "[$tag][chunked] truncated after $part chunks, $dropped chars dropped"
+            )
+        }
+        buffer.setLength(0)
+    }
+
+    private fun flushChunk() {
+        part++
+        Log.println(priority, BuildConfig.TAG, "[$tag][part $part] $buffer")
+        buffer.setLength(0)
+    }
+}
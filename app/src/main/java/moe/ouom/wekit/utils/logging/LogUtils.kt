@@ -1,9 +1,8 @@
 package moe.ouom.wekit.utils.logging
 
 import de.robv.android.xposed.XposedBridge
-import moe.ouom.wekit.constants.PreferenceKeys
 import moe.ouom.wekit.loader.utils.NativeLoader
-import moe.ouom.wekit.preferences.WePrefs
+import moe.ouom.wekit.preferences.WeConfig
 import moe.ouom.wekit.utils.formatEpoch
 import moe.ouom.wekit.utils.PathUtils
 import java.nio.file.Path
@@ -68,7 +67,7 @@ object LogUtils {
 
     private fun addLog(fileName: String, desc: String?, content: Any?, isError: Boolean) {
         try {
-            if (NativeLoader.isInitialized() && !WePrefs.getBoolOrFalse(PreferenceKeys.ENABLE_LOG)
+            if (NativeLoader.isInitialized() && !WeConfig.enableLog
             ) {
                 return
             }
@@ -13,6 +13,8 @@ object WeLogger {
     private const val CHUNK_SIZE = 4000
     private const val MAX_CHUNKS = 200
 
+    private val chunkedSinks = ThreadLocal.withInitial { ChunkedLogSink(CHUNK_SIZE, MAX_CHUNKS) }
+
     // ========== String ==========
     @JvmStatic
     fun e(msg: String) {
@@ -459,6 +461,23 @@ object WeLogger {
         }
     }
 
+    /**
+     * 流式分块输出长日志，[block] 写入 sink 的内容每满一块即送往 logcat，
+     * 适合内容由编码器边生成边输出、无需拼出完整字符串的场景
+     */
+    fun logChunkedStream(priority: Int, tag: String, block: (Appendable) -> Unit) {
+        val sink = chunkedSinks.get()!!.begin(priority, tag)
+        try {
+            block(sink)
+        } finally {
+            sink.finish()
+        }
+    }
+
+    fun logChunkedStreamI(tag: String, block: (Appendable) -> Unit) {
+        logChunkedStream(Log.INFO, tag, block)
+    }
+
     fun logChunkedI(tag: String, msg: String) {
         logChunked(Log.INFO, tag, msg)
     }
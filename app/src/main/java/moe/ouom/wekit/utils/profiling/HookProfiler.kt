@@ -0,0 +1,243 @@
+package moe.ouom.wekit.utils.profiling
+
+import android.os.Process
+import android.util.JsonWriter
+import dev.ujhhgtg.nameof.nameof
+import moe.ouom.wekit.utils.PathUtils
+import moe.ouom.wekit.utils.getThreadId
+import moe.ouom.wekit.utils.logging.WeLogger
+import java.nio.file.Path
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import kotlin.io.path.bufferedWriter
+import kotlin.io.path.createDirectories
+import kotlin.io.path.div
+
+/**
+ * HookItem 性能分析器
+ *
+ * 记录每个 HookItem 的启用耗时、回调调用次数与回调耗时；
+ * 计数使用无锁原子变量，耗时每 [SAMPLE_INTERVAL] 次调用采样一次，可常驻开启
+ *
+ * 采样到的回调与启用过程可导出为 Chrome Trace JSON，直接拖入 Perfetto / chrome://tracing 查看
+ */
+object HookProfiler {
+
+    private val TAG = nameof(HookProfiler)
+
+    private const val SAMPLE_INTERVAL = 16L
+    private const val RESERVOIR_SIZE = 128
+
+    // 全局采样事件环形缓冲区，必须为 2 的幂
+    private const val EVENT_BUFFER_SIZE = 4096
+    private const val TRACE_DIR_NAME = "traces"
+
+    class ItemStats internal constructor(val path: String) {
+        @Volatile
+        var enableStartNanos = 0L
+            private set
+
+        @Volatile
+        var enableNanos = -1L
+            private set
+
+        @Volatile
+        private var enableThreadId = 0L
+
+        private val invocations = AtomicLong()
+        private val sampledCount = AtomicLong()
+        private val sampledNanos = AtomicLong()
+        // 对全部采样做蓄水池抽样，分位数代表整个运行期而不只是最近的若干次
+        private val reservoir = AtomicLongArray(RESERVOIR_SIZE)
+
+        /**
+         * 回调开始时调用
+         * @return 本次需要计时时返回起始时间，否则返回 0
+         */
+        fun beginInvocation(): Long {
+            val n = invocations.incrementAndGet()
+            return if (n % SAMPLE_INTERVAL == 1L) System.nanoTime() else 0L
+        }
+
+        fun endInvocation(startNanos: Long) {
+            if (startNanos == 0L) return
+            val duration = System.nanoTime() - startNanos
+            val k = sampledCount.incrementAndGet()
+            sampledNanos.addAndGet(duration)
+            if (k <= RESERVOIR_SIZE) {
+                reservoir.set((k - 1).toInt(), duration)
+            } else {
+                val j = ThreadLocalRandom.current().nextLong(k)
+                if (j < RESERVOIR_SIZE) reservoir.set(j.toInt(), duration)
+            }
+            recordEvent(this, startNanos, duration)
+        }
+
+        internal fun recordEnable(startNanos: Long, durationNanos: Long) {
+            enableStartNanos = startNanos
+            enableNanos = durationNanos
+            enableThreadId = Thread.currentThread().getThreadId()
+        }
+
+        internal val enableTid: Long get() = enableThreadId
+
+        // 启用耗时只在启动时产生一次，重置时保留
+        internal fun resetInvocations() {
+            invocations.set(0)
+            sampledCount.set(0)
+            sampledNanos.set(0)
+        }
+
+        fun snapshot(): Snapshot {
+            val samples = sampledCount.get()
+            val filled = minOf(samples, RESERVOIR_SIZE.toLong()).toInt()
+            val sorted = LongArray(filled) { reservoir.get(it) }.apply { sort() }
+            fun percentile(p: Double) =
+                if (sorted.isEmpty()) 0L else sorted[((sorted.size - 1) * p).toInt()]
+
+            val calls = invocations.get()
+            val mean = if (samples == 0L) 0L else sampledNanos.get() / samples
+            return Snapshot(
+                path = path,
+                enableNanos = enableNanos,
+                invocations = calls,
+                estimatedTotalNanos = mean * calls,
+                meanNanos = mean,
+                p50Nanos = percentile(0.50),
+                p90Nanos = percentile(0.90),
+                p99Nanos = percentile(0.99)
+            )
+        }
+    }
+
+    data class Snapshot(
+        val path: String,
+        val enableNanos: Long,
+        val invocations: Long,
+        val estimatedTotalNanos: Long,
+        val meanNanos: Long,
+        val p50Nanos: Long,
+        val p90Nanos: Long,
+        val p99Nanos: Long
+    )
+
+    private val stats = ConcurrentHashMap<String, ItemStats>()
+
+    // 采样事件：写入位置自增取模，覆盖最旧的记录；用 Long 计数，长时间运行也不会回绕成负数
+    private val eventCursor = AtomicLong()
+    private val eventStats = arrayOfNulls<ItemStats>(EVENT_BUFFER_SIZE)
+    private val eventStart = LongArray(EVENT_BUFFER_SIZE)
+    private val eventDuration = LongArray(EVENT_BUFFER_SIZE)
+    private val eventThread = LongArray(EVENT_BUFFER_SIZE)
+
+    @Volatile
+    private var loaderSpan: Pair<Long, Long>? = null
+
+    fun statsFor(path: String): ItemStats = stats.getOrPut(path) { ItemStats(path) }
+
+    fun recordLoader(startNanos: Long, durationNanos: Long) {
+        loaderSpan = startNanos to durationNanos
+    }
+
+    private fun recordEvent(item: ItemStats, startNanos: Long, durationNanos: Long) {
+        val slot = (eventCursor.getAndIncrement() and (EVENT_BUFFER_SIZE - 1).toLong()).toInt()
+        eventStart[slot] = startNanos
+        eventDuration[slot] = durationNanos
+        eventThread[slot] = Thread.currentThread().getThreadId()
+        eventStats[slot] = item
+    }
+
+    /**
+     * 按估算的累计回调耗时降序排列
+     */
+    fun snapshots(): List<Snapshot> =
+        stats.values.map { it.snapshot() }
+            .sortedWith(compareByDescending<Snapshot> { it.estimatedTotalNanos }.thenByDescending { it.enableNanos })
+
+    /**
+     * 清空回调统计与采样事件；各 HookItem 持有的 [ItemStats] 保持不变
+     */
+    fun reset() {
+        stats.values.forEach { it.resetInvocations() }
+        eventCursor.set(0)
+        eventStats.fill(null)
+        loaderSpan = null
+    }
+
+    /**
+     * 导出 Chrome Trace JSON
+     * @return 导出的文件路径，失败时返回 null
+     */
+    fun exportTrace(): Path? {
+        return try {
+            val dir = PathUtils.moduleDataPath!! / TRACE_DIR_NAME
+            dir.createDirectories()
+            val file = dir / "hook_trace_${System.currentTimeMillis()}.json"
+            file.bufferedWriter().use { writeTrace(JsonWriter(it)) }
+            WeLogger.i(TAG, "trace exported to $file")
+            file
+        } catch (e: Exception) {
+            WeLogger.e(TAG, "failed to export trace", e)
+            null
+        }
+    }
+
+    private fun writeTrace(writer: JsonWriter) {
+        val pid = Process.myPid().toLong()
+        writer.beginObject()
+        writer.name("displayTimeUnit").value("ms")
+        writer.name("traceEvents").beginArray()
+
+        loaderSpan?.let { (start, duration) ->
+            writer.completeEvent("HookItemsLoader.loadAllItems", "startup", start, duration, pid, pid)
+        }
+        stats.values.forEach { item ->
+            if (item.enableNanos >= 0) {
+                writer.completeEvent(item.path, "enable", item.enableStartNanos, item.enableNanos, pid, item.enableTid)
+            }
+        }
+        val count = minOf(eventCursor.get(), EVENT_BUFFER_SIZE.toLong()).toInt()
+        for (slot in 0 until count) {
+            val item = eventStats[slot] ?: continue
+            writer.completeEvent(item.path, "callback", eventStart[slot], eventDuration[slot], pid, eventThread[slot])
+        }
+        writer.endArray()
+
+        writer.name("otherData").beginObject()
+        snapshots().forEach { s ->
+            writer.name(s.path).beginObject()
+                .name("enableUs").value(s.enableNanos / 1000)
+                .name("invocations").value(s.invocations)
+                .name("estimatedTotalUs").value(s.estimatedTotalNanos / 1000)
+                .name("p50Us").value(s.p50Nanos / 1000)
+                .name("p90Us").value(s.p90Nanos / 1000)
+                .name("p99Us").value(s.p99Nanos / 1000)
+                .endObject()
+        }
+        writer.endObject()
+
+        writer.endObject()
+        writer.flush()
+    }
+
+    private fun JsonWriter.completeEvent(
+        name: String,
+        category: String,
+        startNanos: Long,
+        durationNanos: Long,
+        pid: Long,
+        tid: Long
+    ) {
+        beginObject()
+        name("name").value(name)
+        name("cat").value(category)
+        name("ph").value("X")
+        name("ts").value(startNanos / 1000.0)
+        name("dur").value(durationNanos / 1000.0)
+        name("pid").value(pid)
+        name("tid").value(tid)
+        endObject()
+    }
+}
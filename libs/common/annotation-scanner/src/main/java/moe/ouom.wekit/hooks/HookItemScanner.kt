@@ -1,7 +1,9 @@
 package moe.ouom.wekit.hooks
 
 import com.google.devtools.ksp.KspExperimental
+import com.google.devtools.ksp.getAllSuperTypes
 import com.google.devtools.ksp.getAnnotationsByType
+import com.google.devtools.ksp.getDeclaredFunctions
 import com.google.devtools.ksp.processing.CodeGenerator
 import com.google.devtools.ksp.processing.Dependencies
 import com.google.devtools.ksp.processing.Resolver
@@ -14,8 +16,8 @@ import com.google.devtools.ksp.symbol.KSClassDeclaration
 import com.squareup.kotlinpoet.ClassName
 import com.squareup.kotlinpoet.CodeBlock
 import com.squareup.kotlinpoet.FileSpec
-import com.squareup.kotlinpoet.FunSpec
 import com.squareup.kotlinpoet.ParameterizedTypeName.Companion.parameterizedBy
+import com.squareup.kotlinpoet.PropertySpec
 import com.squareup.kotlinpoet.TypeSpec
 import com.squareup.kotlinpoet.ksp.toClassName
 import com.squareup.kotlinpoet.ksp.writeTo
@@ -66,46 +68,52 @@ class HookItemScanner(
             }
         ))
 
-        // 准备返回类型和基类
-        val returnType = ClassName("kotlin.collections", "List")
-        val genericsType = ClassName("moe.ouom.wekit.core.model", "BaseHookItem")
+        // 准备描述表类型
+        val descriptorType = ClassName("moe.ouom.wekit.core.model", "HookItemDescriptor")
+        val kindType = descriptorType.nestedClass("Kind")
+        val listType = ClassName("kotlin.collections", "List").parameterizedBy(descriptorType)
 
-        // 创建方法构建器
-        val methodBuilder = FunSpec.builder("getAllHookItems")
-            .returns(returnType.parameterizedBy(genericsType)) // 泛型返回
+        // 每一项生成一条描述和一个工厂 lambda，引用单例的代码只在 lambda 内，生成描述表不会触发类初始化
+        val tableBuilder = CodeBlock.builder().add("listOf(\n").indent()
+        sortedSymbols.forEach { symbol ->
+            val typeName = symbol.toClassName()
+            val hookItem = symbol.getAnnotationsByType(HookItem::class).first()
+            val superTypes = symbol.getAllSuperTypes()
+                .mapNotNull { it.declaration.qualifiedName?.asString() }
+                .toSet()
 
-        // 构建方法体
-        methodBuilder.addCode(
-            CodeBlock.Builder().apply {
-                addStatement("val list = mutableListOf<BaseHookItem>()")
-
-                // 遍历所有被 @HookItem 注解的类（已排序）
-                for (symbol in sortedSymbols) {
-                    val typeName = symbol.toClassName()
-                    val hookItem = symbol.getAnnotationsByType(HookItem::class).first()
-                    val itemName = hookItem.path
-                    val desc = hookItem.desc
-                    val valName = symbol.toClassName().simpleName
+            val kind = when {
+                "moe.ouom.wekit.core.model.ClickableHookItem" in superTypes -> "Clickable"
+                "moe.ouom.wekit.core.model.SwitchHookItem" in superTypes -> "Switch"
+                "moe.ouom.wekit.core.model.ApiHookItem" in superTypes -> "Api"
+                else -> "Other"
+            }
+            val declaresAlwaysRun = symbol.getDeclaredFunctions().any { it.simpleName.asString() == "alwaysRun" }
+            val resolvesDex = "moe.ouom.wekit.dexkit.intf.IResolvesDex" in superTypes
 
-                    val isKtObject =
-                        symbol.classKind == ClassKind.OBJECT
-                    if (!isKtObject) {
-                        addStatement("val %N = %T()", valName, typeName)
-                    }
-                    else {
-                        addStatement("val %N = %T", valName, typeName)
-                    }
-                    addStatement("%N.path = %S", valName, itemName)
-                    addStatement("%N.description = %S", valName, desc)
-                    addStatement("list.add(%N)", valName)
-                }
-                addStatement("return list")
-            }.build()
-        )
+            val isKtObject = symbol.classKind == ClassKind.OBJECT
+            tableBuilder.add(
+                "%T(%S, %S, %T.%L, %L, %L, %L, %S) { %T${if (isKtObject) "" else "()"} },\n",
+                descriptorType,
+                hookItem.path,
+                hookItem.desc,
+                kindType,
+                kind,
+                hookItem.targetProcess,
+                kind == "Api" || declaresAlwaysRun,
+                resolvesDex,
+                typeName.reflectionName(),
+                typeName
+            )
+        }
+        tableBuilder.unindent().add(")")
 
-        // 创建最终类
         val classSpec = TypeSpec.objectBuilder("HookItemEntryList")
-            .addFunction(methodBuilder.build())
+            .addProperty(
+                PropertySpec.builder("descriptors", listType)
+                    .initializer(tableBuilder.build())
+                    .build()
+            )
             .build()
 
         // 输出文件到指定目录
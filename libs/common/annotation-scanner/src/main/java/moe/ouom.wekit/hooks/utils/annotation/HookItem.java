@@ -11,4 +11,5 @@ import java.lang.annotation.Target;
 public @interface HookItem {
     String path();           // 功能路径
     String desc() default "";    // 功能描述
+    int targetProcess() default 1; // 生效的进程, TargetProcessUtils.PROC_* 的按位或, 默认仅主进程
 }